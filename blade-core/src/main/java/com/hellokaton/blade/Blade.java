@@ -199,10 +199,10 @@ public class Blade {
     }
 
     /**
-     * set url router, default is {@link RegexMapping}
-     * if you want a faster router, you can set {@link TrieMapping}
+     * set url router, default is {@link TrieMapping}
+     * the former regex based router is still available as {@link RegexMapping}
      * for example :
-     * {@code routerMapping(new TrieMapping())}
+     * {@code routerMapping(new RegexMapping())}
      *
      * @param dynamicMapping see {@link DynamicMapping}
      * @return blade instance
@@ -349,7 +349,7 @@ public class Blade {
      * @return blade
      */
     public Blade register(@NonNull Class<?> cls) {
-        this.ioc.addBean(cls);
+        this.ioc.defineBean(cls);
         return this;
     }
 
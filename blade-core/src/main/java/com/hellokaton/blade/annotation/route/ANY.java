@@ -48,4 +48,10 @@ public @interface ANY {
      * @return Route description
      */
     String description() default "";
-}
\ No newline at end of file
+
+    /**
+     * @return receive the request body as a stream instead of aggregating it,
+     * see {@link com.hellokaton.blade.mvc.http.Request#bodyStream()}
+     */
+    boolean streaming() default false;
+}
@@ -19,4 +19,10 @@ public @interface POST {
      * @return route description
      */
     String description() default "";
-}
\ No newline at end of file
+
+    /**
+     * @return receive the request body as a stream instead of aggregating it,
+     * see {@link com.hellokaton.blade.mvc.http.Request#bodyStream()}
+     */
+    boolean streaming() default false;
+}
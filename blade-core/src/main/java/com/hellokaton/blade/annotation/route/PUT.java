@@ -22,4 +22,10 @@ public @interface PUT {
      * @return route description
      */
     String description() default "";
-}
\ No newline at end of file
+
+    /**
+     * @return receive the request body as a stream instead of aggregating it,
+     * see {@link com.hellokaton.blade.mvc.http.Request#bodyStream()}
+     */
+    boolean streaming() default false;
+}
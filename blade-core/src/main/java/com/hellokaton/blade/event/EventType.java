@@ -24,6 +24,7 @@ package com.hellokaton.blade.event;
 public enum EventType {
     SERVER_STARTING,
     SERVER_STARTED,
+    SERVER_PROFILED,
     SERVER_STOPPING,
     SERVER_STOPPED,
     SESSION_CREATED,
@@ -23,7 +23,7 @@ package com.hellokaton.blade.exception;
  */
 public class BadRequestException extends BladeException {
 
-    private static final int    STATUS = 400;
+    public static final  int    STATUS = 400;
     private static final String NAME   = "Bad Request";
 
     public BadRequestException() {
@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.ioc;
+
+import com.hellokaton.blade.ioc.bean.ClassInfo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Component index written by blade-processor at compile time.
+ * <p>
+ * An index only speaks for the classpath root it was loaded from, a jar or a
+ * classes directory. Roots of a package without an index of their own are
+ * still scanned by {@link DynamicContext}, as are classes directories whose
+ * index carries no stamp of the processor. A build without annotation
+ * processing does not refresh the index, disable it with
+ * {@value com.hellokaton.blade.mvc.BladeConst#ENV_KEY_APP_INDEX} then.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+@Slf4j
+public final class BladeIndex {
+
+    public static final String INDEX_LOCATION = "META-INF/blade/index";
+
+    private static final String STAMP = "# stamp ";
+
+    private final ClassLoader classLoader;
+    private final Set<String> classNames = new LinkedHashSet<>();
+
+    /**
+     * Indexed class names by the classpath root of their index
+     */
+    private final Map<String, Set<String>> roots = new LinkedHashMap<>();
+
+    /**
+     * Roots that are classes directories, and those whose index is stamped
+     */
+    private final Set<String> directories = new HashSet<>();
+    private final Set<String> stamped = new HashSet<>();
+
+    private BladeIndex(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Read every index on the classpath
+     *
+     * @return index or null when no index is found
+     */
+    public static BladeIndex load(ClassLoader classLoader) {
+        BladeIndex index = new BladeIndex(classLoader);
+        try {
+            Enumeration<URL> urls = classLoader.getResources(INDEX_LOCATION);
+            while (urls.hasMoreElements()) {
+                index.read(urls.nextElement());
+            }
+        } catch (IOException e) {
+            log.warn("Read blade index error", e);
+            return null;
+        }
+        return index.classNames.isEmpty() ? null : index;
+    }
+
+    private void read(URL url) throws IOException {
+        String root = root(url, INDEX_LOCATION);
+        Set<String> rootClassNames = roots.computeIfAbsent(root, r -> new LinkedHashSet<>());
+        if ("file".equals(url.getProtocol())) {
+            directories.add(root);
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                if (line.startsWith(STAMP)) {
+                    stamped.add(root);
+                }
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                String[] columns = line.split("\t");
+                if (columns.length >= 2) {
+                    classNames.add(columns[1]);
+                    rootClassNames.add(columns[1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the component classes of the package and its sub packages, from
+     * the index of each root that has a current one and by scanning the others.
+     */
+    public Stream<ClassInfo> findClasses(String packageName, Set<Class<? extends Annotation>> annotations) {
+        String packagePath = packageName.replace('.', '/');
+        String prefix = packageName + ".";
+
+        Set<String> indexed = new HashSet<>();
+        Set<String> scanned = new HashSet<>();
+        try {
+            for (URL url : Collections.list(classLoader.getResources(packagePath))) {
+                String root = root(url, packagePath);
+                Set<String> rootClassNames = roots.get(root);
+                if (null != rootClassNames && isCurrent(root)) {
+                    indexed.add(root);
+                } else {
+                    if (null != rootClassNames) {
+                        log.info("Blade index of {} has no processor stamp, scan it", root);
+                    }
+                    scanned.add(root);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Find locations of package {} error", packageName, e);
+            return DynamicContext.recursionFindClasses(packageName, annotations);
+        }
+
+        Stream<ClassInfo> fromIndex = roots.entrySet().stream()
+                // an indexed jar without directory entries is not a location of the package
+                .filter(entry -> indexed.contains(entry.getKey()) || !scanned.contains(entry.getKey())
+                        && !directories.contains(entry.getKey()))
+                .flatMap(entry -> entry.getValue().stream())
+                .filter(name -> name.startsWith(prefix))
+                .map(this::loadClass)
+                .filter(Objects::nonNull);
+        if (scanned.isEmpty()) {
+            return fromIndex;
+        }
+        Stream<ClassInfo> fromScan = DynamicContext.recursionFindClasses(packageName, annotations,
+                url -> scanned.contains(root(url, packagePath)));
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        return Stream.concat(fromIndex, fromScan).filter(classInfo -> seen.add(classInfo.getClassName()));
+    }
+
+    /**
+     * A jar is built as a whole and its index is always current. The index of a
+     * classes directory is updated by each processor run, which stamps it, one
+     * without a stamp is of an older format or written by hand.
+     */
+    private boolean isCurrent(String root) {
+        return !directories.contains(root) || stamped.contains(root);
+    }
+
+    /**
+     * Classpath root of a resource, its url without the resource path
+     */
+    private static String root(URL url, String path) {
+        String location = url.toString();
+        if (location.endsWith("/")) {
+            location = location.substring(0, location.length() - 1);
+        }
+        return location.endsWith(path) ? location.substring(0, location.length() - path.length()) : location;
+    }
+
+    private ClassInfo loadClass(String className) {
+        try {
+            return new ClassInfo(className, Class.forName(className, false, classLoader));
+        } catch (ClassNotFoundException | LinkageError e) {
+            log.warn("Indexed class {} not found, rebuild the project to refresh the blade index", className);
+            return null;
+        }
+    }
+
+    public int size() {
+        return classNames.size();
+    }
+
+}
@@ -8,9 +8,11 @@ import com.hellokaton.blade.kit.StringKit;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.lang.annotation.Annotation;
 import java.net.URL;
 import java.util.Enumeration;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 /**
@@ -37,8 +39,27 @@ public final class DynamicContext {
     }
 
     public static Stream<ClassInfo> recursionFindClasses(String packageName) {
-        Scanner        scanner    = Scanner.builder().packageName(packageName).recursive(true).build();
-        Set<ClassInfo> classInfos = getClassReader(packageName).readClasses(scanner);
+        return recursionFindClasses(packageName, null);
+    }
+
+    /**
+     * Find the classes of the package annotated with any of the annotations,
+     * other classes are checked from their class file and never loaded.
+     */
+    public static Stream<ClassInfo> recursionFindClasses(String packageName, Set<Class<? extends Annotation>> annotations) {
+        return recursionFindClasses(packageName, annotations, null);
+    }
+
+    /**
+     * Same as {@link #recursionFindClasses(String, Set)}, limited to the locations of the package accepted by the filter
+     */
+    public static Stream<ClassInfo> recursionFindClasses(String packageName, Set<Class<? extends Annotation>> annotations,
+                                                         Predicate<URL> locations) {
+        Scanner        scanner    = Scanner.builder().packageName(packageName).recursive(true)
+                .annotations(annotations).locations(locations).build();
+        // the jar reader reads directories too, the remaining locations may be of both kinds
+        ClassReader    reader     = null != locations ? jarReader : getClassReader(packageName);
+        Set<ClassInfo> classInfos = reader.readClasses(scanner);
         return classInfos.stream();
     }
 
@@ -1,6 +1,8 @@
 package com.hellokaton.blade.ioc;
 
+import com.hellokaton.blade.Environment;
 import com.hellokaton.blade.ioc.bean.BeanDefine;
+import com.hellokaton.blade.kit.IocKit;
 
 import java.util.List;
 import java.util.Set;
@@ -39,6 +41,28 @@ public interface Ioc {
 
     Object createBean(Class<?> type);
 
+    /**
+     * Register a bean type, the bean is created by {@link #initBeans(Environment)}
+     * or on its first use
+     *
+     * @param type bean class type
+     */
+    default void defineBean(Class<?> type) {
+        addBean(type);
+    }
+
+    /**
+     * Create the defined beans and inject their fields, called once when the application starts
+     *
+     * @param environment configuration of the value fields
+     */
+    default void initBeans(Environment environment) {
+        getBeanDefines().stream().distinct().forEach(beanDefine -> {
+            IocKit.initInjection(this, beanDefine);
+            IocKit.injectionValue(environment, beanDefine);
+        });
+    }
+
     /**
      * Set bean, e.g aop proxy
      *
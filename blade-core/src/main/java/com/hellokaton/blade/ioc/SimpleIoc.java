@@ -1,5 +1,7 @@
 package com.hellokaton.blade.ioc;
 
+import com.hellokaton.blade.Environment;
+import com.hellokaton.blade.ioc.annotation.Lazy;
 import com.hellokaton.blade.ioc.bean.BeanDefine;
 import com.hellokaton.blade.kit.IocKit;
 import com.hellokaton.blade.mvc.WebContext;
@@ -7,6 +9,14 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hellokaton.blade.kit.BladeKit.getStartedSymbol;
+import static com.hellokaton.blade.mvc.BladeConst.ENV_KEY_IOC_PARALLELISM;
+import static com.hellokaton.blade.mvc.BladeConst.ENV_KEY_IOC_REPORT;
 
 /**
  * The default IOC container implementation
@@ -19,6 +29,17 @@ public class SimpleIoc implements Ioc {
 
     private final Map<String, BeanDefine> pool = new ConcurrentHashMap<>(32);
 
+    /**
+     * Set when the beans are initialized, a lazy bean created later is injected on creation
+     */
+    private volatile Environment environment;
+
+    /**
+     * Held while a bean is created and injected, injection reaches other beans
+     * so one lock for all of them keeps two threads from waiting on each other
+     */
+    private final Object injectionLock = new Object();
+
     /**
      * Add user-defined objects
      */
@@ -62,10 +83,81 @@ public class SimpleIoc implements Ioc {
      */
     @Override
     public <T> T addBean(Class<T> type) {
-        Object bean = put(type, true);
+        Object bean = put(type.getName(), type).getBean();
         return type.cast(bean);
     }
 
+    @Override
+    public void defineBean(Class<?> type) {
+        put(type.getName(), type);
+    }
+
+    /**
+     * Create every defined bean except the lazy ones, constructors run in parallel
+     * as no bean depends on another one before its fields are injected.
+     */
+    @Override
+    public void initBeans(Environment environment) {
+        long start = System.nanoTime();
+        List<BeanDefine> beanDefines = pool.values().stream().distinct().collect(Collectors.toList());
+        List<BeanDefine> eager = beanDefines.stream()
+                .filter(beanDefine -> !beanDefine.isLazy() && !beanDefine.isCreated())
+                .collect(Collectors.toList());
+
+        this.createBeans(eager, environment.getInt(ENV_KEY_IOC_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+
+        this.environment = environment;
+        for (BeanDefine beanDefine : beanDefines) {
+            if (beanDefine.isCreated() && !beanDefine.isInjected()) {
+                this.inject(beanDefine, environment);
+            }
+        }
+        this.report(beanDefines, System.nanoTime() - start, environment.getBoolean(ENV_KEY_IOC_REPORT, false));
+    }
+
+    private void createBeans(List<BeanDefine> beanDefines, int parallelism) {
+        if (parallelism <= 1 || beanDefines.size() < 2) {
+            beanDefines.forEach(BeanDefine::getBean);
+            return;
+        }
+        ForkJoinPool forkJoinPool = new ForkJoinPool(Math.min(parallelism, beanDefines.size()));
+        try {
+            forkJoinPool.submit(() -> beanDefines.parallelStream().forEach(BeanDefine::getBean)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Create beans interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            forkJoinPool.shutdown();
+        }
+    }
+
+    private void inject(BeanDefine beanDefine, Environment environment) {
+        IocKit.initInjection(this, beanDefine);
+        IocKit.injectionValue(environment, beanDefine);
+        beanDefine.setInjected(true);
+    }
+
+    private void report(List<BeanDefine> beanDefines, long costNanos, boolean detail) {
+        List<BeanDefine> created = beanDefines.stream()
+                .filter(beanDefine -> beanDefine.getCreateNanos() > 0)
+                .sorted(Comparator.comparingLong(BeanDefine::getCreateNanos).reversed())
+                .collect(Collectors.toList());
+        long lazy = beanDefines.stream().filter(beanDefine -> !beanDefine.isCreated()).count();
+        if (!detail) {
+            log.debug("Create {} beans in {} ms, lazy beans: {}", created.size(), TimeUnit.NANOSECONDS.toMillis(costNanos), lazy);
+            return;
+        }
+        log.info("{}Create {} beans in {} ms, lazy beans: {}", getStartedSymbol(),
+                created.size(), TimeUnit.NANOSECONDS.toMillis(costNanos), lazy);
+        created.forEach(beanDefine -> log.info("{}{} {}", getStartedSymbol(),
+                String.format("%10.3f ms", beanDefine.getCreateNanos() / 1_000_000.0), beanDefine.getType().getName()));
+    }
+
     @Override
     public Object createBean(Class<?> type) {
         BeanDefine beanDefine = createBeanDefine(type, true);
@@ -147,17 +239,14 @@ public class SimpleIoc implements Ioc {
     }
 
     /**
-     * Register @Bean marked objects
-     */
-    private Object put(Class<?> type, boolean isSingleton) {
-        return put(type.getName(), type, isSingleton);
-    }
-
-    /**
-     * Register @Bean marked objects
+     * Register @Bean marked objects, the bean is created on its first use
      */
-    private Object put(String name, Class<?> beanClass, boolean isSingleton) {
-        BeanDefine beanDefine = this.createBeanDefine(beanClass, isSingleton);
+    private BeanDefine put(String name, Class<?> beanClass) {
+        boolean lazy = null != beanClass.getAnnotation(Lazy.class);
+        // eager beans defined before initBeans are only constructed, in parallel, and injected afterwards
+        Object lock = lazy || null != this.environment ? injectionLock : null;
+        BeanDefine beanDefine = new BeanDefine(beanClass, () -> this.instantiate(beanClass), this::initialize, lock);
+        beanDefine.setLazy(lazy);
 
         if (pool.put(name, beanDefine) != null) {
             log.warn("Duplicated Bean: {}", name);
@@ -167,24 +256,35 @@ public class SimpleIoc implements Ioc {
         Class<?>[] interfaces = beanClass.getInterfaces();
         if (interfaces.length > 0) {
             for (Class<?> interfaceClazz : interfaces) {
-                if (null != this.getBean(interfaceClazz)) {
+                if (pool.containsKey(interfaceClazz.getName())) {
                     break;
                 }
                 this.put(interfaceClazz.getName(), beanDefine);
             }
         }
+        return beanDefine;
+    }
 
-        return Objects.requireNonNull(beanDefine).getBean();
+    /**
+     * Inject a bean created after the container started, earlier beans are injected by initBeans
+     */
+    private void initialize(BeanDefine beanDefine) {
+        Environment environment = this.environment;
+        if (null != environment) {
+            this.inject(beanDefine, environment);
+        }
     }
 
-    private BeanDefine createBeanDefine(Class<?> beanClass, boolean isSingleton) {
+    private Object instantiate(Class<?> beanClass) {
         try {
-            Object object = beanClass.newInstance();
-            return new BeanDefine(object, beanClass, isSingleton);
+            return beanClass.newInstance();
         } catch (InstantiationException | IllegalAccessException e) {
-            log.error("get BeanDefine error", e);
+            throw new IllegalStateException("Create bean " + beanClass.getName() + " error", e);
         }
-        return null;
+    }
+
+    private BeanDefine createBeanDefine(Class<?> beanClass, boolean isSingleton) {
+        return new BeanDefine(this.instantiate(beanClass), beanClass, isSingleton);
     }
 
 }
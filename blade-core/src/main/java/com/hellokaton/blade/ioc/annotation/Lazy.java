@@ -0,0 +1,16 @@
+package com.hellokaton.blade.ioc.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Bean created on its first use instead of when the application starts
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Lazy {
+
+}
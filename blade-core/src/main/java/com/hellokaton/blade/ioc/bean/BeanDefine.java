@@ -1,5 +1,8 @@
 package com.hellokaton.blade.ioc.bean;
 
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
 /**
  * Bean Define, IOC to define a target
  *
@@ -8,33 +11,109 @@ package com.hellokaton.blade.ioc.bean;
  */
 public class BeanDefine {
 
-    private Object   bean;
+    private volatile Object bean;
     private Class<?> type;
     private boolean  isSingleton;
     private boolean  fieldHasPrototype;
+    private boolean  lazy;
+    private volatile boolean injected;
+
+    // creates a bean registered by type, null once the bean exists
+    private Supplier<Object> instantiator;
+    private Consumer<BeanDefine> initializer;
+    // bean being initialized, referenced by itself through the initializer
+    private Object early;
+    private long createNanos;
+    // held while the bean is created, shared by beans injecting each other
+    private final Object lock;
 
     public BeanDefine(Object bean) {
         this(bean, bean.getClass());
     }
 
     public BeanDefine(Object bean, Class<?> type) {
-        this.bean = bean;
-        this.type = type;
-        this.isSingleton = true;
+        this(bean, type, true);
     }
 
     public BeanDefine(Object bean, Class<?> type, boolean isSingleton) {
         this.bean = bean;
         this.type = type;
         this.isSingleton = isSingleton;
+        this.lock = this;
+    }
+
+    /**
+     * Define a bean created on its first use
+     *
+     * @param type         bean type
+     * @param instantiator create the bean instance
+     * @param initializer  called with the created bean before it is published, may be null
+     */
+    public BeanDefine(Class<?> type, Supplier<Object> instantiator, Consumer<BeanDefine> initializer) {
+        this(type, instantiator, initializer, null);
+    }
+
+    /**
+     * Define a bean created on its first use
+     *
+     * @param type         bean type
+     * @param instantiator create the bean instance
+     * @param initializer  called with the created bean before it is published, may be null
+     * @param lock         held while the bean is created and initialized, null for this define.
+     *                     Beans whose initializers reach each other need one lock, otherwise
+     *                     two threads entering the cycle at different beans deadlock.
+     */
+    public BeanDefine(Class<?> type, Supplier<Object> instantiator, Consumer<BeanDefine> initializer, Object lock) {
+        this.type = type;
+        this.isSingleton = true;
+        this.instantiator = instantiator;
+        this.initializer = initializer;
+        this.lock = null != lock ? lock : this;
     }
 
     public Object getBean() {
-        return bean;
+        Object bean = this.bean;
+        if (null != bean) {
+            return bean;
+        }
+        synchronized (lock) {
+            if (null != this.bean || null == instantiator) {
+                return this.bean;
+            }
+            if (null != early) {
+                return early;
+            }
+            long start = System.nanoTime();
+            Object created = instantiator.get();
+            early = created;
+            try {
+                if (null != initializer) {
+                    initializer.accept(this);
+                }
+            } finally {
+                early = null;
+            }
+            createNanos = System.nanoTime() - start;
+            instantiator = null;
+            initializer = null;
+            this.bean = created;
+            return created;
+        }
     }
 
     public void setBean(Object bean) {
-        this.bean = bean;
+        synchronized (lock) {
+            this.instantiator = null;
+            this.initializer = null;
+            this.bean = bean;
+        }
+    }
+
+    /**
+     * Whether the bean exists, a bean registered by type is created on its first use
+     */
+    public boolean isCreated() {
+        return null != bean;
     }
 
     public Class<?> getType() {
@@ -60,4 +139,28 @@ public class BeanDefine {
     public void setFieldHasPrototype(boolean fieldHasPrototype) {
         this.fieldHasPrototype = fieldHasPrototype;
     }
-}
\ No newline at end of file
+
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    public boolean isInjected() {
+        return injected;
+    }
+
+    public void setInjected(boolean injected) {
+        this.injected = injected;
+    }
+
+    /**
+     * Nanoseconds spent creating and initializing the bean, 0 when it was registered as an instance
+     */
+    public long getCreateNanos() {
+        return createNanos;
+    }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.ioc.bean;
+
+import com.hellokaton.blade.ioc.annotation.Inject;
+import com.hellokaton.blade.ioc.annotation.InjectWith;
+import com.hellokaton.blade.ioc.annotation.Value;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fields of a class to inject, computed once per class
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+public final class InjectionPlan {
+
+    private static final ClassValue<InjectionPlan> PLANS = new ClassValue<InjectionPlan>() {
+        @Override
+        protected InjectionPlan computeValue(Class<?> type) {
+            return new InjectionPlan(type);
+        }
+    };
+
+    private final Field[] injectFields;
+    private final Field[] valueFields;
+    private final String[] valueKeys;
+
+    private InjectionPlan(Class<?> type) {
+        Field[] fields = type.getDeclaredFields();
+        List<Field> injects = new ArrayList<>();
+        List<Field> values = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+
+        Value classValue = type.getAnnotation(Value.class);
+        for (Field field : fields) {
+            if (null != field.getAnnotation(InjectWith.class) || null != field.getAnnotation(Inject.class)) {
+                injects.add(field);
+            }
+            if (null != classValue) {
+                // every field of a @Value class is read from the configuration
+                values.add(field);
+                keys.add(classValue.name() + "." + field.getName());
+            } else if (null != field.getAnnotation(Value.class)) {
+                values.add(field);
+                keys.add(field.getAnnotation(Value.class).name());
+            }
+        }
+        this.injectFields = injects.toArray(new Field[0]);
+        this.valueFields = values.toArray(new Field[0]);
+        this.valueKeys = keys.toArray(new String[0]);
+        for (Field field : injectFields) {
+            field.setAccessible(true);
+        }
+    }
+
+    public static InjectionPlan of(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    /**
+     * Fields annotated with {@link Inject} or {@link InjectWith}
+     */
+    public Field[] getInjectFields() {
+        return injectFields;
+    }
+
+    /**
+     * Fields read from the configuration, see {@link #getValueKeys()} for their keys
+     */
+    public Field[] getValueFields() {
+        return valueFields;
+    }
+
+    public String[] getValueKeys() {
+        return valueKeys;
+    }
+
+}
@@ -4,6 +4,9 @@ import lombok.Builder;
 import lombok.Data;
 
 import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * @author biezhi
@@ -17,4 +20,14 @@ public class Scanner {
     private boolean                     recursive;
     private Class<?>                    parent;
     private Class<? extends Annotation> annotation;
+
+    /**
+     * Class annotated with any of them, checked after parent and annotation
+     */
+    private Set<Class<? extends Annotation>> annotations;
+
+    /**
+     * Locations of the package to read, all of them when null
+     */
+    private Predicate<URL> locations;
 }
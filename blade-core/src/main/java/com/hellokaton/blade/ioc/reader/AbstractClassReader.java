@@ -3,18 +3,18 @@ package com.hellokaton.blade.ioc.reader;
 import com.hellokaton.blade.ioc.ClassReader;
 import com.hellokaton.blade.ioc.bean.ClassInfo;
 import com.hellokaton.blade.ioc.bean.Scanner;
-import com.hellokaton.blade.kit.BladeKit;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Abstract Class Reader
@@ -25,108 +25,110 @@ import java.util.Set;
 @Slf4j
 public abstract class AbstractClassReader implements ClassReader {
 
+    private static final String CLASS_SUFFIX = ".class";
+
+    /**
+     * Read the class files under the package, every location of the package is
+     * read in parallel and only the classes matching the scanner are loaded.
+     */
     @Override
     public Set<ClassInfo> readClasses(Scanner scanner) {
-        return this.getClassByAnnotation(scanner.getPackageName(), scanner.getParent(), scanner.getAnnotation(), scanner.isRecursive());
+        String packageName = scanner.getPackageName();
+        // Get the name of the package and replace it
+        String packageDirName = packageName.replace('.', '/');
+        Set<ClassInfo> classes = ConcurrentHashMap.newKeySet();
+        try {
+            List<URL> urls = Collections.list(this.getClass().getClassLoader().getResources(packageDirName));
+            if (null != scanner.getLocations()) {
+                urls.removeIf(scanner.getLocations().negate());
+            }
+            urls.parallelStream().forEach(url -> {
+                try {
+                    this.readLocation(url, packageDirName, scanner, classes);
+                } catch (IOException | URISyntaxException e) {
+                    log.error("Scan package [{}] in {} error", packageName, url, e);
+                }
+            });
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+        }
+        return new HashSet<>(classes);
+    }
+
+    public Set<ClassInfo> getClassByAnnotation(String packageName, Class<?> parent, Class<? extends Annotation> annotation, boolean recursive) {
+        return this.readClasses(Scanner.builder().packageName(packageName)
+                .parent(parent).annotation(annotation).recursive(recursive).build());
     }
 
     /**
-     * Get class by condition
-     *
-     * @param packageName
-     * @param packagePath
-     * @param parent
-     * @param annotation
-     * @param recursive
-     * @return
+     * Read the classes of one location of the package, a directory by default
      */
-    private Set<ClassInfo> findClassByPackage(final String packageName, final String packagePath,
-                                              final Class<?> parent, final Class<? extends Annotation> annotation,
-                                              final boolean recursive, Set<ClassInfo> classes) throws ClassNotFoundException {
-
+    protected void readLocation(URL url, String packageDirName, Scanner scanner,
+                                Set<ClassInfo> classes) throws IOException, URISyntaxException {
         // Get the directory of this package to create a File
-        File dir = new File(packagePath);
-        // If not exist or is not a direct return to the directory
-        if ((!dir.exists()) || (!dir.isDirectory())) {
-            log.warn("The package [{}] not found.", packageName);
+        File dir = new File(new URI(url.getFile()).getPath());
+        if (!dir.isDirectory()) {
+            log.warn("The package [{}] not found.", scanner.getPackageName());
+            return;
         }
-        // If present, get all the files under the package include the directory
-        File[] dirFiles = accept(dir, recursive);
-        // Loop all files
-        if (null != dirFiles && dirFiles.length > 0) {
-            for (File file : dirFiles) {
-                // If it is a directory, continue scanning
-                if (file.isDirectory()) {
-                    findClassByPackage(packageName + '.' + file.getName(), file.getAbsolutePath(), parent, annotation, recursive, classes);
-                } else {
-                    // If the java class file is removed later. Class only leave the class name
-                    String   className = file.getName().substring(0, file.getName().length() - 6);
-                    Class<?> clazz     = Class.forName(packageName + '.' + className);
-                    if (null != parent && null != annotation) {
-                        if (null != clazz.getSuperclass() && clazz.getSuperclass().equals(parent) &&
-                                null != clazz.getAnnotation(annotation)) {
-                            classes.add(new ClassInfo(clazz));
-                        }
-                        continue;
-                    }
-                    if (null != parent) {
-                        if (null != clazz.getSuperclass() && clazz.getSuperclass().equals(parent)) {
-                            classes.add(new ClassInfo(clazz));
-                        } else {
-                            if (null != clazz.getInterfaces() && clazz.getInterfaces().length > 0 && clazz.getInterfaces()[0].equals(parent)) {
-                                classes.add(new ClassInfo(clazz));
-                            }
-                        }
-                        continue;
-                    }
-                    if (null != annotation) {
-                        if (null != clazz.getAnnotation(annotation)) {
-                            classes.add(new ClassInfo(clazz));
-                        }
-                        continue;
-                    }
-                    classes.add(new ClassInfo(clazz));
-                }
+        List<File> files = new ArrayList<>();
+        this.listClassFiles(dir, scanner.isRecursive(), files);
+        files.parallelStream().forEach(file -> {
+            try (InputStream in = new FileInputStream(file)) {
+                this.readClass(in, scanner, classes);
+            } catch (IOException e) {
+                log.warn("Read class file {} error", file, e);
+            }
+        });
+    }
+
+    private void listClassFiles(File dir, boolean recursive, List<File> files) {
+        // If you can loop (include subdirectories) or is the end of the file. Class (compiled java class file)
+        File[] dirFiles = dir.listFiles(file -> (recursive && file.isDirectory()) || file.getName().endsWith(CLASS_SUFFIX));
+        if (null == dirFiles) {
+            return;
+        }
+        for (File file : dirFiles) {
+            if (file.isDirectory()) {
+                listClassFiles(file, true, files);
+            } else {
+                files.add(file);
             }
         }
-        return classes;
     }
 
     /**
-     * Filter the file rules
-     *
-     * @param file
-     * @param recursive
-     * @return
+     * Check the class file against the scanner, the class is loaded only when it matches
      */
-    private File[] accept(File file, final boolean recursive) {
-        // Custom filtering rules If you can loop (include subdirectories) or is the end of the file. Class (compiled java class file)
-        return file.listFiles(file1 -> (recursive && file1.isDirectory()) || (file1.getName().endsWith(".class")));
+    protected void readClass(InputStream in, Scanner scanner, Set<ClassInfo> classes) throws IOException {
+        ClassMetadata metadata = ClassMetadata.read(in);
+        if (null == metadata || metadata.isModuleOrPackageInfo() || !matches(metadata, scanner)) {
+            return;
+        }
+        try {
+            Class<?> clazz = Class.forName(metadata.getClassName(), false, this.getClass().getClassLoader());
+            classes.add(new ClassInfo(clazz));
+        } catch (ClassNotFoundException | LinkageError e) {
+            log.warn("Load class {} error: {}", metadata.getClassName(), e.toString());
+        }
     }
 
-    public Set<ClassInfo> getClassByAnnotation(String packageName, Class<?> parent, Class<? extends Annotation> annotation, boolean recursive) {
-        Set<ClassInfo> classes = new HashSet<>();
-        // Get the name of the package and replace it
-        String packageDirName = packageName.replace('.', '/');
-        // Defines an enumerated collection and loops to process the URL in this directory
-        Enumeration<URL> dirs;
-        try {
-            dirs = this.getClass().getClassLoader().getResources(packageDirName);
-            // Loop iterations down
-            while (dirs.hasMoreElements()) {
-                URL            url        = dirs.nextElement();
-                String         filePath   = new URI(url.getFile()).getPath();
-                Set<ClassInfo> subClasses = findClassByPackage(packageName, filePath, parent, annotation, recursive, classes);
-                if (BladeKit.isNotEmpty(subClasses)) {
-                    classes.addAll(subClasses);
-                }
+    private boolean matches(ClassMetadata metadata, Scanner scanner) {
+        Class<?> parent = scanner.getParent();
+        Class<? extends Annotation> annotation = scanner.getAnnotation();
+        if (null != parent && null != annotation) {
+            if (!metadata.hasSuperClass(parent) || !metadata.hasAnnotation(annotation)) {
+                return false;
             }
-        } catch (IOException | URISyntaxException e) {
-            log.error(e.getMessage(), e);
-        } catch (ClassNotFoundException e) {
-            log.error("Add user custom view class error Can't find such Class files.");
+        } else if (null != parent) {
+            if (!metadata.hasSuperClass(parent) && !metadata.hasFirstInterface(parent)) {
+                return false;
+            }
+        } else if (null != annotation && !metadata.hasAnnotation(annotation)) {
+            return false;
         }
-        return classes;
+        Set<Class<? extends Annotation>> annotations = scanner.getAnnotations();
+        return null == annotations || annotations.isEmpty() || annotations.stream().anyMatch(metadata::hasAnnotation);
     }
 
-}
\ No newline at end of file
+}
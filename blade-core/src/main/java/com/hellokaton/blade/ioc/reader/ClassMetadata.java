@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.ioc.reader;
+
+import lombok.extern.slf4j.Slf4j;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Name, super types and annotations of a class read from its class file,
+ * the class itself is not loaded.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+@Slf4j
+public final class ClassMetadata {
+
+    private final String className;
+    private final String superName;
+    private final String[] interfaces;
+    private final int access;
+    private final Set<String> annotations;
+
+    private ClassMetadata(String className, String superName, String[] interfaces,
+                          int access, Set<String> annotations) {
+        this.className = className;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.access = access;
+        this.annotations = annotations;
+    }
+
+    /**
+     * Read the metadata of a class file
+     *
+     * @param in class file content, not closed
+     * @return metadata or null when it is not a readable class file
+     */
+    public static ClassMetadata read(InputStream in) throws IOException {
+        byte[] bytes = readAll(in);
+        int version = bytes.length > 8 ? (bytes[6] & 0xFF) << 8 | bytes[7] & 0xFF : 0;
+        // the bundled asm rejects newer class files, only the constant pool and class
+        // attributes are read here, a layout it still does not understand fails below
+        if (version > Opcodes.V11) {
+            bytes[6] = (byte) (Opcodes.V11 >>> 8);
+            bytes[7] = (byte) Opcodes.V11;
+        }
+        try {
+            ClassReader reader = new ClassReader(bytes);
+            Set<String> annotations = new HashSet<>(4);
+            reader.accept(new ClassVisitor(Opcodes.ASM6) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                    if (visible) {
+                        annotations.add(descriptor);
+                    }
+                    return null;
+                }
+            }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+            return new ClassMetadata(reader.getClassName().replace('/', '.'),
+                    null == reader.getSuperName() ? null : reader.getSuperName().replace('/', '.'),
+                    reader.getInterfaces(), reader.getAccess(), annotations);
+        } catch (RuntimeException e) {
+            log.debug("Skip unreadable class file, version {}: {}", version, e.toString());
+            return null;
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        byte[] bytes = new byte[Math.max(in.available(), 1024)];
+        int length = 0;
+        for (int n; (n = in.read(bytes, length, bytes.length - length)) != -1; ) {
+            length += n;
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+        }
+        return length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public boolean isInterface() {
+        return (access & Opcodes.ACC_INTERFACE) != 0;
+    }
+
+    public boolean isAbstract() {
+        return (access & Opcodes.ACC_ABSTRACT) != 0;
+    }
+
+    public boolean isModuleOrPackageInfo() {
+        return (access & Opcodes.ACC_MODULE) != 0 || className.endsWith("package-info");
+    }
+
+    public boolean hasSuperClass(Class<?> type) {
+        return null != superName && superName.equals(type.getName());
+    }
+
+    /**
+     * Whether the first declared interface is the type
+     */
+    public boolean hasFirstInterface(Class<?> type) {
+        return interfaces.length > 0 && interfaces[0].replace('/', '.').equals(type.getName());
+    }
+
+    /**
+     * Whether the class is annotated with the runtime visible annotation
+     */
+    public boolean hasAnnotation(Class<? extends Annotation> annotation) {
+        return annotations.contains('L' + annotation.getName().replace('.', '/') + ';');
+    }
+
+}
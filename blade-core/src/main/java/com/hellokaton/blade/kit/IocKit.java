@@ -17,18 +17,14 @@ package com.hellokaton.blade.kit;
 
 import com.hellokaton.blade.Environment;
 import com.hellokaton.blade.ioc.Ioc;
-import com.hellokaton.blade.ioc.annotation.Inject;
-import com.hellokaton.blade.ioc.annotation.InjectWith;
-import com.hellokaton.blade.ioc.annotation.Value;
 import com.hellokaton.blade.ioc.bean.BeanDefine;
-import com.hellokaton.blade.ioc.bean.ClassDefine;
 import com.hellokaton.blade.ioc.bean.FieldInjector;
+import com.hellokaton.blade.ioc.bean.InjectionPlan;
 import com.hellokaton.blade.ioc.bean.ValueInjector;
 import lombok.experimental.UtilityClass;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -44,19 +40,15 @@ public class IocKit {
     /**
      * Get @Inject Annotated field
      *
-     * @param ioc         ioc container
-     * @param classDefine classDefine
+     * @param ioc  ioc container
+     * @param type bean type
      * @return return FieldInjector
      */
-    private static List<FieldInjector> getInjectFields(Ioc ioc, ClassDefine classDefine) {
-        List<FieldInjector> injectors = new ArrayList<>();
-        for (Field field : classDefine.getDeclaredFields()) {
-            if (null != field.getAnnotation(InjectWith.class) || null != field.getAnnotation(Inject.class)) {
-                injectors.add(new FieldInjector(ioc, field));
-            }
-        }
-        if (injectors.size() == 0) {
-            return new ArrayList<>();
+    private static List<FieldInjector> getInjectFields(Ioc ioc, Class<?> type) {
+        Field[] fields = InjectionPlan.of(type).getInjectFields();
+        List<FieldInjector> injectors = new ArrayList<>(fields.length);
+        for (Field field : fields) {
+            injectors.add(new FieldInjector(ioc, field));
         }
         return injectors;
     }
@@ -65,30 +57,21 @@ public class IocKit {
      * Get @Value Annotated field
      *
      * @param environment
-     * @param classDefine
+     * @param type
      * @return
      */
-    private static List<ValueInjector> getValueInjectFields(Environment environment, ClassDefine classDefine) {
-        List<ValueInjector> valueInjectors = new ArrayList<>(8);
-        //handle class annotation
-        if (null != classDefine.getType().getAnnotation(Value.class)) {
-            String suffix = classDefine.getType().getAnnotation(Value.class).name();
-            Arrays.stream(classDefine.getDeclaredFields()).forEach(field -> valueInjectors.add(
-                    new ValueInjector(environment, field, suffix + "." + field.getName())
-            ));
-        } else {
-            Arrays.stream(classDefine.getDeclaredFields()).
-                    filter(field -> null != field.getAnnotation(Value.class)).
-                    map(field -> new ValueInjector(
-                            environment, field, field.getAnnotation(Value.class).name())
-                    ).forEach(valueInjectors::add);
+    private static List<ValueInjector> getValueInjectFields(Environment environment, Class<?> type) {
+        InjectionPlan plan = InjectionPlan.of(type);
+        Field[] fields = plan.getValueFields();
+        List<ValueInjector> valueInjectors = new ArrayList<>(fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            valueInjectors.add(new ValueInjector(environment, fields[i], plan.getValueKeys()[i]));
         }
         return valueInjectors;
     }
 
     public static void injection(Ioc ioc, BeanDefine beanDefine) {
-        ClassDefine         classDefine    = ClassDefine.create(beanDefine.getType());
-        List<FieldInjector> fieldInjectors = getInjectFields(ioc, classDefine);
+        List<FieldInjector> fieldInjectors = getInjectFields(ioc, beanDefine.getType());
 
         Object bean = beanDefine.getBean();
         fieldInjectors.forEach(fieldInjector -> {
@@ -101,8 +84,7 @@ public class IocKit {
     }
 
     public static void initInjection(Ioc ioc, BeanDefine beanDefine) {
-        ClassDefine         classDefine    = ClassDefine.create(beanDefine.getType());
-        List<FieldInjector> fieldInjectors = getInjectFields(ioc, classDefine);
+        List<FieldInjector> fieldInjectors = getInjectFields(ioc, beanDefine.getType());
 
         Object bean = beanDefine.getBean();
 
@@ -120,8 +102,7 @@ public class IocKit {
     }
 
     public static void injectionValue(Environment environment, BeanDefine beanDefine) {
-        ClassDefine         classDefine = ClassDefine.create(beanDefine.getType());
-        List<ValueInjector> valueFields = getValueInjectFields(environment, classDefine);
+        List<ValueInjector> valueFields = getValueInjectFields(environment, beanDefine.getType());
 
         Object bean = beanDefine.getBean();
 
@@ -1,6 +1,9 @@
 package com.hellokaton.blade.kit;
 
 import com.hellokaton.blade.mvc.http.Request;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.ssl.SslHandler;
 import lombok.experimental.UtilityClass;
 
 /**
@@ -14,6 +17,54 @@ public class WebKit {
 
     public static final String UNKNOWN_MAGIC = "unknown";
 
+    /**
+     * Whether a FileRegion can be written to the channel, only plain
+     * HTTP/1.1 connections support it, TLS and HTTP/2 streams need chunks.
+     *
+     * @param ctx channel handler context
+     * @return return true when zero-copy file transfer is possible
+     */
+    public static boolean supportFileRegion(ChannelHandlerContext ctx) {
+        return !(ctx.channel() instanceof Http2StreamChannel) && null == ctx.pipeline().get(SslHandler.class);
+    }
+
+    /**
+     * Quality of a content coding in an Accept-Encoding header, the
+     * {@code *} entry applies to codings not listed.
+     *
+     * @param acceptEncoding Accept-Encoding header value
+     * @param coding         content coding, e.g. gzip
+     * @return quality between 0 and 1, 0 when the coding is not acceptable
+     */
+    public static float acceptQuality(String acceptEncoding, String coding) {
+        if (StringKit.isEmpty(acceptEncoding)) {
+            return 0;
+        }
+        float wildcard = 0;
+        for (String part : acceptEncoding.split(",")) {
+            int semicolon = part.indexOf(';');
+            String name = (semicolon < 0 ? part : part.substring(0, semicolon)).trim();
+            float quality = 1;
+            if (semicolon >= 0) {
+                String param = part.substring(semicolon + 1).trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Float.parseFloat(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equalsIgnoreCase(coding)) {
+                return quality;
+            }
+            if ("*".equals(name)) {
+                wildcard = quality;
+            }
+        }
+        return wildcard;
+    }
+
     /**
      * Get the client IP address by request
      *
@@ -49,6 +49,10 @@ public interface BladeConst {
     String ENV_KEY_APP_ENV = "app.env";
     String ENV_KEY_APP_THREAD_NAME = "app.thread-name";
     String ENV_KEY_APP_WATCH_ENV = "app.watch-env";
+    String ENV_KEY_APP_INDEX = "app.index.enabled";
+    String ENV_KEY_IOC_PARALLELISM = "app.ioc.parallelism";
+    String ENV_KEY_IOC_REPORT = "app.ioc.report";
+    String ENV_KEY_STARTUP_PROFILE = "app.startup.profile-file";
     String ENV_KEY_BANNER_PATH = "app.banner-path";
     String ENV_KEY_TASK_THREAD_COUNT = "app.task.thread-count";
     String ENV_KEY_CONTEXT_PATH = "app.context-path";
@@ -57,12 +61,25 @@ public interface BladeConst {
     String ENV_KEY_SESSION_ENABLED = "http.session.enabled";
     String ENV_KEY_SESSION_KEY = "http.session.key";
     String ENV_KEY_SESSION_TIMEOUT = "http.session.timeout";
+    String ENV_KEY_SESSION_STORE = "http.session.store";
+    String ENV_KEY_SESSION_MAX_COUNT = "http.session.max-count";
+    String ENV_KEY_SESSION_MAX_SIZE = "http.session.max-size";
+    String ENV_KEY_SESSION_FILE = "http.session.file";
+    String ENV_KEY_SESSION_SECRET = "http.session.secret";
+    String ENV_KEY_SESSION_ENCRYPT = "http.session.encrypt";
+    String ENV_KEY_SESSION_COOKIE_SIZE = "http.session.cookie-max-size";
     String ENV_KEY_HTTP_CACHE_TIMEOUT = "http.cache.timeout";
     String ENV_KEY_HTTP_REQUEST_COST = "http.request.cost";
     String ENV_KEY_PAGE_404 = "mvc.view.404";
     String ENV_KEY_PAGE_500 = "mvc.view.500";
     String ENV_KEY_STATIC_DIRS = "mvc.statics";
     String ENV_KEY_STATIC_LIST = "mvc.statics.show-list";
+    String ENV_KEY_STATIC_CACHE_ENABLED = "mvc.statics.cache.enabled";
+    String ENV_KEY_STATIC_CACHE_MAX_SIZE = "mvc.statics.cache.max-size";
+    String ENV_KEY_STATIC_CACHE_MAX_FILE_SIZE = "mvc.statics.cache.max-file-size";
+    String ENV_KEY_STATIC_CACHE_CHECK_INTERVAL = "mvc.statics.cache.check-interval";
+    String ENV_KEY_STATIC_CACHE_DIR = "mvc.statics.cache.dir";
+    String ENV_KEY_ROUTE_CACHE_SIZE = "mvc.route.cache-size";
     String ENV_KEY_TEMPLATE_PATH = "mvc.template.path";
     String ENV_KEY_SERVER_ADDRESS = "server.address";
     String ENV_KEY_SERVER_PORT = "server.port";
@@ -71,11 +88,19 @@ public interface BladeConst {
     String ENV_KEY_SSL_CERT = "server.ssl.cert-path";
     String ENV_KEY_SSL_PRIVATE_KEY = "server.ssl.private-key-path";
     String ENV_KEY_SSL_PRIVATE_KEY_PASS = "server.ssl.private-key-pass";
+    String ENV_KEY_HTTP2_ENABLE = "server.http2.enable";
     String ENV_KEY_NETTY_TCP_NODELAY = "server.netty.tcp-nodelay";
     String ENV_KEY_NETTY_SO_KEEPALIVE = "server.netty.so-keepalive";
     String ENV_KEY_NETTY_SO_BACKLOG = "server.netty.so-backlog";
     String ENV_KEY_NETTY_ACCEPT_THREAD_COUNT = "server.netty.accept-thread-count";
     String ENV_KEY_NETTY_IO_THREAD_COUNT = "server.netty.io-thread-count";
+    String ENV_KEY_SERVER_DISPATCH = "server.dispatch";
+    String ENV_KEY_DISPATCH_THREAD_COUNT = "server.dispatch.thread-count";
+    String ENV_KEY_DISPATCH_QUEUE_SIZE = "server.dispatch.queue-size";
+    String ENV_KEY_WARMUP_ENABLED = "server.warmup.enabled";
+    String ENV_KEY_WARMUP_TIMEOUT = "server.warmup.timeout";
+    String ENV_KEY_WARMUP_METHODS = "server.warmup.methods";
+    String ENV_KEY_WARMUP_EXCLUDES = "server.warmup.excludes";
 
     String ENV_KEY_BOOT_CONF = "boot_conf";
     String ENV_KEY_AUTO_REFRESH_DIR = "app.auto.refresh.dir";
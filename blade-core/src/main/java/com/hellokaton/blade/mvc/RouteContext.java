@@ -17,6 +17,7 @@ package com.hellokaton.blade.mvc;
 
 import com.hellokaton.blade.mvc.http.*;
 import com.hellokaton.blade.mvc.route.Route;
+import com.hellokaton.blade.mvc.route.RouteMatch;
 import com.hellokaton.blade.mvc.ui.ModelAndView;
 import lombok.var;
 
@@ -81,7 +82,7 @@ public class RouteContext {
     }
 
     /**
-     * Get current request session, if null then create
+     * Get current request session, created on the first write
      *
      * @return Return current session
      */
@@ -540,6 +541,11 @@ public class RouteContext {
         this.route = route;
     }
 
+    public void initRoute(RouteMatch match) {
+        this.request.initPathParams(match);
+        this.route = match.getRoute();
+    }
+
     public void injectParameters() {
         var action = routeAction();
         if (null != action && !action.getDeclaringClass().getName().contains(LAMBDA_IDENTIFY)) {
@@ -20,11 +20,13 @@ import com.hellokaton.blade.Environment;
 import com.hellokaton.blade.mvc.http.Request;
 import com.hellokaton.blade.mvc.http.Response;
 import com.hellokaton.blade.mvc.route.Route;
+import com.hellokaton.blade.mvc.route.RouteMatch;
 import io.netty.channel.ChannelHandlerContext;
 import lombok.NoArgsConstructor;
 import lombok.var;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static com.hellokaton.blade.server.HttpServerHandler.WEB_CONTEXT_THREAD_LOCAL;
 
@@ -60,9 +62,15 @@ public class WebContext {
     private Response response;
 
     private Route route;
+    private RouteMatch routeMatch;
 
     private ChannelHandlerContext channelHandlerContext;
 
+    /**
+     * Completes when an asynchronous route handler has finished, null for synchronous requests
+     */
+    private CompletableFuture<?> async;
+
     public WebContext(Request request, Response response,
                       ChannelHandlerContext channelHandlerContext) {
 
@@ -118,6 +126,31 @@ public class WebContext {
 
     public void setRoute(Route route) {
         this.route = route;
+        this.routeMatch = null;
+    }
+
+    /**
+     * @return matched route with the path variables of the request, null when set by {@link #setRoute(Route)}
+     */
+    public RouteMatch getRouteMatch() {
+        return routeMatch;
+    }
+
+    public void setRouteMatch(RouteMatch routeMatch) {
+        this.routeMatch = routeMatch;
+        this.route = routeMatch.getRoute();
+    }
+
+    public boolean isAsync() {
+        return null != async;
+    }
+
+    public CompletableFuture<?> getAsync() {
+        return async;
+    }
+
+    public void setAsync(CompletableFuture<?> async) {
+        this.async = async;
     }
 
     /**
@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.mvc.handler;
+
+import com.hellokaton.blade.mvc.RouteContext;
+
+/**
+ * Resolves one argument of a route method, built once per route by {@link RouteActionArguments}.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+@FunctionalInterface
+public interface ArgumentResolver {
+
+    /**
+     * Resolve the argument value of the current request
+     *
+     * @param context the current request context instance
+     * @return argument value
+     */
+    Object resolve(RouteContext context);
+
+}
@@ -45,6 +45,9 @@ public class DefaultExceptionHandler implements ExceptionHandler {
 
             if (e instanceof BladeException) {
                 this.handleBladeException((BladeException) e, request, response);
+            } else if (e instanceof HttpParseException) {
+                // a malformed request body
+                this.handleBladeException(new BadRequestException(e.getMessage()), request, response);
             } else if (e instanceof ValidatorException) {
                 this.handleValidators(ValidatorException.class.cast(e), request, response);
             } else {
@@ -113,6 +116,14 @@ public class DefaultExceptionHandler implements ExceptionHandler {
             }
         }
 
+        if (e.getStatus() == BadRequestException.STATUS) {
+            if (request.isJsonRequest()) {
+                response.json(RestResponse.fail(BadRequestException.STATUS, e.getMessage()));
+            } else {
+                response.text(e.getMessage());
+            }
+        }
+
         if (e.getStatus() == MethodNotAllowedException.STATUS) {
 
             log405(log, paddingMethod, request.uri());
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.mvc.handler;
+
+import com.hellokaton.blade.exception.BladeException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Invoker of a route or hook method bound once to its method handle,
+ * calls go straight to the method instead of a lookup by name.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+public final class MethodInvoker {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * Method adapted to {@code (Object target, Object[] args) -> Object}
+     */
+    private final MethodHandle handle;
+
+    private MethodInvoker(MethodHandle handle) {
+        this.handle = handle;
+    }
+
+    public static MethodInvoker of(Method method) {
+        method.setAccessible(true);
+        MethodHandle handle;
+        try {
+            handle = LOOKUP.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw BladeException.wrapper(e);
+        }
+        if (Modifier.isStatic(method.getModifiers())) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        handle = handle.asType(handle.type().generic())
+                .asSpreader(Object[].class, method.getParameterCount());
+        return new MethodInvoker(handle);
+    }
+
+    /**
+     * Invoke the method, exceptions thrown by the method are rethrown as is
+     *
+     * @param target method owner, ignored by static methods
+     * @param args   method arguments, may be null when there is none
+     * @return returned value, null for a void method
+     */
+    public Object invoke(Object target, Object[] args) throws Exception {
+        try {
+            return handle.invokeExact(target, args);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+}
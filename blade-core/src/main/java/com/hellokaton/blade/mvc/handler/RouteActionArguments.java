@@ -2,7 +2,6 @@ package com.hellokaton.blade.mvc.handler;
 
 import com.hellokaton.blade.annotation.request.*;
 import com.hellokaton.blade.asm.ASMUtils;
-import com.hellokaton.blade.exception.BladeException;
 import com.hellokaton.blade.kit.JsonKit;
 import com.hellokaton.blade.kit.ReflectKit;
 import com.hellokaton.blade.kit.StringKit;
@@ -12,6 +11,7 @@ import com.hellokaton.blade.mvc.http.Request;
 import com.hellokaton.blade.mvc.http.Response;
 import com.hellokaton.blade.mvc.http.Session;
 import com.hellokaton.blade.mvc.multipart.FileItem;
+import com.hellokaton.blade.mvc.route.Route;
 import com.hellokaton.blade.mvc.ui.ModelAndView;
 
 import java.lang.reflect.*;
@@ -19,10 +19,14 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Route method param parse
+ * <p>
+ * The binding of every parameter is resolved once per route into an {@link ArgumentResolver},
+ * a request only evaluates the resolvers.
  *
  * @author biezhi
  * 2017/9/20
@@ -30,29 +34,49 @@ import java.util.stream.Collectors;
 public final class RouteActionArguments {
 
     public static Object[] getRouteActionParameters(RouteContext context) {
-        Method actionMethod = context.routeAction();
-        Request request = context.request();
+        Route route = context.route();
+        ArgumentResolver[] resolvers = route.getArgumentResolvers();
+        if (null == resolvers) {
+            resolvers = getArgumentResolvers(route.getAction());
+            route.setArgumentResolvers(resolvers);
+        }
+
+        Object[] args = new Object[resolvers.length];
+        for (int i = 0; i < resolvers.length; i++) {
+            args[i] = resolvers[i].resolve(context);
+        }
+        return args;
+    }
+
+    /**
+     * Build the argument resolvers of a route method
+     *
+     * @param actionMethod route method
+     * @return resolver per method parameter
+     */
+    public static ArgumentResolver[] getArgumentResolvers(Method actionMethod) {
         actionMethod.setAccessible(true);
 
         Parameter[] parameters = actionMethod.getParameters();
-        Object[] args = new Object[parameters.length];
-        String[] parameterNames = ASMUtils.findMethodParmeterNames(actionMethod);
+        ArgumentResolver[] resolvers = new ArgumentResolver[parameters.length];
+        String[] parameterNames = parameters.length > 0 ? ASMUtils.findMethodParmeterNames(actionMethod) : null;
 
         for (int i = 0, len = parameters.length; i < len; i++) {
             Parameter parameter = parameters[i];
             String paramName = Objects.requireNonNull(parameterNames)[i];
             Type argType = parameter.getParameterizedType();
             if (containsAnnotation(parameter)) {
-                args[i] = getAnnotationParam(parameter, paramName, request);
+                resolvers[i] = getAnnotationParam(parameter, paramName);
                 continue;
             }
             if (ReflectKit.isBasicType(argType)) {
-                args[i] = request.query(paramName);
+                Function<String, Object> converter = ReflectKit.converter(argType);
+                resolvers[i] = context -> converter.apply(firstValue(context.request().queryParams(), paramName));
                 continue;
             }
-            args[i] = getCustomType(parameter, paramName, context);
+            resolvers[i] = getCustomType(parameter, paramName);
         }
-        return args;
+        return resolvers;
     }
 
     private static boolean containsAnnotation(Parameter parameter) {
@@ -65,154 +89,148 @@ public final class RouteActionArguments {
                 parameter.getAnnotation(Multipart.class) != null;
     }
 
-    private static Object getCustomType(Parameter parameter, String paramName, RouteContext context) {
+    private static ArgumentResolver getCustomType(Parameter parameter, String paramName) {
         Type argType = parameter.getParameterizedType();
         if (argType == RouteContext.class) {
-            return context;
+            return context -> context;
         } else if (argType == Request.class) {
-            return context.request();
+            return RouteContext::request;
         } else if (argType == Response.class) {
-            return context.response();
+            return RouteContext::response;
         } else if (argType == Session.class || argType == HttpSession.class) {
-            return context.request().session();
+            return context -> context.request().session();
         } else if (argType == FileItem.class) {
-            return new ArrayList<>(context.request().fileItems().values()).get(0);
+            return context -> new ArrayList<>(context.request().fileItems().values()).get(0);
         } else if (argType == ModelAndView.class) {
-            return new ModelAndView();
+            return context -> new ModelAndView();
         } else if (argType == Map.class) {
-            return context.request().formParams();
+            return context -> context.request().formParams();
         } else if (argType == Optional.class) {
             ParameterizedType firstParam = (ParameterizedType) parameter.getParameterizedType();
             Type paramsOfFirstGeneric = firstParam.getActualTypeArguments()[0];
             Class<?> modelType = ReflectKit.form(paramsOfFirstGeneric.getTypeName());
-            return Optional.ofNullable(parseModel(modelType, context.request(), null));
+            ArgumentResolver model = getModel(modelType, null);
+            return context -> Optional.ofNullable(model.resolve(context));
         } else if (ParameterizedType.class.isInstance(argType)) {
-            String name = parameter.getName();
-            List<String> values = context.request().formParams().get(name);
-            return getParameterizedTypeValues(values, argType);
+            Function<String, Object> converter = getElementConverter(argType);
+            return context -> getParameterizedTypeValues(context.request().formParams().get(paramName), converter);
         } else if (ReflectKit.isArray(argType)) {
-            List<String> values = context.request().formParams().get(paramName);
-            if (null == values) {
-                return null;
-            }
-            Class arrayCls = (Class) argType;
-            Object aObject = Array.newInstance(arrayCls.getComponentType(), values.size());
-            for (int i = 0; i < values.size(); i++) {
-                Array.set(aObject, i, ReflectKit.convert(arrayCls.getComponentType(), values.get(i)));
-            }
-            return aObject;
+            Class<?> componentType = ((Class<?>) argType).getComponentType();
+            Function<String, Object> converter = ReflectKit.converter(componentType);
+            return context -> {
+                List<String> values = context.request().formParams().get(paramName);
+                if (null == values) {
+                    return null;
+                }
+                Object aObject = Array.newInstance(componentType, values.size());
+                for (int i = 0; i < values.size(); i++) {
+                    Array.set(aObject, i, converter.apply(values.get(i)));
+                }
+                return aObject;
+            };
         } else {
-            return parseModel(ReflectKit.typeToClass(argType), context.request(), null);
+            return getModel(ReflectKit.typeToClass(argType), null);
         }
     }
 
-    private static Object getAnnotationParam(Parameter parameter, String paramName, Request request) {
+    private static ArgumentResolver getAnnotationParam(Parameter parameter, String paramName) {
         Type argType = parameter.getParameterizedType();
         Query query = parameter.getAnnotation(Query.class);
-
-        ParamStruct.ParamStructBuilder structBuilder = ParamStruct.builder().argType(argType).request(request);
-
         if (null != query) {
-            return getQueryParam(structBuilder.query(query).paramName(paramName).build());
+            String name = StringKit.isBlank(query.name()) ? paramName : query.name();
+            return getValueParam(argType, name, query.name(), query.defaultValue(), Request::queryParams);
         }
 
         Form form = parameter.getAnnotation(Form.class);
         if (null != form) {
-            return getFormParam(structBuilder.form(form).paramName(paramName).build());
+            String name = StringKit.isBlank(form.name()) ? paramName : form.name();
+            return getValueParam(argType, name, form.name(), form.defaultValue(), Request::formParams);
         }
 
         Body body = parameter.getAnnotation(Body.class);
         if (null != body) {
-            return getBodyParam(structBuilder.build());
+            return getBodyParam(argType);
         }
         PathParam pathParam = parameter.getAnnotation(PathParam.class);
         if (null != pathParam) {
-            return getPathParam(structBuilder.pathParam(pathParam).paramName(paramName).build());
+            String name = StringKit.isEmpty(pathParam.name()) ? paramName : pathParam.name();
+            String defaultValue = pathParam.defaultValue();
+            Function<String, Object> converter = ReflectKit.converter(argType);
+            return context -> {
+                String val = context.request().pathString(name);
+                return converter.apply(StringKit.isBlank(val) ? defaultValue : val);
+            };
         }
         Header header = parameter.getAnnotation(Header.class);
         if (null != header) {
-            return getHeader(structBuilder.header(header).paramName(paramName).build());
+            String key = StringKit.isEmpty(header.value()) ? paramName : header.value();
+            String defaultValue = header.defaultValue();
+            Function<String, Object> converter = ReflectKit.converter(argType);
+            return context -> {
+                String val = context.request().header(key);
+                return converter.apply(StringKit.isBlank(val) ? defaultValue : val);
+            };
         }
         // cookie param
         Cookie cookie = parameter.getAnnotation(Cookie.class);
         if (null != cookie) {
-            return getCookie(structBuilder.cookie(cookie).paramName(paramName).build());
+            String cookieName = StringKit.isEmpty(cookie.value()) ? paramName : cookie.value();
+            String defaultValue = cookie.defaultValue();
+            Function<String, Object> converter = ReflectKit.converter(argType);
+            return context -> {
+                String val = context.request().cookie(cookieName);
+                return converter.apply(null == val ? defaultValue : val);
+            };
         }
         // form multipart
         Multipart multipart = parameter.getAnnotation(Multipart.class);
         if (null != multipart && argType == FileItem.class) {
             String name = StringKit.isBlank(multipart.value()) ? paramName : multipart.value();
-            return request.fileItem(name).orElse(null);
+            return context -> context.request().fileItem(name).orElse(null);
         }
-        return null;
+        return context -> null;
     }
 
-    private static Object getBodyParam(ParamStruct paramStruct) {
-        Type argType = paramStruct.argType;
-        Request request = paramStruct.request;
-
+    private static ArgumentResolver getBodyParam(Type argType) {
         if (ReflectKit.isPrimitive(argType)) {
-            return ReflectKit.convert(argType, request.bodyToString());
-        } else {
-            String json = request.bodyToString();
-            if (String.class.equals(argType)) {
-                return json;
-            }
-            return StringKit.isNotEmpty(json) ? JsonKit.fromJson(json, argType) : null;
+            Function<String, Object> converter = ReflectKit.converter(argType);
+            return context -> converter.apply(context.request().bodyToString());
         }
-    }
-
-    private static Object getQueryParam(ParamStruct paramStruct) {
-        Query query = paramStruct.query;
-        Type argType = paramStruct.argType;
-        Request request = paramStruct.request;
-        if (null == query) {
-            return null;
-        }
-
-        String name = StringKit.isBlank(query.name()) ? paramStruct.paramName : query.name();
-
-        if (ReflectKit.isBasicType(argType) || argType.equals(Date.class)
-                || argType.equals(BigDecimal.class) || argType.equals(LocalDate.class)
-                || argType.equals(LocalDateTime.class) || (argType instanceof Class && ((Class) argType).isEnum())) {
-
-            String value = request.query(name).orElseGet(() -> getDefaultValue(query.defaultValue(), argType));
-
-            return ReflectKit.convert(argType, value);
-        } else {
-            if (argType instanceof ParameterizedType) {
-
-                List<String> values = request.queryParams().get(query.name());
-                return getParameterizedTypeValues(values, argType);
-            }
-            return parseModel(ReflectKit.typeToClass(argType), request, query.name());
+        if (String.class.equals(argType)) {
+            return context -> context.request().bodyToString();
         }
+        return context -> {
+            String json = context.request().bodyToString();
+            return StringKit.isNotEmpty(json) ? JsonKit.fromJson(json, argType) : null;
+        };
     }
 
-    private static Object getFormParam(ParamStruct paramStruct) {
-        Form form = paramStruct.form;
-        Type argType = paramStruct.argType;
-        Request request = paramStruct.request;
-        if (null == form) {
-            return null;
-        }
-
-        String name = StringKit.isBlank(form.name()) ? paramStruct.paramName : form.name();
-
+    /**
+     * Query or form parameter
+     *
+     * @param name         parameter name
+     * @param prefix       name given on the annotation, prefix of the model fields
+     * @param defaultValue annotation default value
+     * @param source       parameter values of the request
+     */
+    private static ArgumentResolver getValueParam(Type argType, String name, String prefix, String defaultValue,
+                                                  Function<Request, Map<String, List<String>>> source) {
         if (ReflectKit.isBasicType(argType) || argType.equals(Date.class)
                 || argType.equals(BigDecimal.class) || argType.equals(LocalDate.class)
-                || argType.equals(LocalDateTime.class) || (argType instanceof Class && ((Class) argType).isEnum())) {
-
-            String value = request.form(name).orElseGet(() -> getDefaultValue(form.defaultValue(), argType));
-
-            return ReflectKit.convert(argType, value);
-        } else {
-            if (argType instanceof ParameterizedType) {
-                List<String> values = request.formParams().get(form.name());
-                return getParameterizedTypeValues(values, argType);
-            }
-            return parseModel(ReflectKit.typeToClass(argType), request, form.name());
+                || argType.equals(LocalDateTime.class) || (argType instanceof Class && ((Class<?>) argType).isEnum())) {
+
+            String value = getDefaultValue(defaultValue, argType);
+            Function<String, Object> converter = ReflectKit.converter(argType);
+            return context -> {
+                String val = firstValue(source.apply(context.request()), name);
+                return converter.apply(null == val ? value : val);
+            };
+        }
+        if (argType instanceof ParameterizedType) {
+            Function<String, Object> converter = getElementConverter(argType);
+            return context -> getParameterizedTypeValues(source.apply(context.request()).get(prefix), converter);
         }
+        return getModel(ReflectKit.typeToClass(argType), prefix);
     }
 
     private static String getDefaultValue(String defaultValue, Type argType) {
@@ -239,46 +257,9 @@ public final class RouteActionArguments {
         return defaultValue;
     }
 
-    private static Object getCookie(ParamStruct paramStruct) throws BladeException {
-        Type argType = paramStruct.argType;
-        Cookie cookie = paramStruct.cookie;
-        String paramName = paramStruct.paramName;
-        Request request = paramStruct.request;
-
-        String cookieName = StringKit.isEmpty(cookie.value()) ? paramName : cookie.value();
-        String val = request.cookie(cookieName);
-        if (null == val) {
-            val = cookie.defaultValue();
-        }
-        return ReflectKit.convert(argType, val);
-    }
-
-    private static Object getHeader(ParamStruct paramStruct) throws BladeException {
-        Type argType = paramStruct.argType;
-        Header header = paramStruct.header;
-        String paramName = paramStruct.paramName;
-        Request request = paramStruct.request;
-
-        String key = StringKit.isEmpty(header.value()) ? paramName : header.value();
-        String val = request.header(key);
-        if (StringKit.isBlank(val)) {
-            val = header.defaultValue();
-        }
-        return ReflectKit.convert(argType, val);
-    }
-
-    private static Object getPathParam(ParamStruct paramStruct) {
-        Type argType = paramStruct.argType;
-        PathParam pathParam = paramStruct.pathParam;
-        String paramName = paramStruct.paramName;
-        Request request = paramStruct.request;
-
-        String name = StringKit.isEmpty(pathParam.name()) ? paramName : pathParam.name();
-        String val = request.pathString(name);
-        if (StringKit.isBlank(val)) {
-            val = pathParam.defaultValue();
-        }
-        return ReflectKit.convert(argType, val);
+    private static String firstValue(Map<String, List<String>> params, String name) {
+        List<String> values = params.get(name);
+        return null != values && values.size() > 0 ? values.get(0) : null;
     }
 
     public static <T> T parseModel(Class<T> argType, Request request, String name) {
@@ -310,14 +291,52 @@ public final class RouteActionArguments {
         return obj;
     }
 
-    private static Object getParameterizedTypeValues(List<String> values, Type argType) {
-        if (null == values || null == argType) {
-            return null;
+    /**
+     * Same binding as {@link #parseModel(Class, Request, String)} with the fields resolved once
+     */
+    private static ArgumentResolver getModel(Class<?> modelType, String name) {
+        List<Field> fields = ReflectKit.loopFields(modelType).stream()
+                .filter(field -> !"serialVersionUID".equals(field.getName()))
+                .collect(Collectors.toList());
+
+        int size = fields.size();
+        Field[] modelFields = fields.toArray(new Field[0]);
+        String[] queryNames = new String[size];
+        List<Function<String, Object>> converters = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Field field = modelFields[i];
+            queryNames[i] = StringKit.isNotBlank(name) ? name + "[" + field.getName() + "]" : field.getName();
+            converters.add(ReflectKit.converter(field.getType()));
         }
+
+        return context -> {
+            Object obj = ReflectKit.newInstance(modelType);
+            Map<String, List<String>> queryParams = context.request().queryParams();
+            for (int i = 0; i < size; i++) {
+                String fieldValue = firstValue(queryParams, queryNames[i]);
+                if (StringKit.isNotBlank(fieldValue)) {
+                    Object value = converters.get(i).apply(fieldValue);
+                    if (null != value) {
+                        ReflectKit.setFieldValue(modelFields[i], obj, value);
+                    }
+                }
+            }
+            return obj;
+        };
+    }
+
+    private static Function<String, Object> getElementConverter(Type argType) {
         ParameterizedType parameterizedType = (ParameterizedType) argType;
-        Class<?> realType = (Class) parameterizedType.getActualTypeArguments()[0];
+        Class<?> realType = (Class<?>) parameterizedType.getActualTypeArguments()[0];
+        return ReflectKit.converter(realType);
+    }
+
+    private static Object getParameterizedTypeValues(List<String> values, Function<String, Object> converter) {
+        if (null == values) {
+            return null;
+        }
         return values.stream()
-                .map(s -> ReflectKit.convert(realType, s))
+                .map(converter)
                 .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+}
@@ -21,15 +21,20 @@ import com.hellokaton.blade.exception.InternalErrorException;
 import com.hellokaton.blade.kit.ReflectKit;
 import com.hellokaton.blade.kit.StringKit;
 import com.hellokaton.blade.kit.UUID;
+import com.hellokaton.blade.mvc.http.CookieSession;
 import com.hellokaton.blade.mvc.http.Request;
 import com.hellokaton.blade.mvc.http.Session;
+import com.hellokaton.blade.mvc.http.session.CookieSessionCodec;
 import com.hellokaton.blade.mvc.http.session.SessionManager;
 import com.hellokaton.blade.options.HttpOptions;
+import lombok.extern.slf4j.Slf4j;
 
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
-import static com.hellokaton.blade.mvc.BladeConst.ENV_KEY_SESSION_KEY;
-import static com.hellokaton.blade.mvc.BladeConst.ENV_KEY_SESSION_TIMEOUT;
+import static com.hellokaton.blade.mvc.BladeConst.*;
 
 /**
  * session handler
@@ -37,47 +42,111 @@ import static com.hellokaton.blade.mvc.BladeConst.ENV_KEY_SESSION_TIMEOUT;
  * @author biezhi
  * 2017/6/3
  */
+@Slf4j
 public class SessionHandler {
 
     private final Class<? extends Session> sessionType;
     private final SessionManager sessionManager;
     private int timeout;
     private String sessionKey;
+    private CookieSessionCodec cookieCodec;
 
     public SessionHandler(Blade blade) {
         this.sessionType = blade.httpOptions().getSessionType();
         this.sessionManager = blade.sessionManager();
 
         this.initOptions(blade.httpOptions(), blade.environment());
+        if (CookieSession.class.isAssignableFrom(sessionType)) {
+            this.cookieCodec = this.createCookieCodec(blade.environment());
+        }
     }
 
-    public Session createSession(Request request) {
+    /**
+     * Find the session of the request cookie and renew it
+     *
+     * @return session or null when the request has no live session
+     */
+    public Session findSession(Request request) {
+        if (null != cookieCodec) {
+            return this.findCookieSession(request);
+        }
         Session session = getSession(request);
+        if (null == session) {
+            return null;
+        }
+        long now = Instant.now().getEpochSecond();
+        if (session.expired() < now) {
+            sessionManager.destroySession(session);
+            return null;
+        }
+        // renewal
+        sessionManager.renewSession(session, now + timeout);
+        return session;
+    }
 
+    /**
+     * Create and store a new session for the request
+     */
+    public Session createSession(Request request) {
         long now = Instant.now().getEpochSecond();
+        Session session = ReflectKit.newInstance(sessionType);
         if (null == session) {
-            long expired = now + timeout;
-            session = ReflectKit.newInstance(sessionType);
-            if (null == session) {
-                throw new InternalErrorException("Unable to create session object :(");
-            }
-            session.id(UUID.UU32());
-            session.created(now);
-            session.expired(expired);
+            throw new InternalErrorException("Unable to create session object :(");
+        }
+        session.id(UUID.UU32());
+        session.created(now);
+        session.expired(now + timeout);
+        if (null != cookieCodec) {
+            // nothing to store, the session goes out with the response cookie
+            ((CookieSession) session).codec(cookieCodec);
+        } else if (!request.isWarmUp()) {
             sessionManager.createSession(session);
-            return session;
-        } else {
-            if (session.expired() < now) {
-                sessionManager.destroySession(session);
-            } else {
-                // renewal
-                long expired = now + timeout;
-                session.expired(expired);
-            }
         }
         return session;
     }
 
+    private Session findCookieSession(Request request) {
+        CookieSession session = cookieCodec.decode(request.cookie(this.sessionKey));
+        if (null == session) {
+            return null;
+        }
+        long now = Instant.now().getEpochSecond();
+        if (session.expired() < now) {
+            return null;
+        }
+        // renewal resends the cookie, so it waits until half of the timeout has passed
+        if (session.expired() - now < timeout / 2) {
+            session.expired(now + timeout);
+            session.changed(true);
+        }
+        session.codec(cookieCodec);
+        return session;
+    }
+
+    private CookieSessionCodec createCookieCodec(Environment environment) {
+        return new CookieSessionCodec(cookieSecrets(environment),
+                environment.getBoolean(ENV_KEY_SESSION_ENCRYPT, false),
+                environment.getInt(ENV_KEY_SESSION_COOKIE_SIZE, 4000),
+                (Class<? extends CookieSession>) sessionType);
+    }
+
+    /**
+     * Secrets of cookie sessions, the first one signs.
+     * <p>
+     * A random secret would differ per node and per restart and log every user
+     * out, so a missing secret is a configuration error.
+     */
+    public static List<String> cookieSecrets(Environment environment) {
+        List<String> secrets = Arrays.stream(environment.get(ENV_KEY_SESSION_SECRET, "").split(","))
+                .map(String::trim)
+                .filter(StringKit::isNotEmpty)
+                .collect(Collectors.toList());
+        if (secrets.isEmpty()) {
+            throw new InternalErrorException("Cookie sessions need " + ENV_KEY_SESSION_SECRET + " to be configured");
+        }
+        return secrets;
+    }
+
     private Session getSession(Request request) {
         String cookieHeader = request.cookie(this.sessionKey);
         if (StringKit.isEmpty(cookieHeader)) {
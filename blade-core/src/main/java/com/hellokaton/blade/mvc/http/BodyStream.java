@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.mvc.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.LastHttpContent;
+import lombok.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Request body of a streaming route, chunks are delivered as they arrive
+ * instead of being aggregated into memory.
+ * <p>
+ * Chunks received before a consumer is registered, or while the stream is paused,
+ * are kept and reading from the connection is suspended until they are consumed.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+public class BodyStream {
+
+    private final Channel channel;
+    private final Queue<ByteBuf> pending = new ArrayDeque<>();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    private Consumer<ByteBuf> consumer;
+    private boolean paused;
+    private boolean ended;
+    private boolean discarded;
+    private volatile long received;
+
+    public BodyStream(Channel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Register the chunk consumer, it is called on the event loop and must not block.
+     * The buffer is released after the consumer returns, retain it to keep it longer.
+     *
+     * @param consumer chunk consumer
+     * @return a future completed once the last chunk has been consumed
+     */
+    public CompletableFuture<Void> onData(@NonNull Consumer<ByteBuf> consumer) {
+        this.execute(() -> {
+            if (null != this.consumer) {
+                this.completion.completeExceptionally(new IllegalStateException("Body stream already has a consumer"));
+                return;
+            }
+            this.consumer = consumer;
+            this.drain();
+        });
+        return this.completion;
+    }
+
+    /**
+     * Stop delivering chunks and reading from the connection.
+     */
+    public void pause() {
+        this.execute(() -> {
+            this.paused = true;
+            this.drain();
+        });
+    }
+
+    /**
+     * Continue delivering chunks after {@link #pause()}.
+     */
+    public void resume() {
+        this.execute(() -> {
+            this.paused = false;
+            this.drain();
+        });
+    }
+
+    /**
+     * @return number of body bytes received so far
+     */
+    public long received() {
+        return this.received;
+    }
+
+    /**
+     * Feed a chunk of the request body, called on the event loop.
+     */
+    public void offer(HttpContent content) {
+        if (this.discarded) {
+            return;
+        }
+        ByteBuf buf = content.content();
+        this.received += buf.readableBytes();
+        if (buf.isReadable()) {
+            this.pending.add(buf.retain());
+        }
+        if (content instanceof LastHttpContent) {
+            this.ended = true;
+        }
+        this.drain();
+    }
+
+    /**
+     * Fail the stream, e.g. when the connection has been closed.
+     */
+    public void fail(Throwable cause) {
+        if (this.discarded) {
+            return;
+        }
+        this.completion.completeExceptionally(cause);
+        this.discard();
+    }
+
+    /**
+     * Drop buffered and remaining chunks once the request has been answered.
+     */
+    public void discard() {
+        if (this.discarded) {
+            return;
+        }
+        this.discarded = true;
+        ByteBuf buf;
+        while (null != (buf = this.pending.poll())) {
+            buf.release();
+        }
+        if (!this.completion.isDone()) {
+            this.completion.completeExceptionally(new IllegalStateException("Body stream has been discarded"));
+        }
+        // keep reading, the rest of the body is skipped
+        this.channel.config().setAutoRead(true);
+    }
+
+    private void drain() {
+        if (this.discarded) {
+            return;
+        }
+        while (null != this.consumer && !this.paused && !this.pending.isEmpty()) {
+            ByteBuf buf = this.pending.poll();
+            try {
+                this.consumer.accept(buf);
+            } catch (Throwable e) {
+                this.fail(e);
+                return;
+            } finally {
+                buf.release();
+            }
+        }
+        boolean readable = this.pending.isEmpty() && (this.ended || null != this.consumer && !this.paused);
+        if (this.pending.isEmpty() && this.ended && null != this.consumer) {
+            this.completion.complete(null);
+        }
+        if (this.channel.config().isAutoRead() != readable) {
+            this.channel.config().setAutoRead(readable);
+        }
+    }
+
+    private void execute(Runnable task) {
+        if (this.channel.eventLoop().inEventLoop()) {
+            task.run();
+        } else {
+            this.channel.eventLoop().execute(task);
+        }
+    }
+
+}
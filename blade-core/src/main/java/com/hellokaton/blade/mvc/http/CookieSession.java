@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.mvc.http;
+
+import com.hellokaton.blade.mvc.http.session.CookieSessionCodec;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Stateless session carried by a signed cookie, select it with
+ * {@code HttpOptions.setSessionType(CookieSession.class)}.
+ * <p>
+ * Nothing is kept on the server, the whole session is encoded into the cookie
+ * by {@link CookieSessionCodec} and verified on every request. The cookie is
+ * only sent again when the session changed, so keep the attributes small.
+ * <p>
+ * {@link #attributes()} is read only, change it with {@link #attribute(String, Object)}.
+ * Attribute values are limited to strings, byte arrays and boxed primitives.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+public class CookieSession implements Session {
+
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    private String id;
+    private String ip;
+    private long created = -1;
+    private long expired = -1;
+
+    private boolean changed = true;
+    private CookieSessionCodec codec;
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public void id(String id) {
+        this.id = id;
+    }
+
+    @Override
+    public String ip() {
+        return ip;
+    }
+
+    @Override
+    public void ip(String ip) {
+        if (!Objects.equals(this.ip, ip)) {
+            this.ip = ip;
+            this.changed = true;
+        }
+    }
+
+    @Override
+    public <T> T attribute(String name) {
+        Object object = this.attributes.get(name);
+        return null != object ? (T) object : null;
+    }
+
+    @Override
+    public void attribute(String name, Object value) {
+        if (!CookieSessionCodec.isSupported(value)) {
+            throw CookieSessionCodec.unsupported(value);
+        }
+        this.attributes.put(name, value);
+        this.changed = true;
+    }
+
+    @Override
+    public Map<String, Object> attributes() {
+        return Collections.unmodifiableMap(attributes);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        if (this.attributes.containsKey(name)) {
+            this.attributes.remove(name);
+            this.changed = true;
+        }
+    }
+
+    @Override
+    public long created() {
+        return created;
+    }
+
+    @Override
+    public void created(long created) {
+        this.created = created;
+    }
+
+    @Override
+    public long expired() {
+        return expired;
+    }
+
+    @Override
+    public void expired(long expired) {
+        this.expired = expired;
+    }
+
+    /**
+     * Whether the cookie has to be sent again
+     */
+    public boolean isChanged() {
+        return changed;
+    }
+
+    public void changed(boolean changed) {
+        this.changed = changed;
+    }
+
+    public void codec(CookieSessionCodec codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * @return cookie value of the session, or null when it exceeds the size limit
+     */
+    public String encode() {
+        return codec.encode(this);
+    }
+
+}
@@ -19,18 +19,17 @@ import com.hellokaton.blade.exception.HttpParseException;
 import com.hellokaton.blade.kit.CaseInsensitiveHashMap;
 import com.hellokaton.blade.kit.PathKit;
 import com.hellokaton.blade.kit.StringKit;
+import com.hellokaton.blade.kit.WebKit;
 import com.hellokaton.blade.mvc.HttpConst;
 import com.hellokaton.blade.mvc.WebContext;
 import com.hellokaton.blade.mvc.handler.SessionHandler;
+import com.hellokaton.blade.mvc.http.session.LazySession;
 import com.hellokaton.blade.mvc.http.session.SessionManager;
 import com.hellokaton.blade.mvc.multipart.FileItem;
 import com.hellokaton.blade.server.NettyHttpConst;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
-import io.netty.handler.codec.http.FullHttpRequest;
-import io.netty.handler.codec.http.HttpHeaders;
-import io.netty.handler.codec.http.HttpUtil;
-import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.*;
 import io.netty.handler.codec.http.cookie.ServerCookieDecoder;
 import io.netty.handler.codec.http.multipart.*;
 import io.netty.util.CharsetUtil;
@@ -40,6 +39,7 @@ import lombok.extern.slf4j.Slf4j;
 import lombok.var;
 
 import java.io.IOException;
+import java.net.SocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 
@@ -58,6 +58,8 @@ public class HttpRequest implements Request {
 
     private static final ByteBuf EMPTY_BUF = Unpooled.copiedBuffer("", CharsetUtil.UTF_8);
 
+    private static final int MAX_FORM_PARAMS = 1024;
+
     private static SessionHandler SESSION_HANDLER = null;
 
     static {
@@ -68,24 +70,34 @@ public class HttpRequest implements Request {
     }
 
     private ByteBuf body = EMPTY_BUF;
+    private SocketAddress remoteSocketAddress;
     private String remoteAddress;
     private String uri;
+    private String routePath;
     private String url;
     private String protocol;
     private String method;
     private String contentType;
     private boolean keepAlive;
     private Session session;
+    private boolean sessionEnabled;
+
+    /**
+     * Netty request headers, headers, cookies and parameters are parsed from them on first access
+     */
+    private HttpHeaders httpHeaders;
 
-    private boolean isMultipart;
+    private Boolean isMultipart;
+    private BodyStream bodyStream;
+    private boolean released;
 
     private Map<String, Object> attributes = Collections.emptyMap();
     private Map<String, String> pathParams = Collections.emptyMap();
-    private Map<String, List<String>> queryParams = Collections.emptyMap();
-    private Map<String, List<String>> formParams = Collections.emptyMap();
-    private Map<String, List<String>> headers = Collections.emptyMap();
-    private Map<String, Cookie> cookies = Collections.emptyMap();
-    private Map<String, FileItem> fileItems = Collections.emptyMap();
+    private Map<String, List<String>> queryParams;
+    private Map<String, List<String>> formParams;
+    private Map<String, List<String>> headers;
+    private Map<String, Cookie> cookies;
+    private Map<String, FileItem> fileItems;
 
     public HttpRequest(Request request) {
         this.pathParams = request.pathParams();
@@ -103,6 +115,7 @@ public class HttpRequest implements Request {
             this.uri = pathEndPos < 0 ? this.url : this.url.substring(0, pathEndPos);
         }
 
+        this.queryParams = request.queryParams();
         this.formParams = request.formParams();
         this.protocol = request.protocol();
     }
@@ -121,6 +134,9 @@ public class HttpRequest implements Request {
 
     @Override
     public String remoteAddress() {
+        if (null == this.remoteAddress && null != this.remoteSocketAddress) {
+            this.remoteAddress = this.remoteSocketAddress.toString().substring(1);
+        }
         return this.remoteAddress;
     }
 
@@ -129,6 +145,14 @@ public class HttpRequest implements Request {
         return this.uri;
     }
 
+    @Override
+    public String routePath() {
+        if (null == this.routePath && null != this.uri) {
+            this.routePath = PathKit.normalizePath(this.uri);
+        }
+        return this.routePath;
+    }
+
     @Override
     public String url() {
         return this.url;
@@ -154,22 +178,32 @@ public class HttpRequest implements Request {
 
     @Override
     public Map<String, List<String>> queryParams() {
+        if (null == this.queryParams) {
+            this.queryParams = Collections.emptyMap();
+            if (null != this.url && this.url.indexOf('?') >= 0) {
+                QueryStringDecoder queryDecoder = new QueryStringDecoder(this.url, StandardCharsets.UTF_8);
+                this.queryParams = queryDecoder.parameters();
+            }
+        }
         return this.queryParams;
     }
 
     @Override
     public Map<String, List<String>> formParams() {
+        if (null == this.formParams) {
+            this.parseBody();
+        }
         return this.formParams;
     }
 
     @Override
     public Set<String> parameterNames() {
-        return this.formParams.keySet();
+        return this.formParams().keySet();
     }
 
     @Override
     public List<String> formValue(String paramName) {
-        return this.formParams.get(paramName);
+        return this.formParams().get(paramName);
     }
 
     @Override
@@ -189,15 +223,15 @@ public class HttpRequest implements Request {
             return false;
         }
 
-        String acceptEncoding = this.header(NettyHttpConst.ACCEPT_ENCODING);
-        if (StringKit.isEmpty(acceptEncoding)) {
-            return false;
-        }
-        return acceptEncoding.contains("gzip");
+        return WebKit.acceptQuality(this.header(NettyHttpConst.ACCEPT_ENCODING), "gzip") > 0;
     }
 
     @Override
     public Session session() {
+        if (null == this.session && this.sessionEnabled) {
+            // created by the handler only when it is written
+            this.session = new LazySession(() -> SESSION_HANDLER.createSession(this));
+        }
         return this.session;
     }
 
@@ -214,6 +248,9 @@ public class HttpRequest implements Request {
 
     @Override
     public Map<String, Cookie> cookies() {
+        if (null == this.cookies) {
+            this.parseCookie();
+        }
         return this.cookies;
     }
 
@@ -224,15 +261,39 @@ public class HttpRequest implements Request {
 
     @Override
     public Request cookie(@NonNull Cookie cookie) {
-        this.cookies().put(cookie.name(), cookie);
+        if (this.cookies().isEmpty()) {
+            this.cookies = new HashMap<>(8);
+        }
+        this.cookies.put(cookie.name(), cookie);
         return this;
     }
 
     @Override
     public Map<String, List<String>> headers() {
+        if (null == this.headers) {
+            this.parseHeaders();
+        }
         return this.headers;
     }
 
+    @Override
+    public String header(@NonNull String name) {
+        if (null == this.httpHeaders) {
+            return Request.super.header(name);
+        }
+        String value = this.httpHeaders.get(name);
+        return null != value ? value : "";
+    }
+
+    @Override
+    public List<String> getHeader(@NonNull String name) {
+        if (null == this.httpHeaders) {
+            return Request.super.getHeader(name);
+        }
+        List<String> values = this.httpHeaders.getAll(name);
+        return values.isEmpty() ? null : values;
+    }
+
     @Override
     public boolean keepAlive() {
         return this.keepAlive;
@@ -248,6 +309,9 @@ public class HttpRequest implements Request {
 
     @Override
     public Map<String, FileItem> fileItems() {
+        if (null == this.fileItems) {
+            this.parseBody();
+        }
         return fileItems;
     }
 
@@ -256,49 +320,68 @@ public class HttpRequest implements Request {
         return this.body;
     }
 
+    @Override
+    public BodyStream bodyStream() {
+        return this.bodyStream;
+    }
+
     @Override
     public boolean isMultipart() {
+        if (null == this.isMultipart) {
+            this.isMultipart = !HttpMethod.GET.name().equals(this.method())
+                    && HttpConst.CONTENT_TYPE_MULTIPART.equals(this.parseContentType());
+        }
         return isMultipart;
     }
 
     public void init(String remoteAddress, FullHttpRequest fullHttpRequest) {
         this.remoteAddress = remoteAddress.substring(1);
-        this.keepAlive = HttpUtil.isKeepAlive(fullHttpRequest);
-        this.url = fullHttpRequest.uri();
+        this.init(fullHttpRequest);
+    }
+
+    public void init(SocketAddress remoteAddress, FullHttpRequest fullHttpRequest) {
+        this.remoteSocketAddress = remoteAddress;
+        this.init(fullHttpRequest);
+    }
+
+    /**
+     * Init a request whose body is received through the given stream
+     */
+    public void init(SocketAddress remoteAddress, io.netty.handler.codec.http.HttpRequest nettyRequest, BodyStream bodyStream) {
+        this.remoteSocketAddress = remoteAddress;
+        this.bodyStream = bodyStream;
+        this.initRequest(nettyRequest);
+    }
+
+    private void init(FullHttpRequest fullHttpRequest) {
+        this.initRequest(fullHttpRequest);
+        if (HttpMethod.GET.name().equals(this.method())) {
+            return;
+        }
+
+        ByteBuf content = fullHttpRequest.content();
+        if (content.isReadable()) {
+            this.body = content.retainedSlice();
+        }
+    }
+
+    private void initRequest(io.netty.handler.codec.http.HttpRequest nettyRequest) {
+        this.httpHeaders = nettyRequest.headers();
+        this.keepAlive = HttpUtil.isKeepAlive(nettyRequest);
+        this.url = nettyRequest.uri();
 
         int pathEndPos = this.url().indexOf('?');
         this.uri = pathEndPos < 0 ? this.url() : this.url().substring(0, pathEndPos);
-        this.protocol = fullHttpRequest.protocolVersion().text();
-        this.method = fullHttpRequest.method().name();
+        this.protocol = nettyRequest.protocolVersion().text();
+        this.method = nettyRequest.method().name();
 
         String cleanUri = this.uri;
         if (!"/".equals(this.contextPath())) {
             cleanUri = PathKit.cleanPath(cleanUri.replaceFirst(this.contextPath(), "/"));
             this.uri = cleanUri;
         }
-
-        HttpHeaders httpHeaders = fullHttpRequest.headers();
-        if (null == this.headers || this.headers.isEmpty()) {
-            this.headers = new CaseInsensitiveHashMap<>(httpHeaders.size());
-            for (Map.Entry<String, String> header : httpHeaders) {
-                String headerName = header.getKey();
-                if (this.headers.containsKey(headerName)) {
-                    List<String> tmpHeader = this.headers.get(headerName);
-                    if (null != tmpHeader && tmpHeader.size() == 1) {
-                        this.headers.put(headerName, Arrays.asList(tmpHeader.get(0), header.getValue()));
-                    }
-                    if (null != tmpHeader && tmpHeader.size() > 1) {
-                        tmpHeader.add(header.getValue());
-                        this.headers.put(headerName, tmpHeader);
-                    }
-                } else {
-                    this.headers.put(headerName, Collections.singletonList(header.getValue()));
-                }
-            }
-        }
-
-        this.parseContentType();
-        this.parseCookie();
+        // normalized once here, route lookups use it as is
+        this.routePath = PathKit.normalizePath(this.uri);
 
         if (WebContext.blade().httpOptions().isEnableSession()) {
             if (null == SESSION_HANDLER) {
@@ -306,46 +389,127 @@ public class HttpRequest implements Request {
             }
             SessionManager sessionManager = WebContext.blade().sessionManager();
             if (null != sessionManager) {
-                this.session = SESSION_HANDLER.createSession(this);
+                this.session = SESSION_HANDLER.findSession(this);
+                this.sessionEnabled = true;
             }
         }
+    }
 
-        QueryStringDecoder queryDecoder = new QueryStringDecoder(this.url, StandardCharsets.UTF_8);
-        Map<String, List<String>> query = queryDecoder.parameters();
-        if (null != query) {
-            this.queryParams = query;
+    /**
+     * Release the request body retained from the aggregated request,
+     * called once the request has been answered.
+     */
+    public void release() {
+        if (!this.released) {
+            this.released = true;
+            if (this.body != EMPTY_BUF) {
+                this.body.release();
+            }
+            if (null != this.bodyStream) {
+                this.bodyStream.discard();
+            }
         }
+    }
 
-        if (HttpMethod.GET.name().equals(this.method())) {
+    private void parseHeaders() {
+        if (null == this.httpHeaders) {
+            this.headers = Collections.emptyMap();
             return;
         }
+        this.headers = new CaseInsensitiveHashMap<>(httpHeaders.size());
+        for (Map.Entry<String, String> header : httpHeaders) {
+            String headerName = header.getKey();
+            if (this.headers.containsKey(headerName)) {
+                List<String> tmpHeader = this.headers.get(headerName);
+                if (null != tmpHeader && tmpHeader.size() == 1) {
+                    this.headers.put(headerName, new ArrayList<>(Arrays.asList(tmpHeader.get(0), header.getValue())));
+                } else if (null != tmpHeader && tmpHeader.size() > 1) {
+                    tmpHeader.add(header.getValue());
+                }
+            } else {
+                this.headers.put(headerName, Collections.singletonList(header.getValue()));
+            }
+        }
+    }
 
+    /**
+     * Parse form parameters and file items from the request body
+     */
+    private void parseBody() {
+        this.formParams = Collections.emptyMap();
+        this.fileItems = Collections.emptyMap();
+        if (HttpMethod.GET.name().equals(this.method()) || !this.body.isReadable()) {
+            return;
+        }
         try {
-            this.body = fullHttpRequest.content().copy();
-
-            if (HttpConst.CONTENT_TYPE_MULTIPART.equals(this.contentType)) {
-                this.isMultipart = true;
+            if (this.isMultipart()) {
                 this.formParams = new HashMap<>(8);
                 this.fileItems = new HashMap<>(8);
-                HttpPostMultipartRequestDecoder decoder = new HttpPostMultipartRequestDecoder(HTTP_DATA_FACTORY, fullHttpRequest);
-                while (decoder.hasNext()) {
-                    InterfaceHttpData httpData = decoder.next();
-                    this.writeHttpData(httpData);
+                var request = new DefaultFullHttpRequest(HttpVersion.valueOf(this.protocol),
+                        io.netty.handler.codec.http.HttpMethod.valueOf(this.method), this.url,
+                        this.body.duplicate(), this.httpHeaders, EmptyHttpHeaders.INSTANCE);
+                HttpPostMultipartRequestDecoder decoder = new HttpPostMultipartRequestDecoder(HTTP_DATA_FACTORY, request);
+                try {
+                    while (decoder.hasNext()) {
+                        InterfaceHttpData httpData = decoder.next();
+                        this.writeHttpData(request, httpData);
+                    }
+                } finally {
+                    decoder.destroy();
                 }
             } else {
-                String paramString = fullHttpRequest.content().toString(StandardCharsets.UTF_8);
-                queryDecoder = new QueryStringDecoder(paramString, false);
-                Map<String, List<String>> uriAttributes = queryDecoder.parameters();
-                if (null != uriAttributes) {
-                    this.formParams = uriAttributes;
-                }
+                this.formParams = decodeForm(this.body);
             }
+        } catch (HttpParseException e) {
+            throw e;
         } catch (Exception e) {
             throw new HttpParseException("build decoder fail", e);
         }
     }
 
+    /**
+     * Decode an application/x-www-form-urlencoded body without
+     * turning the whole buffer into a string first.
+     *
+     * @throws HttpParseException when the body has more than {@link #MAX_FORM_PARAMS} pairs
+     */
+    static Map<String, List<String>> decodeForm(ByteBuf buf) {
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        int end = buf.writerIndex();
+        int nameStart = buf.readerIndex();
+        int valueStart = -1;
+        int pairs = 0;
+        for (int i = nameStart; i <= end; i++) {
+            byte b = i < end ? buf.getByte(i) : (byte) '&';
+            if (b == '=' && valueStart < 0) {
+                valueStart = i + 1;
+            } else if (b == '&') {
+                int nameEnd = valueStart < 0 ? i : valueStart - 1;
+                if (nameEnd > nameStart) {
+                    if (++pairs > MAX_FORM_PARAMS) {
+                        throw new HttpParseException("Form has more than " + MAX_FORM_PARAMS + " parameters");
+                    }
+                    String name = decodeComponent(buf, nameStart, nameEnd);
+                    String value = valueStart < 0 ? "" : decodeComponent(buf, valueStart, i);
+                    params.computeIfAbsent(name, k -> new ArrayList<>(1)).add(value);
+                }
+                nameStart = i + 1;
+                valueStart = -1;
+            }
+        }
+        return params;
+    }
+
+    private static String decodeComponent(ByteBuf buf, int from, int to) {
+        String value = buf.toString(from, to - from, StandardCharsets.UTF_8);
+        if (buf.indexOf(from, to, (byte) '%') < 0 && buf.indexOf(from, to, (byte) '+') < 0) {
+            return value;
+        }
+        return QueryStringDecoder.decodeComponent(value, StandardCharsets.UTF_8);
+    }
+
     private void parseCookie() {
+        this.cookies = Collections.emptyMap();
         List<String> cookies = this.getHeader(HttpConst.HEADER_COOKIE);
         if (null == cookies || cookies.isEmpty()) {
             return;
@@ -356,7 +520,10 @@ public class HttpRequest implements Request {
         }
     }
 
-    private void parseContentType() {
+    private String parseContentType() {
+        if (null != this.contentType) {
+            return this.contentType;
+        }
         String contentType = this.header(HttpConst.CONTENT_TYPE);
         if (null != contentType) {
             contentType = contentType.toLowerCase();
@@ -365,10 +532,11 @@ public class HttpRequest implements Request {
             contentType = contentType.split(";")[0];
         }
         this.contentType = contentType;
+        return contentType;
     }
 
-    private void writeHttpData(InterfaceHttpData data) {
-        boolean canRelease = false;
+    private void writeHttpData(FullHttpRequest request, InterfaceHttpData data) {
+        // decoded data is released when the decoder is destroyed
         try {
             if (null == data) {
                 return;
@@ -376,16 +544,11 @@ public class HttpRequest implements Request {
             InterfaceHttpData.HttpDataType dataType = data.getHttpDataType();
             if (dataType == InterfaceHttpData.HttpDataType.Attribute) {
                 parseAttribute((Attribute) data);
-                canRelease = true;
             } else if (dataType == InterfaceHttpData.HttpDataType.FileUpload) {
-                parseFileUpload((FileUpload) data);
+                parseFileUpload(request, (FileUpload) data);
             }
         } catch (IOException e) {
             log.error("Parse request parameter error", e);
-        } finally {
-            if (canRelease) {
-                data.release();
-            }
         }
     }
 
@@ -407,9 +570,10 @@ public class HttpRequest implements Request {
     /**
      * Parse FileUpload to {@link FileItem}.
      *
+     * @param request    request the file upload belongs to
      * @param fileUpload netty http file upload
      */
-    private void parseFileUpload(FileUpload fileUpload) throws IOException {
+    private void parseFileUpload(FullHttpRequest request, FileUpload fileUpload) throws IOException {
         if (!fileUpload.isCompleted()) {
             return;
         }
@@ -429,6 +593,9 @@ public class HttpRequest implements Request {
             fileItem.setFile(fileUpload.getFile());
             fileItem.setPath(fileUpload.getFile().getPath());
             fileItem.setInMemory(false);
+            // keep the temporary file after the decoder has been destroyed
+            HTTP_DATA_FACTORY.removeHttpDataFromClean(request, fileUpload);
+            fileUpload.retain();
         }
         fileItems.put(fileItem.getName(), fileItem);
     }
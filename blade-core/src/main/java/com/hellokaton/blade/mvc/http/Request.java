@@ -1,12 +1,14 @@
 package com.hellokaton.blade.mvc.http;
 
 import com.hellokaton.blade.kit.JsonKit;
+import com.hellokaton.blade.kit.PathKit;
 import com.hellokaton.blade.kit.StringKit;
 import com.hellokaton.blade.kit.WebKit;
 import com.hellokaton.blade.mvc.WebContext;
 import com.hellokaton.blade.mvc.handler.RouteActionArguments;
 import com.hellokaton.blade.mvc.multipart.FileItem;
 import com.hellokaton.blade.server.NettyHttpConst;
+import com.hellokaton.blade.server.WarmUp;
 import io.netty.buffer.ByteBuf;
 import io.netty.util.CharsetUtil;
 import lombok.NonNull;
@@ -55,6 +57,15 @@ public interface Request {
      */
     String uri();
 
+    /**
+     * Get the normalized request path used to match routes
+     *
+     * @return Return request path
+     */
+    default String routePath() {
+        return PathKit.normalizePath(uri());
+    }
+
     /**
      * Get request url
      *
@@ -358,9 +369,10 @@ public interface Request {
     }
 
     /**
-     * Get current request session, if null then create
+     * Get current request session, a request without a session gets an empty one
+     * created on the first write
      *
-     * @return Return current session
+     * @return Return current session, null when sessions are disabled
      */
     Session session();
 
@@ -390,6 +402,15 @@ public interface Request {
         return "XMLHttpRequest".equals(header("X-Requested-With")) || "XMLHttpRequest".equals(header("x-requested-with"));
     }
 
+    /**
+     * Whether the request is sent by the server warm-up, handlers with side effects can skip them.
+     *
+     * @return return is warm-up request
+     */
+    default boolean isWarmUp() {
+        return WarmUp.isWarmUp(this);
+    }
+
     /**
      * Determine if this request is a FORM form request
      * <p>
@@ -603,4 +624,14 @@ public interface Request {
         return this.body().toString(CharsetUtil.UTF_8);
     }
 
+    /**
+     * Get current request body as a stream, only available for routes
+     * declared with {@code streaming = true}, the aggregated body is empty then.
+     *
+     * @return return request body stream, null when the body has been aggregated
+     */
+    default BodyStream bodyStream() {
+        return null;
+    }
+
 }
@@ -0,0 +1,430 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.mvc.http.session;
+
+import com.hellokaton.blade.exception.BladeException;
+import com.hellokaton.blade.exception.InternalErrorException;
+import com.hellokaton.blade.kit.EncryptKit;
+import com.hellokaton.blade.kit.ReflectKit;
+import com.hellokaton.blade.mvc.http.CookieSession;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encode a {@link CookieSession} into a cookie value and back.
+ * <p>
+ * The value is url safe base64 of
+ * {@code version | key id | [iv] | body | mac}, where the body is a compact
+ * binary form of the session, encrypted with AES/CTR when enabled, and the
+ * mac is a truncated HmacSHA256 of everything before it.
+ * <p>
+ * The first secret signs new cookies, every secret verifies them, so a secret
+ * is rotated by putting the new one first and dropping the old one once the
+ * session timeout has passed.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+@Slf4j
+public class CookieSessionCodec {
+
+    private static final byte SIGNED = 1;
+    private static final byte ENCRYPTED = 2;
+    private static final int IV_LENGTH = 16;
+    private static final int MAC_LENGTH = 16;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte BYTES = 6;
+    private static final byte FLOAT = 7;
+    private static final byte SHORT = 8;
+    private static final byte BYTE = 9;
+    private static final byte CHARACTER = 10;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/CTR/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw BladeException.wrapper(e);
+        }
+    });
+
+    private final List<Key> keys = new ArrayList<>();
+    private final boolean encrypt;
+    private final int maxSize;
+    private final Class<? extends CookieSession> type;
+
+    /**
+     * @param secrets secrets, the first one signs new cookies
+     * @param encrypt whether to encrypt the session body
+     * @param maxSize max length of the cookie value
+     * @param type    session type to decode into
+     */
+    public CookieSessionCodec(List<String> secrets, boolean encrypt, int maxSize,
+                              Class<? extends CookieSession> type) {
+        if (null == secrets || secrets.isEmpty()) {
+            throw new IllegalArgumentException("cookie session needs at least one secret");
+        }
+        for (String secret : secrets) {
+            keys.add(new Key(secret.getBytes(StandardCharsets.UTF_8)));
+        }
+        this.encrypt = encrypt;
+        this.maxSize = maxSize;
+        this.type = type;
+    }
+
+    /**
+     * @return cookie value, or null when it is longer than the max size
+     */
+    public String encode(CookieSession session) {
+        Key key = keys.get(0);
+        Output out = new Output();
+        out.write(encrypt ? ENCRYPTED : SIGNED);
+        out.write(key.id);
+        int bodyOffset = out.size();
+        byte[] iv = null;
+        if (encrypt) {
+            iv = new byte[IV_LENGTH];
+            RANDOM.nextBytes(iv);
+            out.write(iv, 0, IV_LENGTH);
+            bodyOffset += IV_LENGTH;
+        }
+        writeBody(out, session);
+        byte[] bytes = out.buffer();
+        int length = out.size();
+        if (encrypt) {
+            crypt(Cipher.ENCRYPT_MODE, key, iv, bytes, bodyOffset, length - bodyOffset);
+        }
+
+        Mac mac = key.mac.get();
+        mac.update(bytes, 0, length);
+        out.write(mac.doFinal(), 0, MAC_LENGTH);
+
+        String value = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Arrays.copyOf(out.buffer(), out.size()));
+        if (value.length() > maxSize) {
+            log.warn("Session {} cookie is {} bytes, over the limit {}, not sent", session.id(), value.length(), maxSize);
+            return null;
+        }
+        return value;
+    }
+
+    /**
+     * @return verified session, or null when the value is malformed or forged
+     */
+    public CookieSession decode(String value) {
+        if (null == value || value.length() > maxSize) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (bytes.length < 2 + MAC_LENGTH) {
+            return null;
+        }
+        byte version = bytes[0];
+        int bodyOffset = 2;
+        if (version == ENCRYPTED) {
+            bodyOffset += IV_LENGTH;
+        } else if (version != SIGNED) {
+            return null;
+        }
+        int length = bytes.length - MAC_LENGTH;
+        if (length < bodyOffset) {
+            return null;
+        }
+        Key key = this.verify(bytes, length);
+        if (null == key) {
+            return null;
+        }
+        if (version == ENCRYPTED) {
+            byte[] iv = Arrays.copyOfRange(bytes, 2, 2 + IV_LENGTH);
+            crypt(Cipher.DECRYPT_MODE, key, iv, bytes, bodyOffset, length - bodyOffset);
+        }
+        try {
+            CookieSession session = readBody(ByteBuffer.wrap(bytes, bodyOffset, length - bodyOffset));
+            session.changed(false);
+            return session;
+        } catch (Exception e) {
+            log.debug("Decode session cookie error", e);
+            return null;
+        }
+    }
+
+    private Key verify(byte[] bytes, int length) {
+        byte[] expected = Arrays.copyOfRange(bytes, length, length + MAC_LENGTH);
+        for (Key key : keys) {
+            if (key.id != bytes[1]) {
+                continue;
+            }
+            Mac mac = key.mac.get();
+            mac.update(bytes, 0, length);
+            byte[] actual = Arrays.copyOf(mac.doFinal(), MAC_LENGTH);
+            if (MessageDigest.isEqual(expected, actual)) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    private void crypt(int mode, Key key, byte[] iv, byte[] bytes, int offset, int length) {
+        try {
+            Cipher cipher = CIPHER.get();
+            cipher.init(mode, key.cipherKey, new IvParameterSpec(iv));
+            cipher.doFinal(bytes, offset, length, bytes, offset);
+        } catch (GeneralSecurityException e) {
+            throw BladeException.wrapper(e);
+        }
+    }
+
+    private void writeBody(Output out, CookieSession session) {
+        out.writeVarLong(session.created());
+        out.writeVarLong(session.expired() - session.created());
+        out.writeString(session.id());
+        out.writeString(session.ip());
+        Map<String, Object> attributes = session.attributes();
+        out.writeVarLong(attributes.size());
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            out.writeString(entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private void writeValue(Output out, Object value) {
+        if (null == value) {
+            out.write(NULL);
+        } else if (value instanceof String) {
+            out.write(STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Integer) {
+            out.write(INTEGER);
+            out.writeVarLong((Integer) value);
+        } else if (value instanceof Long) {
+            out.write(LONG);
+            out.writeVarLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.write(BOOLEAN);
+            out.write((Boolean) value ? 1 : 0);
+        } else if (value instanceof Double) {
+            out.write(DOUBLE);
+            out.writeVarLong(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.write(BYTES);
+            out.writeVarLong(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        } else if (value instanceof Float) {
+            out.write(FLOAT);
+            out.writeVarLong(Float.floatToIntBits((Float) value));
+        } else if (value instanceof Short) {
+            out.write(SHORT);
+            out.writeVarLong((Short) value);
+        } else if (value instanceof Byte) {
+            out.write(BYTE);
+            out.writeVarLong((Byte) value);
+        } else if (value instanceof Character) {
+            out.write(CHARACTER);
+            out.writeVarLong((Character) value);
+        } else {
+            throw unsupported(value);
+        }
+    }
+
+    /**
+     * Whether the value can be kept in a cookie session, only strings, byte
+     * arrays and boxed primitives are, so a cookie never reaches Java deserialization.
+     */
+    public static boolean isSupported(Object value) {
+        return null == value || value instanceof String || value instanceof Integer
+                || value instanceof Long || value instanceof Boolean || value instanceof Double
+                || value instanceof byte[] || value instanceof Float || value instanceof Short
+                || value instanceof Byte || value instanceof Character;
+    }
+
+    public static InternalErrorException unsupported(Object value) {
+        return new InternalErrorException("Cookie session attribute of type " + value.getClass().getName()
+                + " is not supported, use a String, byte[] or a primitive");
+    }
+
+    private CookieSession readBody(ByteBuffer in) throws IOException {
+        CookieSession session = ReflectKit.newInstance(type);
+        if (null == session) {
+            throw new InternalErrorException("Unable to create session object :(");
+        }
+        session.created(readVarLong(in));
+        session.expired(session.created() + readVarLong(in));
+        session.id(readString(in));
+        session.ip(readString(in));
+        long size = readVarLong(in);
+        for (long i = 0; i < size; i++) {
+            String name = readString(in);
+            session.attribute(name, readValue(in));
+        }
+        if (in.hasRemaining()) {
+            throw new IOException("trailing bytes in session cookie");
+        }
+        return session;
+    }
+
+    private Object readValue(ByteBuffer in) throws IOException {
+        byte tag = in.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case INTEGER:
+                return (int) readVarLong(in);
+            case LONG:
+                return readVarLong(in);
+            case BOOLEAN:
+                return in.get() != 0;
+            case DOUBLE:
+                return Double.longBitsToDouble(readVarLong(in));
+            case BYTES:
+                return readBytes(in, (int) readVarLong(in));
+            case FLOAT:
+                return Float.intBitsToFloat((int) readVarLong(in));
+            case SHORT:
+                return (short) readVarLong(in);
+            case BYTE:
+                return (byte) readVarLong(in);
+            case CHARACTER:
+                return (char) readVarLong(in);
+            default:
+                throw new IOException("unknown session value type " + tag);
+        }
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        // 0 is null, otherwise length + 1
+        int length = (int) readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        return new String(readBytes(in, length - 1), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(ByteBuffer in, int length) throws IOException {
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("truncated session cookie");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Zigzag varint, small numbers of either sign take a byte or two
+     */
+    private static long readVarLong(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (value >>> 1) ^ -(value & 1);
+            }
+        }
+        throw new IOException("malformed varint in session cookie");
+    }
+
+    private static class Output extends ByteArrayOutputStream {
+
+        Output() {
+            super(128);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        void writeVarLong(long value) {
+            long v = (value << 1) ^ (value >> 63);
+            while ((v & ~0x7FL) != 0) {
+                write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            write((int) v);
+        }
+
+        void writeString(String value) {
+            if (null == value) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1);
+            write(bytes, 0, bytes.length);
+        }
+
+    }
+
+    /**
+     * Sign and cipher keys derived from one secret, the Mac is created once per thread
+     */
+    private static class Key {
+
+        private final byte id;
+        private final SecretKeySpec cipherKey;
+        private final ThreadLocal<Mac> mac;
+
+        Key(byte[] secret) {
+            byte[] signKey = EncryptKit.hmacSHA256ToByte("blade-session-sign".getBytes(StandardCharsets.UTF_8), secret);
+            byte[] encryptKey = EncryptKit.hmacSHA256ToByte("blade-session-encrypt".getBytes(StandardCharsets.UTF_8), secret);
+            this.id = signKey[0];
+            this.cipherKey = new SecretKeySpec(Arrays.copyOf(encryptKey, 16), "AES");
+            SecretKeySpec macKey = new SecretKeySpec(signKey, MAC_ALGORITHM);
+            this.mac = ThreadLocal.withInitial(() -> {
+                try {
+                    Mac mac = Mac.getInstance(MAC_ALGORITHM);
+                    mac.init(macKey);
+                    return mac;
+                } catch (GeneralSecurityException e) {
+                    throw BladeException.wrapper(e);
+                }
+            });
+        }
+
+    }
+
+}
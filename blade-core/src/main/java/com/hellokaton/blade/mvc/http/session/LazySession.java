@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.mvc.http.session;
+
+import com.hellokaton.blade.mvc.http.Session;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Session of a request without a valid session cookie, the real session is
+ * created and stored on the first write or when its id is read.
+ * <p>
+ * Until then reads see an empty session, {@link #attributes()} is an empty
+ * read only map.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+public class LazySession implements Session {
+
+    private final Supplier<Session> creator;
+    private volatile Session session;
+
+    public LazySession(Supplier<Session> creator) {
+        this.creator = creator;
+    }
+
+    /**
+     * Whether the session has been created by this request
+     */
+    public boolean isCreated() {
+        return null != session;
+    }
+
+    /**
+     * @return created session or null
+     */
+    public Session delegate() {
+        return session;
+    }
+
+    private Session get() {
+        Session current = session;
+        if (null == current) {
+            synchronized (this) {
+                current = session;
+                if (null == current) {
+                    current = session = creator.get();
+                }
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public String id() {
+        return get().id();
+    }
+
+    @Override
+    public void id(String id) {
+        get().id(id);
+    }
+
+    @Override
+    public String ip() {
+        Session current = session;
+        return null == current ? null : current.ip();
+    }
+
+    @Override
+    public void ip(String ip) {
+        get().ip(ip);
+    }
+
+    @Override
+    public <T> T attribute(String name) {
+        Session current = session;
+        return null == current ? null : current.attribute(name);
+    }
+
+    @Override
+    public void attribute(String name, Object value) {
+        get().attribute(name, value);
+    }
+
+    @Override
+    public Map<String, Object> attributes() {
+        Session current = session;
+        return null == current ? Collections.emptyMap() : current.attributes();
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        Session current = session;
+        if (null != current) {
+            current.removeAttribute(name);
+        }
+    }
+
+    @Override
+    public long created() {
+        Session current = session;
+        return null == current ? -1 : current.created();
+    }
+
+    @Override
+    public void created(long created) {
+        get().created(created);
+    }
+
+    @Override
+    public long expired() {
+        Session current = session;
+        return null == current ? -1 : current.expired();
+    }
+
+    @Override
+    public void expired(long expired) {
+        get().expired(expired);
+    }
+
+}
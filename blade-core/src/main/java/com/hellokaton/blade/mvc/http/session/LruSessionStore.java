@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.mvc.http.session;
+
+import com.hellokaton.blade.kit.ClockCache;
+import com.hellokaton.blade.mvc.http.Session;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Store keeping at most a number of sessions in the heap, the least recently
+ * used ones are dropped first, approximated with the CLOCK policy.
+ * <p>
+ * A dropped session is not destroyed, no event is fired for it.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+public class LruSessionStore implements SessionStore {
+
+    private final ClockCache<String, Session> sessions;
+
+    public LruSessionStore(int maxSessions) {
+        this.sessions = new ClockCache<>(maxSessions);
+    }
+
+    @Override
+    public Session get(String id) {
+        return sessions.get(id);
+    }
+
+    @Override
+    public void put(Session session) {
+        sessions.put(session.id(), session);
+    }
+
+    @Override
+    public void remove(String id) {
+        sessions.remove(id);
+    }
+
+    @Override
+    public int size() {
+        return sessions.size();
+    }
+
+    @Override
+    public void clear() {
+        sessions.clear();
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, Long> consumer) {
+        sessions.forEach((id, session) -> consumer.accept(id, session.expired()));
+    }
+
+}
@@ -0,0 +1,511 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.mvc.http.session;
+
+import com.hellokaton.blade.kit.IOKit;
+import com.hellokaton.blade.kit.ReflectKit;
+import com.hellokaton.blade.mvc.http.Session;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Store keeping the serialized sessions in a memory-mapped file, out of the heap.
+ * <p>
+ * The file is a ring of records written one after the other, a new record
+ * overwrites the oldest ones when the file is full, so the sessions not written
+ * for the longest time are dropped first. Only the session ids and record
+ * positions stay in the heap. The file is read again on start, the sessions of
+ * the former process on the same host are kept.
+ * <p>
+ * Every read returns a copy, session attributes have to be {@link Serializable}.
+ * The expire time of a renewed session is rewritten once it moved more than a
+ * minute, a session restored after a restart may expire up to a minute earlier.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+@Slf4j
+public class MappedSessionStore implements SessionStore {
+
+    private static final int SEGMENT_SIZE = 1 << 30;
+
+    // length, kind, sequence, crc of the body, padding
+    private static final int HEADER_SIZE = 24;
+    private static final int KIND_SESSION = 1;
+    private static final int KIND_REMOVED = 2;
+    private static final int KIND_FILLER = 3;
+
+    private static final long EXPIRY_SLACK_SECONDS = 60;
+
+    private final Class<? extends Session> sessionType;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer[] segments;
+    private final long capacity;
+    private final int maxRecordSize;
+
+    private final Map<String, Slot> index = new HashMap<>();
+    private long head;
+    private long sequence;
+
+    private static final class Slot {
+
+        private final long position;
+        private final long writtenExpired;
+        private long expired;
+
+        Slot(long position, long expired) {
+            this.position = position;
+            this.writtenExpired = expired;
+            this.expired = expired;
+        }
+
+    }
+
+    /**
+     * Map the file, the sessions it holds are loaded
+     *
+     * @param file        session file, shared with the former process
+     * @param maxSize     file size in bytes
+     * @param sessionType type of the sessions returned
+     * @throws IOException when the file is locked by another process, belongs to another user or can not be mapped
+     */
+    public MappedSessionStore(Path file, long maxSize, Class<? extends Session> sessionType) throws IOException {
+        if (maxSize < 4096) {
+            throw new IllegalArgumentException("Session file size must be at least 4096 bytes");
+        }
+        this.sessionType = sessionType;
+        this.capacity = maxSize & ~7L;
+        this.maxRecordSize = (int) Math.min(capacity / 8, SEGMENT_SIZE);
+
+        if (null != file.getParent() && Files.notExists(file.getParent())) {
+            IOKit.createPrivateDirectory(file.getParent());
+        }
+        boolean resized = Files.exists(file) && Files.size(file) != capacity;
+        // the records are deserialized, only a file of this user is read
+        IOKit.createPrivateFile(file);
+        this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.lock = channel.tryLock();
+        if (null == lock) {
+            channel.close();
+            throw new IOException("Session file " + file + " is used by another process");
+        }
+        if (resized) {
+            log.info("Session file size changed, drop the sessions of {}", file);
+            channel.truncate(0);
+        }
+        this.segments = new MappedByteBuffer[(int) ((capacity + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i * SEGMENT_SIZE;
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(SEGMENT_SIZE, capacity - start));
+        }
+        this.load();
+    }
+
+    @Override
+    public Session get(String id) {
+        byte[] body;
+        long expired;
+        synchronized (this) {
+            Slot slot = index.get(id);
+            if (null == slot) {
+                return null;
+            }
+            body = readBody(slot.position);
+            expired = slot.expired;
+        }
+        try {
+            Session session = decode(body);
+            session.expired(expired);
+            return session;
+        } catch (IOException | ClassNotFoundException e) {
+            log.warn("Read session {} error, drop it", id, e);
+            this.remove(id);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(Session session) {
+        byte[] body = encode(session);
+        if (null == body) {
+            return;
+        }
+        synchronized (this) {
+            this.write(session.id(), KIND_SESSION, body, session.expired());
+        }
+    }
+
+    @Override
+    public void update(Session session) {
+        synchronized (this) {
+            if (!index.containsKey(session.id())) {
+                return;
+            }
+        }
+        byte[] body = encode(session);
+        if (null == body) {
+            return;
+        }
+        synchronized (this) {
+            Slot slot = index.get(session.id());
+            if (null == slot) {
+                return;
+            }
+            if (Math.abs(session.expired() - slot.writtenExpired) < EXPIRY_SLACK_SECONDS
+                    && sameContent(readBody(slot.position), body)) {
+                slot.expired = session.expired();
+                return;
+            }
+            this.write(session.id(), KIND_SESSION, body, session.expired());
+        }
+    }
+
+    @Override
+    public synchronized void remove(String id) {
+        if (null != index.remove(id)) {
+            // keeps the session from coming back after a restart
+            this.write(id, KIND_REMOVED, encodeRemoved(id), 0);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        byte[] zeros = new byte[8192];
+        for (MappedByteBuffer segment : segments) {
+            segment.clear();
+            while (segment.hasRemaining()) {
+                segment.put(zeros, 0, Math.min(zeros.length, segment.remaining()));
+            }
+        }
+        index.clear();
+        head = 0;
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, Long> consumer) {
+        Map<String, Long> expirations = new HashMap<>();
+        synchronized (this) {
+            index.forEach((id, slot) -> expirations.put(id, slot.expired));
+        }
+        expirations.forEach(consumer);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Close session file error", e);
+        }
+    }
+
+    /**
+     * Rebuild the index from the records of the file, the latest record of an id wins
+     */
+    private void load() {
+        Map<String, long[]> latest = new HashMap<>();
+        long maxSequence = 0;
+        long now = Instant.now().getEpochSecond();
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i * SEGMENT_SIZE;
+            long end = segmentEnd(start);
+            long p = start;
+            while (p + 8 <= end) {
+                int length = readInt(p);
+                int kind = readInt(p + 4);
+                if (length < 8 || (length & 7) != 0 || p + length > end || kind < KIND_SESSION || kind > KIND_FILLER) {
+                    break;
+                }
+                if (kind != KIND_FILLER && length >= HEADER_SIZE && validCrc(p, length)) {
+                    long seq = readLong(p + 8);
+                    String id = readId(p);
+                    long[] record = latest.get(id);
+                    if (null == record || record[0] < seq) {
+                        latest.put(id, new long[]{seq, p, kind, readLong(p + HEADER_SIZE + 8)});
+                    }
+                    if (seq > maxSequence) {
+                        maxSequence = seq;
+                        head = p + length;
+                    }
+                }
+                p += length;
+            }
+        }
+        latest.forEach((id, record) -> {
+            if (record[2] == KIND_SESSION && record[3] >= now) {
+                index.put(id, new Slot(record[1], record[3]));
+            }
+        });
+        this.sequence = maxSequence;
+        if (head >= capacity) {
+            head = 0;
+        }
+        if (!index.isEmpty()) {
+            log.info("Load {} sessions from the session file", index.size());
+        }
+    }
+
+    /**
+     * Append a record at the head, overwriting the oldest records
+     */
+    private void write(String id, int kind, byte[] body, long expired) {
+        int length = align(HEADER_SIZE + body.length);
+        if (length > maxRecordSize) {
+            log.warn("Session {} is {} bytes, larger than {} bytes, not stored", id, length, maxRecordSize);
+            return;
+        }
+        long end = segmentEnd(head);
+        if (head + length > end) {
+            // records do not cross segments, skip the rest of this one
+            this.evict(head, end);
+            if (end > head) {
+                this.writeFiller(head, (int) (end - head));
+            }
+            head = end == capacity ? 0 : end;
+        }
+        long position = head;
+        long next = this.evict(position, position + length);
+
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        MappedByteBuffer segment = segment(position);
+        int offset = offset(position);
+        segment.position(offset + HEADER_SIZE);
+        segment.put(body);
+        segment.putInt(offset + 4, kind);
+        segment.putLong(offset + 8, ++sequence);
+        segment.putInt(offset + 16, (int) crc.getValue());
+        segment.putInt(offset + 20, 0);
+        // written last, a torn record is not read back
+        segment.putInt(offset, length);
+
+        if (next > position + length) {
+            this.writeFiller(position + length, (int) (next - position - length));
+        }
+        if (kind == KIND_SESSION) {
+            index.put(id, new Slot(position, expired));
+        }
+        head = position + length == capacity ? 0 : position + length;
+    }
+
+    /**
+     * Drop the sessions whose records start in the range
+     *
+     * @return start of the first record after the range
+     */
+    private long evict(long from, long to) {
+        long p = from;
+        while (p < to) {
+            int length = readInt(p);
+            if (length < 8) {
+                // never written
+                return to;
+            }
+            int kind = readInt(p + 4);
+            if (kind != KIND_FILLER && length >= HEADER_SIZE) {
+                String id = readId(p);
+                Slot slot = index.get(id);
+                if (null != slot && slot.position == p) {
+                    index.remove(id);
+                }
+            }
+            p += length;
+        }
+        return p;
+    }
+
+    private void writeFiller(long position, int length) {
+        MappedByteBuffer segment = segment(position);
+        int offset = offset(position);
+        segment.putInt(offset + 4, KIND_FILLER);
+        segment.putInt(offset, length);
+    }
+
+    private byte[] readBody(long position) {
+        byte[] body = new byte[bodyLength(position)];
+        MappedByteBuffer segment = segment(position);
+        segment.position(offset(position) + HEADER_SIZE);
+        segment.get(body);
+        return body;
+    }
+
+    /**
+     * Length of the body without the padding
+     */
+    private int bodyLength(long position) {
+        // created, expired, id, ip, attributes
+        long p = position + HEADER_SIZE + 16;
+        p += 2 + readShort(p);
+        p += 2 + readShort(p);
+        return (int) (p + 4 + readInt(p) - position - HEADER_SIZE);
+    }
+
+    private boolean validCrc(long position, int length) {
+        int bodyLength;
+        try {
+            bodyLength = bodyLength(position);
+        } catch (IndexOutOfBoundsException e) {
+            return false;
+        }
+        if (bodyLength < 0 || HEADER_SIZE + bodyLength > length) {
+            return false;
+        }
+        byte[] body = readBody(position);
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return (int) crc.getValue() == readInt(position + 16);
+    }
+
+    private String readId(long position) {
+        long p = position + HEADER_SIZE + 16;
+        byte[] id = new byte[readShort(p)];
+        MappedByteBuffer segment = segment(position);
+        segment.position(offset(p + 2));
+        segment.get(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private byte[] encode(Session session) {
+        try {
+            byte[] attributes = new byte[0];
+            if (!session.attributes().isEmpty()) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(new HashMap<>(session.attributes()));
+                }
+                attributes = bytes.toByteArray();
+            }
+            return encode(session.id(), session.ip(), session.created(), session.expired(), attributes);
+        } catch (IOException e) {
+            log.warn("Session {} has an attribute not serializable, not stored", session.id(), e);
+            return null;
+        }
+    }
+
+    private byte[] encodeRemoved(String id) {
+        try {
+            return encode(id, null, 0, 0, new byte[0]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] encode(String id, String ip, long created, long expired, byte[] attributes) throws IOException {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        byte[] ipBytes = null == ip ? new byte[0] : ip.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + idBytes.length + ipBytes.length + attributes.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(created);
+        out.writeLong(expired);
+        out.writeShort(idBytes.length);
+        out.write(idBytes);
+        out.writeShort(ipBytes.length);
+        out.write(ipBytes);
+        out.writeInt(attributes.length);
+        out.write(attributes);
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Session decode(byte[] body) throws IOException, ClassNotFoundException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        Session session = ReflectKit.newInstance(sessionType);
+        if (null == session) {
+            throw new IOException("Unable to create session object " + sessionType.getName());
+        }
+        session.created(in.readLong());
+        session.expired(in.readLong());
+        byte[] id = new byte[in.readUnsignedShort()];
+        in.readFully(id);
+        session.id(new String(id, StandardCharsets.UTF_8));
+        byte[] ip = new byte[in.readUnsignedShort()];
+        in.readFully(ip);
+        session.ip(ip.length == 0 ? null : new String(ip, StandardCharsets.UTF_8));
+        int attributes = in.readInt();
+        if (attributes > 0) {
+            try (ObjectInputStream objectIn = new ObjectInputStream(in)) {
+                session.attributes().putAll((Map<String, Object>) objectIn.readObject());
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Whether two bodies differ only by the expire time
+     */
+    private static boolean sameContent(byte[] stored, byte[] body) {
+        if (stored.length != body.length) {
+            return false;
+        }
+        for (int i = 0; i < body.length; i++) {
+            if ((i < 8 || i >= 16) && stored[i] != body[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long segmentEnd(long position) {
+        return Math.min((position / SEGMENT_SIZE + 1) * SEGMENT_SIZE, capacity);
+    }
+
+    private MappedByteBuffer segment(long position) {
+        return segments[(int) (position / SEGMENT_SIZE)];
+    }
+
+    private static int offset(long position) {
+        return (int) (position % SEGMENT_SIZE);
+    }
+
+    private int readInt(long position) {
+        return segment(position).getInt(offset(position));
+    }
+
+    private int readShort(long position) {
+        return segment(position).getShort(offset(position)) & 0xFFFF;
+    }
+
+    private long readLong(long position) {
+        return segment(position).getLong(offset(position));
+    }
+
+    private static int align(int length) {
+        return (length + 7) & ~7;
+    }
+
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.mvc.http.session;
+
+import com.hellokaton.blade.mvc.http.Session;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Unbounded store keeping the session instances in the heap, the default store
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+public class MemorySessionStore implements SessionStore {
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>(16);
+
+    @Override
+    public Session get(String id) {
+        return sessions.get(id);
+    }
+
+    @Override
+    public void put(Session session) {
+        sessions.put(session.id(), session);
+    }
+
+    @Override
+    public void remove(String id) {
+        sessions.remove(id);
+    }
+
+    @Override
+    public int size() {
+        return sessions.size();
+    }
+
+    @Override
+    public void clear() {
+        sessions.clear();
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, Long> consumer) {
+        sessions.forEach((id, session) -> consumer.accept(id, session.expired()));
+    }
+
+}
@@ -1,10 +1,8 @@
 package com.hellokaton.blade.mvc.http.session;
 
-import com.hellokaton.blade.mvc.http.Session;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.Instant;
-import java.util.Collection;
 
 /**
  * Session cleaner
@@ -24,16 +22,10 @@ public class SessionCleaner implements Runnable {
     @Override
     public void run() {
         try {
-            Collection<Session> sessions = sessionManager.sessionMap().values();
-            sessions.parallelStream().filter(this::expires).forEach(sessionManager::destroySession);
+            sessionManager.cleanExpired(Instant.now().getEpochSecond());
         } catch (Exception e) {
             log.error("Session clean error", e);
         }
     }
 
-    private boolean expires(Session session) {
-        long now = Instant.now().getEpochSecond();
-        return session.expired() < now;
-    }
-
 }
@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.mvc.http.session;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+/**
+ * Session ids bucketed by the second they expire at.
+ * <p>
+ * There is at most one bucket per second of the session timeout, so moving
+ * a session to another bucket on renewal and polling the due buckets on
+ * every tick do not depend on the number of live sessions.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+public class SessionExpiry {
+
+    private final NavigableMap<Long, Set<String>> buckets = new ConcurrentSkipListMap<>();
+
+    /**
+     * Track a session expiring at the second
+     */
+    public void add(String id, long expired) {
+        buckets.computeIfAbsent(expired, k -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    public void remove(String id, long expired) {
+        Set<String> bucket = buckets.get(expired);
+        if (null != bucket) {
+            bucket.remove(id);
+        }
+    }
+
+    /**
+     * Move a renewed session to the bucket of its new expire time
+     */
+    public void move(String id, long expired, long newExpired) {
+        if (expired != newExpired) {
+            this.remove(id, expired);
+            this.add(id, newExpired);
+        }
+    }
+
+    /**
+     * Remove the buckets expired before the second and pass their session ids on,
+     * the consumer checks the session again since it may have been renewed meanwhile
+     */
+    public void poll(long now, Consumer<String> consumer) {
+        Map.Entry<Long, Set<String>> entry;
+        while (null != (entry = buckets.firstEntry()) && entry.getKey() < now) {
+            Set<String> bucket = buckets.remove(entry.getKey());
+            if (null != bucket) {
+                bucket.forEach(consumer);
+            }
+        }
+    }
+
+    public void clear() {
+        buckets.clear();
+    }
+
+    /**
+     * Number of tracked sessions, visits every bucket
+     */
+    public int size() {
+        return buckets.values().stream().mapToInt(Set::size).sum();
+    }
+
+}
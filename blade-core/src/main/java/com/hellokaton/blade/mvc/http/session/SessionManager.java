@@ -21,7 +21,7 @@ import com.hellokaton.blade.event.EventType;
 import com.hellokaton.blade.mvc.http.Session;
 
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.HashMap;
 
 /**
  * SessionManager
@@ -38,14 +38,38 @@ public class SessionManager {
     /**
      * Store all Session instances
      */
-    private final Map<String, Session> sessionMap;
+    private volatile SessionStore store;
+
+    /**
+     * Ids of the stored sessions by expire time
+     */
+    private final SessionExpiry expiry = new SessionExpiry();
 
     /**
      * Create SessionManager
      */
     public SessionManager(EventManager eventManager) {
-        this.sessionMap = new ConcurrentHashMap<>(16);
+        this(eventManager, new MemorySessionStore());
+    }
+
+    public SessionManager(EventManager eventManager, SessionStore store) {
         this.eventManager = eventManager;
+        this.setStore(store);
+    }
+
+    /**
+     * Replace the session store, the expire times of the sessions it holds are tracked
+     *
+     * @param store session store
+     */
+    public void setStore(SessionStore store) {
+        this.store = store;
+        expiry.clear();
+        store.forEach(expiry::add);
+    }
+
+    public SessionStore getStore() {
+        return store;
     }
 
     /**
@@ -55,7 +79,7 @@ public class SessionManager {
      * @return Session instance
      */
     public Session getSession(String id) {
-        return sessionMap.get(id);
+        return store.get(id);
     }
 
     /**
@@ -64,7 +88,8 @@ public class SessionManager {
      * @param session session instance
      */
     public void createSession(Session session) {
-        sessionMap.put(session.id(), session);
+        store.put(session);
+        expiry.add(session.id(), session.expired());
         Event event = new Event();
         event.attribute("session", session);
 
@@ -75,7 +100,51 @@ public class SessionManager {
      * Clean all session instances
      */
     public void clear() {
-        sessionMap.clear();
+        store.clear();
+        expiry.clear();
+    }
+
+    /**
+     * Extend the expire time of a session, the store gets the new time
+     * with the other changes of the request in {@link #updateSession(Session)}
+     *
+     * @param session session instance
+     * @param expired new expire time, in seconds
+     */
+    public void renewSession(Session session, long expired) {
+        long former = session.expired();
+        session.expired(expired);
+        expiry.move(session.id(), former, expired);
+    }
+
+    /**
+     * Write back the changes made to a session during a request, called once
+     * per request when the response is built
+     *
+     * @param session session instance
+     */
+    public void updateSession(Session session) {
+        store.update(session);
+    }
+
+    /**
+     * Remove the sessions expired before the second, only the due ones are visited
+     *
+     * @param now current time, in seconds
+     */
+    public void cleanExpired(long now) {
+        expiry.poll(now, id -> {
+            Session session = store.get(id);
+            if (null == session) {
+                return;
+            }
+            if (session.expired() < now) {
+                this.destroySession(session);
+            } else {
+                // renewed without renewSession
+                expiry.add(id, session.expired());
+            }
+        });
     }
 
     /**
@@ -85,7 +154,8 @@ public class SessionManager {
      */
     public void destroySession(Session session) {
         session.attributes().clear();
-        sessionMap.remove(session.id());
+        store.remove(session.id());
+        expiry.remove(session.id(), session.expired());
 
         Event event = new Event();
         event.attribute("session", session);
@@ -93,8 +163,32 @@ public class SessionManager {
         eventManager.fireEvent(EventType.SESSION_DESTROY, event);
     }
 
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * Copy of the stored sessions
+     *
+     * @deprecated reads every session of the store, use {@link #getSession(String)} or {@link #size()}
+     */
+    @Deprecated
     public Map<String, Session> sessionMap() {
-        return sessionMap;
+        Map<String, Session> sessions = new HashMap<>();
+        store.forEach((id, expired) -> {
+            Session session = store.get(id);
+            if (null != session) {
+                sessions.put(id, session);
+            }
+        });
+        return sessions;
+    }
+
+    /**
+     * Release the session store
+     */
+    public void close() {
+        store.close();
     }
 
 }
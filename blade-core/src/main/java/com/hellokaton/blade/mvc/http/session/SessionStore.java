@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.mvc.http.session;
+
+import com.hellokaton.blade.mvc.http.Session;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Storage of the sessions behind {@link SessionManager}.
+ * <p>
+ * A store may return a copy of the stored session, changes made to it during a
+ * request are written back with {@link #update(Session)} when the response is sent.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+public interface SessionStore {
+
+    /**
+     * @param id session id
+     * @return stored session or null
+     */
+    Session get(String id);
+
+    /**
+     * Store a new session
+     */
+    void put(Session session);
+
+    /**
+     * Write back a session read from the store, ignored when it has been removed meanwhile
+     */
+    default void update(Session session) {
+    }
+
+    void remove(String id);
+
+    int size();
+
+    void clear();
+
+    /**
+     * Pass the id and expire time of every stored session on
+     */
+    void forEach(BiConsumer<String, Long> consumer);
+
+    /**
+     * Release the resources of the store when the server stops
+     */
+    default void close() {
+    }
+
+}
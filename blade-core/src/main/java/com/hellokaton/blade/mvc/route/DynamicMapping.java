@@ -17,6 +17,15 @@ public interface DynamicMapping {
 
     Route findRoute(String httpMethod, String path);
 
+    /**
+     * Find the route of a normalized path. The default adapts {@link #findRoute(String, String)},
+     * a mapping overrides it to return the registered route instead of a copy.
+     */
+    default RouteMatch findMatch(String httpMethod, String path) {
+        Route route = findRoute(httpMethod, path);
+        return null == route ? null : RouteMatch.of(route, route.getPathParams());
+    }
+
     void clear();
 
 }
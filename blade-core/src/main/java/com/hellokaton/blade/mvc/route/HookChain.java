@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.mvc.route;
+
+import java.util.regex.Pattern;
+
+/**
+ * Hooks of a route resolved at register time, sorted by their order.
+ * <p>
+ * A static route knows every hook it runs up front. A dynamic route keeps the
+ * compiled pattern of the hooks which only apply to some of its request paths.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+public final class HookChain {
+
+    static final Route[] NO_HOOKS = new Route[0];
+
+    public static final HookChain EMPTY = new HookChain(NO_HOOKS, null);
+
+    private final Route[] hooks;
+
+    /**
+     * Pattern per hook, a null element applies to every path. Null when no hook is conditional.
+     */
+    private final Pattern[] patterns;
+
+    HookChain(Route[] hooks, Pattern[] patterns) {
+        this.hooks = hooks;
+        this.patterns = patterns;
+    }
+
+    /**
+     * Whether the hooks depend on the request path
+     */
+    public boolean isConditional() {
+        return null != patterns;
+    }
+
+    /**
+     * @return hooks of an unconditional chain, the array is shared and must not be modified
+     */
+    public Route[] hooks() {
+        return hooks;
+    }
+
+    /**
+     * Select the hooks applying to the request path
+     *
+     * @param path parsed request path
+     * @return hooks in execution order, the array must not be modified
+     */
+    public Route[] hooks(String path) {
+        if (null == patterns) {
+            return hooks;
+        }
+        int count = 0;
+        Route[] selected = new Route[hooks.length];
+        for (int i = 0; i < hooks.length; i++) {
+            if (null == patterns[i] || patterns[i].matcher(path).matches()) {
+                selected[count++] = hooks[i];
+            }
+        }
+        if (count == hooks.length) {
+            return hooks;
+        }
+        if (count == 0) {
+            return NO_HOOKS;
+        }
+        Route[] result = new Route[count];
+        System.arraycopy(selected, 0, result, 0, count);
+        return result;
+    }
+
+    public int size() {
+        return hooks.length;
+    }
+
+}
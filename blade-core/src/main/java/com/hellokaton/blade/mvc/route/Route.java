@@ -1,6 +1,8 @@
 package com.hellokaton.blade.mvc.route;
 
 import com.hellokaton.blade.kit.PathKit;
+import com.hellokaton.blade.mvc.handler.ArgumentResolver;
+import com.hellokaton.blade.mvc.handler.MethodInvoker;
 import com.hellokaton.blade.mvc.http.HttpMethod;
 import com.hellokaton.blade.mvc.ui.ResponseType;
 import lombok.AllArgsConstructor;
@@ -57,6 +59,35 @@ public class Route {
 
     private int sort;
 
+    /**
+     * Receive the request body as a stream
+     */
+    private boolean streaming;
+
+    /**
+     * Before and after hooks resolved at register time
+     */
+    @EqualsAndHashCode.Exclude
+    private HookChain beforeHooks;
+
+    @EqualsAndHashCode.Exclude
+    private HookChain afterHooks;
+
+    /**
+     * Argument binding of the route method
+     */
+    @EqualsAndHashCode.Exclude
+    private ArgumentResolver[] argumentResolvers;
+
+    /**
+     * Bound invoker of the route method
+     */
+    @EqualsAndHashCode.Exclude
+    private MethodInvoker invoker;
+
+    @EqualsAndHashCode.Exclude
+    private RouteMatch match;
+
     /**
      * Url path params
      */
@@ -98,6 +129,11 @@ public class Route {
         this.action = route.action;
         this.responseType = route.responseType;
         this.sort = route.sort;
+        this.streaming = route.streaming;
+        this.beforeHooks = route.beforeHooks;
+        this.afterHooks = route.afterHooks;
+        this.argumentResolvers = route.argumentResolvers;
+        this.invoker = route.invoker;
     }
 
     /**
@@ -208,6 +244,63 @@ public class Route {
         this.sort = sort;
     }
 
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public HookChain getBeforeHooks() {
+        return beforeHooks;
+    }
+
+    public HookChain getAfterHooks() {
+        return afterHooks;
+    }
+
+    void setHooks(HookChain beforeHooks, HookChain afterHooks) {
+        this.beforeHooks = beforeHooks;
+        this.afterHooks = afterHooks;
+    }
+
+    public ArgumentResolver[] getArgumentResolvers() {
+        return argumentResolvers;
+    }
+
+    public void setArgumentResolvers(ArgumentResolver[] argumentResolvers) {
+        this.argumentResolvers = argumentResolvers;
+    }
+
+    /**
+     * Return the invoker of the route method, bound on first use when the route was not registered
+     *
+     * @return method invoker
+     */
+    public MethodInvoker getInvoker() {
+        MethodInvoker invoker = this.invoker;
+        if (null == invoker) {
+            invoker = MethodInvoker.of(this.action);
+            this.invoker = invoker;
+        }
+        return invoker;
+    }
+
+    /**
+     * Return the shared lookup result of this route without path variables
+     *
+     * @return route match
+     */
+    public RouteMatch match() {
+        RouteMatch match = this.match;
+        if (null == match) {
+            match = new RouteMatch(this);
+            this.match = match;
+        }
+        return match;
+    }
+
     public String getAllPath() {
         return this.path + "#" + this.httpMethod.name();
     }
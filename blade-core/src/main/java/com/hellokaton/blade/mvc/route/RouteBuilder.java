@@ -105,6 +105,7 @@ public class RouteBuilder {
                     .path(pathV)
                     .httpMethod(methodType)
                     .responseType(responseType)
+                    .streaming(routeStruct.isStreaming())
                     .build());
         }
     }
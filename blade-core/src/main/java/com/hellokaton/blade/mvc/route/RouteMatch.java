@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.mvc.route;
+
+import java.util.*;
+
+/**
+ * Result of a route lookup, the registered route shared by all requests
+ * and the path variables of the request.
+ * <p>
+ * It is also the read-only map of the path variables, values are looked up
+ * in the arrays and no map is built for a request.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+public final class RouteMatch extends AbstractMap<String, String> {
+
+    private static final String[] NO_PARAMS = new String[0];
+
+    private final Route route;
+    private final String[] names;
+    private final String[] values;
+
+    /**
+     * @param route  matched route
+     * @param names  path variable names, may be shared by every match of the route
+     * @param values path variable values of the request
+     */
+    public RouteMatch(Route route, String[] names, String[] values) {
+        this.route = route;
+        this.names = names;
+        this.values = values;
+    }
+
+    RouteMatch(Route route) {
+        this(route, NO_PARAMS, NO_PARAMS);
+    }
+
+    public static RouteMatch of(Route route, Map<String, String> pathParams) {
+        if (null == pathParams || pathParams.isEmpty()) {
+            return route.match();
+        }
+        String[] names = new String[pathParams.size()];
+        String[] values = new String[pathParams.size()];
+        int i = 0;
+        for (Map.Entry<String, String> entry : pathParams.entrySet()) {
+            names[i] = entry.getKey();
+            values[i++] = entry.getValue();
+        }
+        return new RouteMatch(route, names, values);
+    }
+
+    public Route getRoute() {
+        return route;
+    }
+
+    /**
+     * Copy of the route holding the path variables, for callers expecting a route per request
+     */
+    public Route toRoute() {
+        if (names.length == 0) {
+            return route;
+        }
+        Route copy = new Route(route);
+        copy.setPathParams(new LinkedHashMap<>(this));
+        return copy;
+    }
+
+    @Override
+    public String get(Object key) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(key)) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        for (String name : names) {
+            if (name.equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return names.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return names.length == 0;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        Set<Entry<String, String>> entries = new LinkedHashSet<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            entries.add(new SimpleImmutableEntry<>(names[i], values[i]));
+        }
+        return Collections.unmodifiableSet(entries);
+    }
+
+}
@@ -4,11 +4,12 @@ import com.hellokaton.blade.exception.MethodNotAllowedException;
 import com.hellokaton.blade.ioc.annotation.Order;
 import com.hellokaton.blade.kit.*;
 import com.hellokaton.blade.mvc.RouteContext;
+import com.hellokaton.blade.mvc.handler.RouteActionArguments;
 import com.hellokaton.blade.mvc.handler.RouteHandler;
 import com.hellokaton.blade.mvc.hook.WebHook;
 import com.hellokaton.blade.mvc.http.HttpMethod;
 import com.hellokaton.blade.mvc.route.mapping.StaticMapping;
-import com.hellokaton.blade.mvc.route.mapping.dynamic.RegexMapping;
+import com.hellokaton.blade.mvc.route.mapping.dynamic.TrieMapping;
 import com.hellokaton.blade.mvc.ui.ResponseType;
 import lombok.extern.slf4j.Slf4j;
 
@@ -35,6 +36,7 @@ public class RouteMatcher {
 
     private static final Pattern PATH_VARIABLE_PATTERN = Pattern.compile("/(?:([^:/]*):([^/]+))|(\\.\\*)");
     private static final String METHOD_NAME = "handle";
+    private static final String ANY_PATH = "/.*";
 
     // Storage URL and route
     private final Map<String, Route> routes = new HashMap<>(16);
@@ -43,8 +45,16 @@ public class RouteMatcher {
     private final Map<String, Method[]> classMethodPool = new ConcurrentHashMap<>();
     private final Map<Class<?>, Object> controllerPool = new ConcurrentHashMap<>(8);
 
-    private DynamicMapping dynamicMapping = new RegexMapping();
+    private DynamicMapping dynamicMapping = new TrieMapping();
     private final StaticMapping staticMapping = new StaticMapping();
+    private boolean hasStreamingRoute;
+
+    // hooks sorted by order with their compiled path, null until compiled
+    private HookPattern[] hookPatterns;
+
+    // dynamic route matches of hot paths per request method, null when disabled
+    private int routeCacheSize;
+    private ClockCache<String, RouteMatch>[] routeCaches;
 
     private Route addRoute(HttpMethod httpMethod, String path, RouteHandler handler) throws NoSuchMethodException {
         Class<?> handleType = handler.getClass();
@@ -59,7 +69,9 @@ public class RouteMatcher {
         Class<?> controllerType = route.getTargetType();
         Method method = route.getAction();
         ResponseType responseType = route.getResponseType();
-        return addRoute(httpMethod, path, controller, controllerType, method, responseType);
+        Route newRoute = addRoute(httpMethod, path, controller, controllerType, method, responseType);
+        newRoute.setStreaming(route.isStreaming());
+        return newRoute;
     }
 
     private Route addRoute(HttpMethod httpMethod, String path, Object controller,
@@ -83,6 +95,7 @@ public class RouteMatcher {
             if (null != order) {
                 route.setSort(order.value());
             }
+            this.hookPatterns = null;
             if (this.hooks.containsKey(key)) {
                 this.hooks.get(key).add(route);
             } else {
@@ -139,25 +152,88 @@ public class RouteMatcher {
     }
 
     public Route lookupRoute(String httpMethod, String path) {
+        RouteMatch match = matchRoute(httpMethod, parsePath(path));
+        return null == match ? null : match.toRoute();
+    }
+
+    /**
+     * Find the route of a request, the result shares the registered route.
+     *
+     * @param httpMethod request method
+     * @param path       normalized request path, see {@link PathKit#normalizePath(String)}
+     * @return route match or null
+     */
+    public RouteMatch matchRoute(String httpMethod, String path) {
         Route route = staticMapping.findRoute(path, httpMethod);
-        if (null != route) {
-            return route;
+        if (null == route) {
+            route = staticMapping.findRoute(path, HttpMethod.ALL.name());
         }
-        path = parsePath(path);
-        route = staticMapping.findRoute(path, httpMethod);
         if (null != route) {
-            return route;
+            return route.match();
         }
-        route = staticMapping.findRoute(path, HttpMethod.ALL.name());
-        if (null != route) {
-            return route;
-        } else {
-            if (staticMapping.hasPath(path)) {
-                throw new MethodNotAllowedException("[" + httpMethod + "] Method Not Allowed");
+        if (staticMapping.hasPath(path)) {
+            throw new MethodNotAllowedException("[" + httpMethod + "] Method Not Allowed");
+        }
+        ClockCache<String, RouteMatch>[] caches = this.routeCaches;
+        if (null == caches) {
+            return dynamicMapping.findMatch(httpMethod, path);
+        }
+        ClockCache<String, RouteMatch> cache = caches[HttpMethod.valueOf(httpMethod).ordinal()];
+        RouteMatch match = cache.get(path);
+        if (null == match) {
+            match = dynamicMapping.findMatch(httpMethod, path);
+            if (null != match) {
+                cache.put(path, match);
             }
         }
+        return match;
+    }
+
+    /**
+     * Cache the dynamic route matches of the most requested paths, the cache
+     * keeps up to size paths per request method and is emptied when routes change.
+     *
+     * @param size paths per request method, 0 disables the cache
+     */
+    @SuppressWarnings("unchecked")
+    public void setRouteCacheSize(int size) {
+        this.routeCacheSize = Math.max(0, size);
+        if (routeCacheSize == 0) {
+            this.routeCaches = null;
+            return;
+        }
+        ClockCache<String, RouteMatch>[] caches = new ClockCache[HttpMethod.values().length];
+        for (int i = 0; i < caches.length; i++) {
+            caches[i] = new ClockCache<>(routeCacheSize);
+        }
+        this.routeCaches = caches;
+    }
 
-        return dynamicMapping.findRoute(httpMethod, path);
+    public int getRouteCacheSize() {
+        return routeCacheSize;
+    }
+
+    /**
+     * Number of dynamic route lookups answered by the route cache
+     */
+    public long routeCacheHits() {
+        ClockCache<String, RouteMatch>[] caches = this.routeCaches;
+        return null == caches ? 0 : Stream.of(caches).mapToLong(ClockCache::hitCount).sum();
+    }
+
+    /**
+     * Number of dynamic route lookups missing the route cache
+     */
+    public long routeCacheMisses() {
+        ClockCache<String, RouteMatch>[] caches = this.routeCaches;
+        return null == caches ? 0 : Stream.of(caches).mapToLong(ClockCache::missCount).sum();
+    }
+
+    private void invalidateRouteCache() {
+        ClockCache<String, RouteMatch>[] caches = this.routeCaches;
+        if (null != caches) {
+            Stream.of(caches).forEach(ClockCache::clear);
+        }
     }
 
     private String cleanPathVariable(String pathVariable) {
@@ -167,6 +243,13 @@ public class RouteMatcher {
         return pathVariable;
     }
 
+    /**
+     * Whether any registered route receives its request body as a stream
+     */
+    public boolean hasStreamingRoute() {
+        return hasStreamingRoute;
+    }
+
     public boolean hasBeforeHook() {
         return hooks.values().stream()
                 .flatMap(Collection::stream).anyMatch(route -> route.getHttpMethod().equals(HttpMethod.BEFORE));
@@ -183,15 +266,7 @@ public class RouteMatcher {
      * @param path request path
      */
     public List<Route> getBefore(String path) {
-        String cleanPath = parsePath(path);
-        List<Route> collect = hooks.values().stream()
-                .flatMap(Collection::stream)
-                .sorted(Comparator.comparingInt(Route::getSort))
-                .filter(route -> route.getHttpMethod() == HttpMethod.BEFORE && matchesPath(route.getPath(), cleanPath))
-                .collect(Collectors.toList());
-
-        this.giveMatch(path, collect);
-        return collect;
+        return this.matchHooks(HttpMethod.BEFORE, parsePath(path));
     }
 
     /**
@@ -200,47 +275,159 @@ public class RouteMatcher {
      * @param path request path
      */
     public List<Route> getAfter(String path) {
-        String cleanPath = parsePath(path);
+        return this.matchHooks(HttpMethod.AFTER, parsePath(path));
+    }
 
-        List<Route> afters = hooks.values().stream()
-                .flatMap(Collection::stream)
-                .sorted(Comparator.comparingInt(Route::getSort))
-                .filter(route -> route.getHttpMethod() == HttpMethod.AFTER && matchesPath(route.getPath(), cleanPath))
-                .collect(Collectors.toList());
+    /**
+     * Find the before hooks of a matched route, resolved when the route was registered
+     *
+     * @param route matched route
+     * @param path  request path
+     * @return hooks in execution order, the array must not be modified
+     */
+    public Route[] getBefore(Route route, String path) {
+        HookChain chain = route.getBeforeHooks();
+        if (null == chain) {
+            return getBefore(path).toArray(HookChain.NO_HOOKS);
+        }
+        return chain.isConditional() ? chain.hooks(parsePath(path)) : chain.hooks();
+    }
 
-        this.giveMatch(path, afters);
-        return afters;
+    /**
+     * Find the after hooks of a matched route, resolved when the route was registered
+     *
+     * @param route matched route
+     * @param path  request path
+     * @return hooks in execution order, the array must not be modified
+     */
+    public Route[] getAfter(Route route, String path) {
+        HookChain chain = route.getAfterHooks();
+        if (null == chain) {
+            return getAfter(path).toArray(HookChain.NO_HOOKS);
+        }
+        return chain.isConditional() ? chain.hooks(parsePath(path)) : chain.hooks();
     }
 
     public List<Route> getMiddleware() {
         return this.middleware;
     }
 
+    private List<Route> matchHooks(HttpMethod httpMethod, String cleanPath) {
+        List<Route> matched = new ArrayList<>();
+        for (HookPattern hook : compileHooks()) {
+            if (hook.route.getHttpMethod() == httpMethod && hook.pattern.matcher(cleanPath).matches()) {
+                matched.add(hook.route);
+            }
+        }
+        return matched;
+    }
+
+    private HookPattern[] compileHooks() {
+        HookPattern[] compiled = this.hookPatterns;
+        if (null == compiled) {
+            compiled = hooks.values().stream()
+                    .flatMap(Collection::stream)
+                    .sorted(Comparator.comparingInt(Route::getSort))
+                    .map(HookPattern::new)
+                    .toArray(HookPattern[]::new);
+            this.hookPatterns = compiled;
+        }
+        return compiled;
+    }
+
     /**
-     * Sort of path
-     *
-     * @param uri    request uri
-     * @param routes route list
+     * Resolve the hooks of a registered route. Every hook of a static route is known,
+     * a dynamic route keeps the pattern of hooks that only match some of its paths.
      */
-    private void giveMatch(final String uri, List<Route> routes) {
-        routes.stream().sorted((o1, o2) -> {
-            if (o2.getPath().equals(uri)) {
-                return o2.getPath().indexOf(uri);
+    private HookChain resolveHooks(HttpMethod httpMethod, Route route) {
+        String path = parsePath(route.getPath());
+        boolean dynamic = PATH_VARIABLE_PATTERN.matcher(path).find();
+        String prefix = dynamic ? routePrefix(path) : null;
+
+        List<Route> chain = new ArrayList<>();
+        List<Pattern> patterns = new ArrayList<>();
+        boolean conditional = false;
+        for (HookPattern hook : compileHooks()) {
+            if (hook.route.getHttpMethod() != httpMethod) {
+                continue;
             }
-            return -1;
-        });
+            if (!dynamic) {
+                if (hook.pattern.matcher(path).matches()) {
+                    chain.add(hook.route);
+                }
+            } else if (hook.any) {
+                chain.add(hook.route);
+                patterns.add(null);
+            } else if (hook.prefix.startsWith(prefix) || !hook.literal && prefix.startsWith(hook.prefix)) {
+                chain.add(hook.route);
+                patterns.add(hook.pattern);
+                conditional = true;
+            }
+        }
+        if (chain.isEmpty()) {
+            return HookChain.EMPTY;
+        }
+        return new HookChain(chain.toArray(HookChain.NO_HOOKS),
+                conditional ? patterns.toArray(new Pattern[0]) : null);
     }
 
     /**
-     * Matching path
-     *
-     * @param routePath   route path
-     * @param pathToMatch match path
-     * @return return match is success
+     * Bind the invoker and build the argument binding of a controller method,
+     * a binding failure is raised again on request
+     */
+    private void resolveArguments(Route route) {
+        if (null == route.getAction() || route.getTargetType() == RouteHandler.class) {
+            return;
+        }
+        route.getInvoker();
+        try {
+            route.setArgumentResolvers(RouteActionArguments.getArgumentResolvers(route.getAction()));
+        } catch (Exception e) {
+            log.debug("Resolve arguments of {} error", route.getAction(), e);
+        }
+    }
+
+    /**
+     * Literal start shared by every request path of a dynamic route
      */
-    private boolean matchesPath(String routePath, String pathToMatch) {
-        routePath = PathKit.VAR_REGEXP_PATTERN.matcher(routePath).replaceAll(PathKit.VAR_REPLACE);
-        return pathToMatch.matches("(?i)" + routePath);
+    private static String routePrefix(String path) {
+        int end = path.length();
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == ':' || c == '.' || c == '*') {
+                end = path.lastIndexOf('/', i) + 1;
+                break;
+            }
+        }
+        return path.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Hook route with its path compiled once
+     */
+    private static final class HookPattern {
+
+        private final Route route;
+        private final Pattern pattern;
+        private final boolean any;
+        // literal start of the pattern, every matching path begins with it
+        private final String prefix;
+        private final boolean literal;
+
+        HookPattern(Route route) {
+            String regex = PathKit.VAR_REGEXP_PATTERN.matcher(route.getPath()).replaceAll(PathKit.VAR_REPLACE);
+            this.route = route;
+            this.pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+            this.any = ANY_PATH.equals(regex);
+
+            int end = 0;
+            while (end < regex.length() && "\\^$.|?*+()[]{}".indexOf(regex.charAt(end)) < 0) {
+                end++;
+            }
+            this.prefix = regex.substring(0, end).toLowerCase(Locale.ROOT);
+            this.literal = end == regex.length();
+        }
+
     }
 
     /**
@@ -271,6 +458,16 @@ public class RouteMatcher {
                 .flatMap(Collection::stream).forEach(this::registerRoute);
 
         dynamicMapping.register();
+        invalidateRouteCache();
+        hookPatterns = null;
+        routes.values().forEach(route -> {
+            route.setHooks(resolveHooks(HttpMethod.BEFORE, route), resolveHooks(HttpMethod.AFTER, route));
+            this.resolveArguments(route);
+        });
+        hooks.values().stream().flatMap(Collection::stream)
+                .filter(hook -> hook.getTargetType() != RouteHandler.class)
+                .forEach(Route::getInvoker);
+        hasStreamingRoute = routes.values().stream().anyMatch(Route::isStreaming);
 
 //        webSockets.keySet().forEach(path -> logWebSocket(log, path));
     }
@@ -334,10 +531,12 @@ public class RouteMatcher {
     public void clear() {
         this.routes.clear();
         this.hooks.clear();
+        this.hookPatterns = null;
         this.classMethodPool.clear();
         this.controllerPool.clear();
         this.staticMapping.clear();
         this.dynamicMapping.clear();
+        this.invalidateRouteCache();
     }
 
     public void initMiddleware(List<WebHook> hooks) {
@@ -357,6 +556,7 @@ public class RouteMatcher {
 
     public void setDynamicMapping(DynamicMapping dynamicMapping) {
         this.dynamicMapping = dynamicMapping;
+        this.invalidateRouteCache();
     }
 
 }
@@ -86,4 +86,17 @@ public class RouteStruct {
         return ResponseType.EMPTY;
     }
 
+    public boolean isStreaming() {
+        if (null != any) {
+            return any.streaming();
+        }
+        if (null != post) {
+            return post.streaming();
+        }
+        if (null != put) {
+            return put.streaming();
+        }
+        return false;
+    }
+
 }
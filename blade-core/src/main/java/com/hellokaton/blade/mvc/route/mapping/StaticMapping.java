@@ -30,10 +30,8 @@ public class StaticMapping {
     }
 
     public Route findRoute(String path, String httpMethod) {
-        if (!mapping.containsKey(path)) {
-            return null;
-        }
-        return mapping.get(path).get(httpMethod);
+        Map<String, Route> routes = mapping.get(path);
+        return null == routes ? null : routes.get(httpMethod);
     }
 
     public boolean hasPath(String path) {
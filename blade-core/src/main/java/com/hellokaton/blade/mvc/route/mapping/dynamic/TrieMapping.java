@@ -1,22 +1,22 @@
 package com.hellokaton.blade.mvc.route.mapping.dynamic;
 
-import com.hellokaton.blade.kit.StringKit;
+import com.hellokaton.blade.kit.BladeKit;
 import com.hellokaton.blade.mvc.http.HttpMethod;
 import com.hellokaton.blade.mvc.route.DynamicMapping;
 import com.hellokaton.blade.mvc.route.Route;
-import lombok.Builder;
-import lombok.Getter;
-import lombok.Setter;
+import com.hellokaton.blade.mvc.route.RouteMatch;
 
 import java.util.*;
+import java.util.regex.Pattern;
 
 /**
- * Trie tree based url route
+ * Trie tree based url route, every edge is one part of the path.
  *
  * Support:
  *  - * : match any one part
- *  - /* : match suffix with any number of parts
+ *  - /* or /** at the end : match suffix with any number of parts
  *  - :xxx : match one part as path variable
+ *  - xxx:regex : match one part with the regex as path variable
  *
  * Example:
  *  - /aaa/* :   /aaa/bbb, /aaa/bbb/ccc
@@ -24,150 +24,220 @@ import java.util.*;
  *  - /aaa/*\/ccc/*
  *  - /aaa/bbb/:id : /aaa/bbb/ccc
  *  - /aaa/bbb/:name/:id
+ *  - /aaa/id:[0-9]+ : /aaa/123
+ *
+ * When several children match a part they are tried in the order static text,
+ * regex variable, path variable, wildcard and suffix wildcard. Children are kept in arrays
+ * and a lookup compares path regions in place, a miss does not allocate.
  *
  * @author: dqyuan
  * @date: 2020/06/25
  */
 public class TrieMapping implements DynamicMapping {
 
-    private Node root = Node.builder().build();
-
-    private enum NodeType {
-        NORMAL,   // static text
-        WILD,    // wildcard
-        PARAM   // path param
-    }
-
-    private enum ChildType {
-        NONCHILD,  // without child now
-        STATIC,    // have multiple static children
-        DYNAMIC   // or only have one dynamic child
-    }
+    private static final int METHOD_COUNT = HttpMethod.values().length;
 
-    @Builder
-    @Getter
-    @Setter
-    private static class Node {
+    private Node root = new Node();
 
-        private String part;
+    /**
+     * Route of one http method ending at a node
+     */
+    private static final class Leaf {
 
-        private NodeType type;
+        private final Route route;
 
         /**
-         * support http method
+         * Path variable names and the index of the part holding each of them
          */
-        private final Map<HttpMethod, Route> routeMap = new LinkedHashMap<>();
+        private final String[] paramNames;
+        private final int[] paramParts;
 
-        /**
-         * in staticChildren and dynamicChild, only one is real children, according to ChildType
-         * when in dynamic ChildType, staticChildren is used to store static end node, which is last node
-         * with static text.
-         */
-        private final Map<String, Node> staticChildren = new LinkedHashMap<>();
+        Leaf(Route route, String[] paramNames, int[] paramParts) {
+            this.route = route;
+            this.paramNames = paramNames;
+            this.paramParts = paramParts;
+        }
+
+    }
+
+    private static final class Node {
 
-        private Node dynamicChild;
+        // static children in an open addressing table
+        private String[] staticKeys = new String[0];
+        private int[] staticHashes = new int[0];
+        private Node[] staticChildren = new Node[0];
+        private int staticCount;
 
-        private Node anyStaticChild() {
-            for (Node value : staticChildren.values()) {
-                return value;
+        private String[] regexKeys = new String[0];
+        private Pattern[] regexPatterns = new Pattern[0];
+        private Node[] regexChildren = new Node[0];
+
+        private Node paramChild;
+        private Node wildChild;
+        private Node suffixChild;
+
+        private Leaf[] leaves;
+
+        private Node findStatic(String path, int start, int end) {
+            if (staticCount == 0) {
+                return null;
+            }
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + path.charAt(i);
+            }
+            int len = end - start;
+            int mask = staticKeys.length - 1;
+            for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+                String key = staticKeys[i];
+                if (null == key) {
+                    return null;
+                }
+                if (staticHashes[i] == hash && key.length() == len && path.regionMatches(start, key, 0, len)) {
+                    return staticChildren[i];
+                }
             }
-            return null;
         }
 
-        public Node putChildIfAbsent(Node child, boolean isEnd) {
-            switch (childType()) {
-                case NONCHILD:
-                    if (child.getType() == NodeType.NORMAL) {
-                        staticChildren.put(child.getPart(), child);
-                    } else {
-                        dynamicChild = child;
-                    }
-                    return child;
-                case STATIC:
-                    if (child.getType() != NodeType.NORMAL) {
-                        boolean canDynamic = staticChildren.values()
-                                .stream()
-                                .allMatch(Node::isEnd);
-                        if (!canDynamic) {
-                            throw new IllegalStateException(
-                                    String.format("%s conflict with path %s", child.getPart(),
-                                            anyStaticChild().getPart())
-                            );
-                        }
-                        // convert to Dynamic ChildType
-                        dynamicChild = child;
-                        return dynamicChild;
-                    }
-                    return staticChildren.computeIfAbsent(child.getPart(), ignore -> child);
-                case DYNAMIC:
-                    if (Objects.equals(dynamicChild.getPart(), child.getPart())) {
-                        return dynamicChild;
-                    }
-                    if (isEnd && child.getType() == NodeType.NORMAL) {
-                        return staticChildren.computeIfAbsent(child.getPart(), ignore -> child);
+        private Node addStatic(String part) {
+            Node child = findStatic(part, 0, part.length());
+            if (null != child) {
+                return child;
+            }
+            child = new Node();
+            if ((staticCount + 1) * 2 > staticKeys.length) {
+                String[] keys = staticKeys;
+                Node[] children = staticChildren;
+                int capacity = Math.max(4, staticKeys.length * 2);
+                staticKeys = new String[capacity];
+                staticHashes = new int[capacity];
+                staticChildren = new Node[capacity];
+                for (int i = 0; i < keys.length; i++) {
+                    if (null != keys[i]) {
+                        putStatic(keys[i], children[i]);
                     }
-                    throw new IllegalStateException(
-                      String.format("%s conflict with path %s", child.getPart(),
-                              dynamicChild.getPart())
-                    );
+                }
             }
-            throw new IllegalStateException();
+            putStatic(part, child);
+            staticCount++;
+            return child;
         }
 
-        /**
-         * is end of a url
-         * @return
-         */
-        public boolean isEnd() {
-            return !routeMap.isEmpty();
+        private void putStatic(String part, Node child) {
+            int hash = part.hashCode();
+            int mask = staticKeys.length - 1;
+            int i = spread(hash) & mask;
+            while (null != staticKeys[i]) {
+                i = (i + 1) & mask;
+            }
+            staticKeys[i] = part;
+            staticHashes[i] = hash;
+            staticChildren[i] = child;
         }
 
-        public Route selectRoute(HttpMethod httpMethod) {
-            return routeMap.getOrDefault(
-                    httpMethod,
-                    routeMap.get(HttpMethod.ALL)
-            );
+        private Node addRegex(String regex) {
+            for (int i = 0; i < regexKeys.length; i++) {
+                if (regexKeys[i].equals(regex)) {
+                    return regexChildren[i];
+                }
+            }
+            int size = regexKeys.length;
+            regexKeys = Arrays.copyOf(regexKeys, size + 1);
+            regexPatterns = Arrays.copyOf(regexPatterns, size + 1);
+            regexChildren = Arrays.copyOf(regexChildren, size + 1);
+            regexKeys[size] = regex;
+            regexPatterns[size] = Pattern.compile(regex);
+            regexChildren[size] = new Node();
+            return regexChildren[size];
         }
 
-        public ChildType childType() {
-            if (staticChildren.isEmpty() && dynamicChild == null) {
-                return ChildType.NONCHILD;
-            } else if (dynamicChild != null) {
-                return ChildType.DYNAMIC;
-            } else {
-                return ChildType.STATIC;
-            }
+        private boolean regexMatches(int index, String path, int start, int end) {
+            // no per-thread state, which virtual threads would allocate anew
+            return regexPatterns[index].matcher(path).region(start, end).matches();
+        }
+
+        private Leaf leaf(int method) {
+            return null == leaves ? null : leaves[method];
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
         }
 
     }
 
     @Override
     public void addRoute(HttpMethod httpMethod, Route route, List<String> uriVariableNames) {
-        String path = route.getOriginalPath();
-        Node prev = root;
-        String[] parts = path.split("/");
-        for (int i = 0; i < parts.length; i++) {
-            String part = parts[i];
-            if (StringKit.isBlank(part)) {
-                continue;
-            }
-            boolean isEnd = i == parts.length - 1;
+        if (BladeKit.isWebHook(httpMethod)) {
+            // hooks are matched by the route matcher
+            return;
+        }
+        String path = null != route.getOriginalPath() ? route.getOriginalPath() : route.getPath();
+        List<String> parts = new ArrayList<>();
+        partIter(path).forEachRemaining(parts::add);
 
-            prev = prev.putChildIfAbsent(getNodeByPart(part), isEnd);
-            if (isEnd) {
-                prev.getRouteMap().put(httpMethod, route);
+        List<String> paramNames = new ArrayList<>();
+        List<Integer> paramParts = new ArrayList<>();
+        Node node = root;
+        for (int i = 0; i < parts.size(); i++) {
+            String part = parts.get(i);
+            boolean isEnd = i == parts.size() - 1;
+            int colon = part.indexOf(':');
+            if (isEnd && ("*".equals(part) || "**".equals(part) || ".*".equals(part))) {
+                if (null == node.suffixChild) {
+                    node.suffixChild = new Node();
+                }
+                node = node.suffixChild;
+            } else if ("*".equals(part) || "**".equals(part) || ".*".equals(part)) {
+                if (null == node.wildChild) {
+                    node.wildChild = new Node();
+                }
+                node = node.wildChild;
+            } else if (colon == 0) {
+                if (null == node.paramChild) {
+                    node.paramChild = new Node();
+                }
+                node = node.paramChild;
+                paramNames.add(cleanPathVariable(part.substring(1)));
+                paramParts.add(i);
+            } else if (colon > 0) {
+                node = node.addRegex(part.substring(colon + 1));
+                paramNames.add(part.substring(0, colon));
+                paramParts.add(i);
+            } else if (part.indexOf('*') >= 0) {
+                node = node.addRegex(globToRegex(part));
+            } else {
+                node = node.addStatic(part);
             }
         }
+
+        if (null == node.leaves) {
+            node.leaves = new Leaf[METHOD_COUNT];
+        }
+        node.leaves[httpMethod.ordinal()] = new Leaf(route,
+                paramNames.toArray(new String[0]),
+                paramParts.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static String cleanPathVariable(String pathVariable) {
+        int dot = pathVariable.indexOf('.');
+        return dot < 0 ? pathVariable : pathVariable.substring(0, dot);
     }
 
-    private Node getNodeByPart(String part) {
-        NodeType type = part.charAt(0) == ':'? NodeType.PARAM:
-                "*".equals(part) ? NodeType.WILD:
-                        NodeType.NORMAL;
-        return Node.builder()
-                .part(part)
-                .type(type)
-                .build();
+    private static String globToRegex(String part) {
+        StringBuilder regex = new StringBuilder();
+        int start = 0;
+        for (int star = part.indexOf('*'); star >= 0; star = part.indexOf('*', start)) {
+            if (star > start) {
+                regex.append(Pattern.quote(part.substring(start, star)));
+            }
+            regex.append(".*");
+            start = star + 1;
+        }
+        if (start < part.length()) {
+            regex.append(Pattern.quote(part.substring(start)));
+        }
+        return regex.toString();
     }
 
     @Override
@@ -176,81 +246,100 @@ public class TrieMapping implements DynamicMapping {
 
     @Override
     public Route findRoute(String httpMethod, String path) {
+        RouteMatch match = findMatch(httpMethod, path);
+        return null == match ? null : match.toRoute();
+    }
+
+    @Override
+    public RouteMatch findMatch(String httpMethod, String path) {
         HttpMethod requestMethod = HttpMethod.valueOf(httpMethod);
-        Map<String, String> uriVariables = new LinkedHashMap<>();
-        Iterator<String> partIter = partIter(path);
-        Node prev = root;
-        walk:
-        for (; partIter.hasNext(); ) {
-            String part = partIter.next();
-            if (StringKit.isBlank(part)) continue;
-            boolean isEnd = !partIter.hasNext();
-            switch (prev.childType()) {
-                case STATIC:
-                    Node child = prev.getStaticChildren().get(part);
-                    if (child == null) {
-                        return null;
-                    }
-                    prev = child;
-                    break;
-                case DYNAMIC:
-                    if (isEnd) {
-                        Node staticEnd = prev.getStaticChildren().get(part);
-                        if (staticEnd != null) {
-                            prev = staticEnd;
-                            break;
-                        }
-                    }
-                    prev = prev.getDynamicChild();
-                    if (prev.getType() == NodeType.PARAM) {
-                        uriVariables.put(prev.getPart().substring(1), part);
-                    }
-                    break;
-                default:
-                    // leaf node
-                    break walk;
-            }
+        if (null == path || path.isEmpty() || path.charAt(0) != '/') {
+            return null;
+        }
+        Leaf leaf = match(root, path, 0, requestMethod.ordinal());
+        if (null == leaf && requestMethod != HttpMethod.ALL) {
+            leaf = match(root, path, 0, HttpMethod.ALL.ordinal());
+        }
+        if (null == leaf) {
+            return null;
+        }
+        if (leaf.paramParts.length == 0) {
+            return leaf.route.match();
         }
+        return new RouteMatch(leaf.route, leaf.paramNames, pathParams(leaf, path));
+    }
 
-        if (prev.isEnd() &&
-                (!partIter.hasNext() || prev.getType() == NodeType.WILD)) {
-            Route selectedRoute = prev.selectRoute(requestMethod);
-            if (selectedRoute == null) {
-                return null;
-            }
-            Route route = new Route(selectedRoute);
-            route.setPathParams(uriVariables);
-            return route;
+    private Leaf match(Node node, String path, int start, int method) {
+        int len = path.length();
+        while (start < len && path.charAt(start) == '/') {
+            start++;
+        }
+        if (start >= len) {
+            return node.leaf(method);
+        }
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+            end = len;
         }
 
+        Leaf leaf;
+        Node child = node.findStatic(path, start, end);
+        if (null != child && null != (leaf = match(child, path, end, method))) {
+            return leaf;
+        }
+        for (int i = 0; i < node.regexChildren.length; i++) {
+            if (node.regexMatches(i, path, start, end)
+                    && null != (leaf = match(node.regexChildren[i], path, end, method))) {
+                return leaf;
+            }
+        }
+        if (null != node.paramChild && null != (leaf = match(node.paramChild, path, end, method))) {
+            return leaf;
+        }
+        if (null != node.wildChild && null != (leaf = match(node.wildChild, path, end, method))) {
+            return leaf;
+        }
+        if (null != node.suffixChild) {
+            return node.suffixChild.leaf(method);
+        }
         return null;
     }
 
-    protected Iterator<String> partIter(String path) {
-        return new Iterator<String>() {
-            private int start = 1;
-            private int end = start + 1;
-
-            @Override
-            public boolean hasNext() {
-                return end <= path.length();
+    private String[] pathParams(Leaf leaf, String path) {
+        int[] paramParts = leaf.paramParts;
+        String[] values = new String[paramParts.length];
+        int part = 0;
+        int param = 0;
+        int len = path.length();
+        int start = 0;
+        while (param < paramParts.length) {
+            while (start < len && path.charAt(start) == '/') {
+                start++;
             }
-
-            @Override
-            public String next() {
-                while (end < path.length() && path.charAt(end) != '/') {
-                    end++;
-                }
-                String part = path.substring(start, end);
-                start = end + 1;
-                end = start + 1;
-                return part;
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = len;
             }
-        };
+            if (part == paramParts[param]) {
+                values[param++] = path.substring(start, end);
+            }
+            part++;
+            start = end;
+        }
+        return values;
+    }
+
+    /**
+     * Iterate the non empty parts of a path
+     */
+    protected Iterator<String> partIter(String path) {
+        return Arrays.stream(path.split("/"))
+                .filter(part -> !part.isEmpty())
+                .iterator();
     }
 
     @Override
     public void clear() {
-        root = Node.builder().build();
+        root = new Node();
     }
 }
@@ -16,12 +16,14 @@
 package com.hellokaton.blade.mvc.wrapper;
 
 import com.hellokaton.blade.kit.DateKit;
+import com.hellokaton.blade.kit.WebKit;
 import com.hellokaton.blade.mvc.BladeConst;
 import com.hellokaton.blade.mvc.WebContext;
 import com.hellokaton.blade.server.NettyHttpConst;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.DefaultFileRegion;
 import io.netty.handler.codec.http.*;
+import io.netty.handler.stream.ChunkedNioFile;
 
 import java.io.*;
 import java.nio.channels.FileChannel;
@@ -87,9 +89,13 @@ public class OutputStreamWrapper implements Closeable, Flushable {
 
             // Write the initial line and the header.
             ctx.write(httpResponse);
-            ctx.write(new DefaultFileRegion(file, 0, fileLength), ctx.newProgressivePromise());
-            // Write the end marker.
-            ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+            if (WebKit.supportFileRegion(ctx)) {
+                ctx.write(new DefaultFileRegion(file, 0, fileLength), ctx.newProgressivePromise());
+                // Write the end marker.
+                ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+            } else {
+                ctx.writeAndFlush(new HttpChunkedInput(new ChunkedNioFile(file, 0, fileLength, 8192)));
+            }
         } finally {
             if(null != outputStream){
                 outputStream.close();
@@ -2,6 +2,7 @@ package com.hellokaton.blade.options;
 
 import com.hellokaton.blade.mvc.http.HttpSession;
 import com.hellokaton.blade.mvc.http.Session;
+import com.hellokaton.blade.mvc.http.session.SessionStore;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -30,10 +31,18 @@ public class HttpOptions {
     /**
      * Session implementation type, the default is HttpSession.
      * <p>
-     * When you need to be able to achieve similar RedisSession
+     * When you need to be able to achieve similar RedisSession,
+     * use CookieSession to keep sessions in signed cookies instead of the server,
+     * it needs the http.session.secret config.
      */
     private Class<? extends Session> sessionType = HttpSession.class;
 
+    /**
+     * Session store, when not set it is chosen by the http.session.store config:
+     * memory (default), lru or mapped.
+     */
+    private SessionStore sessionStore;
+
     public static HttpOptions create() {
         return new HttpOptions();
     }
@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.server;
+
+import com.hellokaton.blade.kit.StringKit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A byte range of a Range header, both ends inclusive.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+public class ByteRange {
+
+    /**
+     * More ranges than this are served as a whole
+     */
+    static final int MAX_RANGES = 16;
+
+    private final long start;
+    private final long end;
+
+    ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long start() {
+        return start;
+    }
+
+    public long end() {
+        return end;
+    }
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    /**
+     * @return Content-Range header value
+     */
+    public String contentRange(long total) {
+        return "bytes " + start + "-" + end + "/" + total;
+    }
+
+    /**
+     * Parse a Range header against the content length, overlapping and
+     * adjacent ranges are merged.
+     *
+     * @param header Range header value
+     * @param total  content length
+     * @return ranges to send, null when the header is ignored and the whole
+     * content is sent, empty when no range is satisfiable
+     */
+    public static List<ByteRange> parse(String header, long total) {
+        if (StringKit.isEmpty(header) || !header.startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = header.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            long start;
+            long end;
+            try {
+                if (dash == 0) {
+                    // suffix range, the last n bytes
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix <= 0) {
+                        continue;
+                    }
+                    start = Math.max(0, total - suffix);
+                    end = total - 1;
+                } else {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    if (dash == spec.length() - 1) {
+                        end = total - 1;
+                    } else {
+                        end = Long.parseLong(spec.substring(dash + 1));
+                        if (end < start) {
+                            return null;
+                        }
+                        end = Math.min(end, total - 1);
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (start < 0) {
+                return null;
+            }
+            if (start < total) {
+                ranges.add(new ByteRange(start, end));
+            }
+        }
+        return merge(ranges);
+    }
+
+    /**
+     * Whether the If-Range header still matches the content, a range of a
+     * changed content is not sent.
+     *
+     * @param ifRange      If-Range header value, an entity tag or a date
+     * @param etag         current entity tag, may be null
+     * @param lastModified current Last-Modified header value, may be null
+     */
+    public static boolean ifRangeMatches(String ifRange, String etag, String lastModified) {
+        if (StringKit.isEmpty(ifRange)) {
+            return true;
+        }
+        if (ifRange.startsWith("W/")) {
+            // weak tags never match
+            return false;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        return ifRange.equals(lastModified);
+    }
+
+    private static List<ByteRange> merge(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(ByteRange::start));
+        List<ByteRange> merged = new ArrayList<>(sorted.size());
+        ByteRange current = sorted.get(0);
+        for (int i = 1; i < sorted.size(); i++) {
+            ByteRange next = sorted.get(i);
+            if (next.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, next.end));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged.size() == ranges.size() ? ranges : Collections.unmodifiableList(merged);
+    }
+
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.server;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpContentCompressor;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpResponse;
+
+import java.util.List;
+
+/**
+ * HttpContentCompressor leaving out the responses marked by {@link #skip(HttpHeaders)},
+ * e.g. files sent as a region, which it can not encode, or content that does not compress.
+ * <p>
+ * The mark is an internal header removed before the response is encoded.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+class ContentCompressor extends HttpContentCompressor {
+
+    private static final String SKIP_HEADER = "X-Blade-Skip-Compression";
+
+    private boolean skipping;
+
+    /**
+     * Mark the response to be sent as it is, only when the compressor is in the pipeline
+     */
+    static void skip(HttpHeaders headers) {
+        headers.set(SKIP_HEADER, "");
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, HttpObject msg, List<Object> out) throws Exception {
+        if (!(msg instanceof HttpResponse)) {
+            super.encode(ctx, msg, out);
+            return;
+        }
+        HttpHeaders headers = ((HttpResponse) msg).headers();
+        skipping = headers.contains(SKIP_HEADER);
+        if (skipping) {
+            headers.remove(SKIP_HEADER);
+        }
+        try {
+            super.encode(ctx, msg, out);
+        } finally {
+            skipping = false;
+        }
+    }
+
+    @Override
+    protected Result beginEncode(HttpResponse response, String acceptEncoding) throws Exception {
+        return skipping ? null : super.beginEncode(response, acceptEncoding);
+    }
+
+}
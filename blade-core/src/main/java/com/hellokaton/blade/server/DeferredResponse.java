@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.server;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+/**
+ * Response writing its own headers and body, e.g. a file, when its turn
+ * on the connection comes.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+@Slf4j
+public class DeferredResponse extends DefaultHttpResponse {
+
+    @FunctionalInterface
+    public interface Writer {
+        ChannelFuture write(ChannelHandlerContext ctx, HttpResponse response) throws Exception;
+    }
+
+    private final Writer writer;
+
+    public DeferredResponse(HttpResponseStatus status, Writer writer) {
+        super(HTTP_1_1, status);
+        this.writer = writer;
+    }
+
+    /**
+     * Write the response, the connection is closed when it fails
+     */
+    public void write(ChannelHandlerContext ctx) {
+        try {
+            writer.write(ctx, this);
+        } catch (Exception e) {
+            log.error("Write response error", e);
+            ctx.close();
+        }
+    }
+
+}
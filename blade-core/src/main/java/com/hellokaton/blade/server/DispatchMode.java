@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.server;
+
+import com.hellokaton.blade.kit.StringKit;
+
+/**
+ * Where route handlers are executed, configured by {@code server.dispatch}.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+public enum DispatchMode {
+
+    /**
+     * Run handlers on the netty event loop, suitable for non-blocking handlers.
+     */
+    EVENTLOOP,
+
+    /**
+     * Run handlers on a bounded worker pool.
+     */
+    POOL,
+
+    /**
+     * Run each handler on a virtual thread, falls back to {@link #POOL} when unsupported.
+     */
+    VIRTUAL;
+
+    public static DispatchMode of(String value) {
+        if (StringKit.isBlank(value)) {
+            return EVENTLOOP;
+        }
+        for (DispatchMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(value.trim())) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown server.dispatch value: " + value);
+    }
+
+}
@@ -18,12 +18,12 @@ package com.hellokaton.blade.server;
 import com.hellokaton.blade.exception.BladeException;
 import com.hellokaton.blade.exception.NotFoundException;
 import com.hellokaton.blade.kit.BladeCache;
-import com.hellokaton.blade.kit.LRUSet;
 import com.hellokaton.blade.mvc.WebContext;
 import com.hellokaton.blade.mvc.handler.ExceptionHandler;
 import com.hellokaton.blade.mvc.http.*;
-import com.hellokaton.blade.mvc.route.Route;
+import com.hellokaton.blade.mvc.route.RouteMatch;
 import com.hellokaton.blade.mvc.route.RouteMatcher;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -31,13 +31,16 @@ import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.AttributeKey;
 import io.netty.util.concurrent.FastThreadLocal;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.Instant;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 
 import static com.hellokaton.blade.kit.BladeKit.*;
 import static com.hellokaton.blade.mvc.BladeConst.ENV_KEY_PERFORMANCE;
@@ -56,17 +59,30 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<HttpRequest>
 
     public static final FastThreadLocal<WebContext> WEB_CONTEXT_THREAD_LOCAL = new FastThreadLocal<>();
 
+    private static final AttributeKey<CompletableFuture<Void>> LAST_WRITE = AttributeKey.valueOf("blade.lastWrite");
+
     private final StaticFileHandler staticFileHandler = new StaticFileHandler(WebContext.blade());
     private final RouteMethodHandler routeHandler = new RouteMethodHandler();
-    private final Set<String> notStaticUri = new LRUSet<>(128);
+    // static folders, a scan of these few prefixes is cheaper than any cache
+    private final String[] staticPrefixes = WebContext.blade().getStatics().toArray(new String[0]);
     private final RouteMatcher routeMatcher = WebContext.blade().routeMatcher();
 
-    private boolean allowCost() {
-        return WebContext.blade().httpOptions().isEnableRequestCost();
+    /**
+     * Executor used to run route handlers, null means running on the event loop.
+     */
+    private final Executor dispatchExecutor;
+
+    private final boolean allowCost;
+    private final boolean enablePerformance;
+
+    public HttpServerHandler() {
+        this(null);
     }
 
-    private boolean enablePerformance() {
-        return WebContext.blade().environment()
+    public HttpServerHandler(Executor dispatchExecutor) {
+        this.dispatchExecutor = dispatchExecutor;
+        this.allowCost = WebContext.blade().httpOptions().isEnableRequestCost();
+        this.enablePerformance = WebContext.blade().environment()
                 .getBoolean(ENV_KEY_PERFORMANCE, false);
     }
 
@@ -77,15 +93,145 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<HttpRequest>
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, HttpRequest httpRequest) {
-        CompletableFuture<HttpRequest> future = CompletableFuture.completedFuture(httpRequest);
+        if (null != dispatchExecutor) {
+            this.dispatch(ctx, httpRequest);
+            return;
+        }
 
-        Executor executor = ctx.executor();
+        CompletableFuture<Void> previous = pendingWrite(ctx.channel());
+        if (null != previous) {
+            // an async response of this connection is still pending, answer after it
+            this.enqueue(ctx, httpRequest, previous.thenCompose(v -> call(ctx, httpRequest)));
+            return;
+        }
 
-        future.thenApplyAsync(req -> buildWebContext(ctx, req), executor)
-                .thenApplyAsync(this::executeLogic, executor)
-                .thenApplyAsync(this::buildResponse, executor)
-                .exceptionally(this::handleException)
-                .thenAcceptAsync(msg -> writeResponse(ctx, future, msg), ctx.channel().eventLoop());
+        // fast path: route, handle and encode in the current task, flushed in channelReadComplete
+        WebContext webContext = buildWebContext(ctx, httpRequest);
+        io.netty.handler.codec.http.HttpResponse msg = process(webContext);
+        if (webContext.isAsync()) {
+            this.enqueue(ctx, httpRequest, completeAsync(webContext));
+            return;
+        }
+        httpRequest.release();
+        if (msg instanceof DeferredResponse) {
+            ((DeferredResponse) msg).write(ctx);
+        } else if (null != msg) {
+            ctx.write(msg);
+        }
+    }
+
+    /**
+     * Run the request on the dispatch executor, responses of the same connection
+     * are written on the event loop in the order the requests arrived.
+     */
+    private void dispatch(ChannelHandlerContext ctx, HttpRequest httpRequest) {
+        CompletableFuture<Void> previous = pendingWrite(ctx.channel());
+
+        CompletableFuture<io.netty.handler.codec.http.HttpResponse> future;
+        if (isStaticFile(httpRequest.httpMethod(), httpRequest.uri())) {
+            // static files are written directly to the channel, run them in turn on the event loop
+            CompletableFuture<Void> turn = null != previous ? previous : CompletableFuture.completedFuture(null);
+            future = turn.thenComposeAsync(v -> call(ctx, httpRequest), ctx.channel().eventLoop());
+        } else {
+            try {
+                future = CompletableFuture.supplyAsync(() -> call(ctx, httpRequest), dispatchExecutor)
+                        .thenCompose(Function.identity());
+            } catch (RejectedExecutionException e) {
+                log.warn("Dispatch executor is busy, reject request: {} {}", httpRequest.method(), httpRequest.uri());
+                future = CompletableFuture.completedFuture(serviceUnavailable(httpRequest));
+            }
+            if (null != previous) {
+                future = previous.thenCombine(future, (v, msg) -> msg);
+            }
+        }
+        this.enqueue(ctx, httpRequest, future);
+    }
+
+    private CompletableFuture<Void> pendingWrite(Channel channel) {
+        CompletableFuture<Void> previous = channel.attr(LAST_WRITE).get();
+        return null != previous && !previous.isDone() ? previous : null;
+    }
+
+    /**
+     * Write the response on the event loop once it is ready, later requests of the channel wait for it.
+     */
+    private void enqueue(ChannelHandlerContext ctx, HttpRequest httpRequest,
+                         CompletableFuture<io.netty.handler.codec.http.HttpResponse> future) {
+        Channel channel = ctx.channel();
+        CompletableFuture<Void> written = future.handleAsync((msg, e) -> {
+            if (null != e) {
+                log.error("Dispatch request error", e);
+                msg = serviceUnavailable(httpRequest);
+            }
+            httpRequest.release();
+            if (msg instanceof DeferredResponse) {
+                ((DeferredResponse) msg).write(ctx);
+            } else if (null != msg) {
+                ctx.writeAndFlush(msg);
+            }
+            return null;
+        }, channel.eventLoop());
+        channel.attr(LAST_WRITE).set(written);
+    }
+
+    private CompletableFuture<io.netty.handler.codec.http.HttpResponse> call(ChannelHandlerContext ctx, HttpRequest httpRequest) {
+        WebContext webContext = buildWebContext(ctx, httpRequest);
+        io.netty.handler.codec.http.HttpResponse msg = process(webContext);
+        if (webContext.isAsync()) {
+            return completeAsync(webContext);
+        }
+        return CompletableFuture.completedFuture(msg);
+    }
+
+    /**
+     * Execute the request and build the response, returns null when the response
+     * has been written by the handler or will be produced asynchronously.
+     */
+    private io.netty.handler.codec.http.HttpResponse process(WebContext webContext) {
+        try {
+            WebContext result = executeLogic(webContext);
+            if (null == result || webContext.isAsync()) {
+                return null;
+            }
+            return buildResponse(result);
+        } catch (Exception e) {
+            return handleException(webContext, unwrap(e));
+        } finally {
+            WebContext.remove();
+        }
+    }
+
+    private CompletableFuture<io.netty.handler.codec.http.HttpResponse> completeAsync(WebContext webContext) {
+        return webContext.getAsync().handle((v, e) -> {
+            WebContext.set(webContext);
+            try {
+                if (null != e) {
+                    return handleException(webContext, unwrap(e));
+                }
+                return buildResponse(webContext);
+            } finally {
+                WebContext.remove();
+            }
+        });
+    }
+
+    /**
+     * Unwrap the exception wrapped by executeLogic or CompletableFuture
+     */
+    private Throwable unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e.getClass() == BladeException.class) && null != e.getCause()) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    private io.netty.handler.codec.http.HttpResponse serviceUnavailable(HttpRequest httpRequest) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, HttpResponseStatus.SERVICE_UNAVAILABLE);
+        response.headers().set(NettyHttpConst.CONTENT_LENGTH, 0);
+        if (httpRequest.keepAlive()) {
+            response.headers().set(NettyHttpConst.CONNECTION, NettyHttpConst.KEEP_ALIVE);
+        }
+        return response;
     }
 
     private WebContext buildWebContext(ChannelHandlerContext ctx,
@@ -93,18 +239,13 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<HttpRequest>
         return WebContext.create(req, new HttpResponse(), ctx);
     }
 
-    private void writeResponse(ChannelHandlerContext ctx, CompletableFuture<HttpRequest> future, io.netty.handler.codec.http.HttpResponse msg) {
-        ctx.writeAndFlush(msg);
-        future.complete(null);
-    }
-
-    private io.netty.handler.codec.http.HttpResponse handleException(Throwable e) {
-        Request request = WebContext.request();
-        Response response = WebContext.response();
+    private io.netty.handler.codec.http.HttpResponse handleException(WebContext webContext, Throwable e) {
+        Request request = webContext.getRequest();
+        Response response = webContext.getResponse();
         String method = request.method();
         String uri = request.uri();
 
-        Exception srcException = (Exception) e.getCause().getCause();
+        Exception srcException = e instanceof Exception ? (Exception) e : new BladeException(e);
         if (srcException instanceof BladeException) {
         } else {
             log500(log, method, uri);
@@ -116,11 +257,15 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<HttpRequest>
         }
 
         return routeHandler.handleResponse(
-                request, response, WebContext.get().getChannelHandlerContext()
+                request, response, webContext.getChannelHandlerContext()
         );
     }
 
     private io.netty.handler.codec.http.HttpResponse buildResponse(WebContext webContext) {
+        if (null == webContext) {
+            // the response has been written by the static file handler
+            return null;
+        }
         WebContext.set(webContext);
         return routeHandler.handleResponse(
                 webContext.getRequest(), webContext.getResponse(),
@@ -136,28 +281,32 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<HttpRequest>
             String uri = request.uri();
             Instant start = null;
 
-            if (allowCost() && !enablePerformance()) {
+            if (allowCost && !enablePerformance) {
                 start = Instant.now();
             }
 
             if (isStaticFile(method, uri)) {
                 staticFileHandler.handle(webContext);
-                return webContext;
+                return null;
             }
 
-            Route route = routeMatcher.lookupRoute(method.name(), uri);
-            if (null != route) {
-                webContext.setRoute(route);
+            RouteMatch match = routeMatcher.matchRoute(method.name(), request.routePath());
+            if (null != match) {
+                webContext.setRouteMatch(match);
             } else {
                 throw new NotFoundException(uri);
             }
             routeHandler.handle(webContext);
 
-            if (enablePerformance()) {
+            if (enablePerformance) {
                 return webContext;
             }
 
-            if (allowCost()) {
+            if (request.isWarmUp()) {
+                return webContext;
+            }
+
+            if (allowCost) {
                 long cost = log200AndCost(log, start, BladeCache.getPaddingMethod(method.name()), uri);
                 request.attribute(REQUEST_COST_TIME, cost);
             } else {
@@ -180,15 +329,15 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<HttpRequest>
     }
 
     private boolean isStaticFile(HttpMethod method, String uri) {
-        if (HttpMethod.POST.equals(method) || notStaticUri.contains(uri)) {
+        if (HttpMethod.POST.equals(method)) {
             return false;
         }
-
-        if (WebContext.blade().getStatics().stream().noneMatch(s -> s.equals(uri) || uri.startsWith(s))) {
-            notStaticUri.add(uri);
-            return false;
+        for (String prefix : staticPrefixes) {
+            if (uri.startsWith(prefix)) {
+                return true;
+            }
         }
-        return true;
+        return false;
     }
 
 }
\ No newline at end of file
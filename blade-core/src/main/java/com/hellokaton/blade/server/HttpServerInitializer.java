@@ -3,25 +3,30 @@ package com.hellokaton.blade.server;
 import com.hellokaton.blade.Blade;
 import com.hellokaton.blade.Environment;
 import com.hellokaton.blade.kit.DateKit;
+import com.hellokaton.blade.mvc.route.RouteMatcher;
 import com.hellokaton.blade.options.CorsOptions;
 import com.hellokaton.blade.options.HttpOptions;
 import com.hellokaton.blade.server.decode.FullHttpRequestDecode;
 import com.hellokaton.blade.server.decode.HttpObjectAggregatorDecode;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.http.HttpContentCompressor;
-import io.netty.handler.codec.http.HttpMethod;
-import io.netty.handler.codec.http.HttpServerCodec;
-import io.netty.handler.codec.http.HttpServerExpectContinueHandler;
+import io.netty.handler.codec.http.*;
 import io.netty.handler.codec.http.cors.CorsConfig;
 import io.netty.handler.codec.http.cors.CorsConfigBuilder;
 import io.netty.handler.codec.http.cors.CorsHandler;
+import io.netty.handler.codec.http2.*;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.AsciiString;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -33,21 +38,46 @@ import static com.hellokaton.blade.mvc.BladeConst.*;
 @Slf4j
 public class HttpServerInitializer extends ChannelInitializer<SocketChannel> {
 
+    private static final String HANDLER_AGGREGATOR = "aggregator";
+    private static final String HANDLER_EXPECT_CONTINUE = "expect-continue";
+    private static final String HANDLER_COMPRESSOR = "compressor";
+    private static final String HANDLER_CORS = "cors";
+    private static final String HANDLER_REQUEST_DECODER = "request-decoder";
+    private static final String HANDLER_CHUNKED_WRITER = "chunked-writer";
+    private static final String HANDLER_SERVER = "server-handler";
+
+    private static final String[] HTTP_HANDLERS = {
+            HANDLER_AGGREGATOR, HANDLER_EXPECT_CONTINUE, HANDLER_COMPRESSOR, HANDLER_CORS,
+            HANDLER_REQUEST_DECODER, HANDLER_CHUNKED_WRITER, HANDLER_SERVER
+    };
+
     private final HttpServerHandler httpServerHandler;
 
     private final SslContext sslCtx;
+    private final RouteMatcher routeMatcher;
     private CorsConfig corsConfig;
     private int maxContentSize;
     private boolean enableGzip;
+    private final boolean enableHttp2;
     public static volatile String date = DateKit.gmtDate(LocalDateTime.now());
 
 
     public HttpServerInitializer(SslContext sslCtx, Blade blade, ScheduledExecutorService service) {
+        this(sslCtx, blade, service, null);
+    }
+
+    public HttpServerInitializer(SslContext sslCtx, Blade blade, ScheduledExecutorService service, Executor dispatchExecutor) {
+        this(sslCtx, blade, dispatchExecutor);
+        service.scheduleWithFixedDelay(() -> date = DateKit.gmtDate(LocalDateTime.now()), 1000, 1000, TimeUnit.MILLISECONDS);
+    }
+
+    HttpServerInitializer(SslContext sslCtx, Blade blade, Executor dispatchExecutor) {
         this.sslCtx = sslCtx;
-        this.httpServerHandler = new HttpServerHandler();
+        this.routeMatcher = blade.routeMatcher();
+        this.enableHttp2 = blade.environment().getBoolean(ENV_KEY_HTTP2_ENABLE, false);
         this.mergeCorsConfig(blade.corsOptions());
         this.mergeHttpOptions(blade.httpOptions(), blade.environment());
-        service.scheduleWithFixedDelay(() -> date = DateKit.gmtDate(LocalDateTime.now()), 1000, 1000, TimeUnit.MILLISECONDS);
+        this.httpServerHandler = new HttpServerHandler(dispatchExecutor);
     }
 
     @Override
@@ -56,22 +86,128 @@ public class HttpServerInitializer extends ChannelInitializer<SocketChannel> {
         try {
             if (sslCtx != null) {
                 pipeline.addLast(sslCtx.newHandler(ch.alloc()));
+                if (enableHttp2) {
+                    // the protocol is chosen by ALPN during the handshake
+                    pipeline.addLast(new ProtocolNegotiationHandler());
+                    return;
+                }
+            } else if (enableHttp2) {
+                initCleartextHttp2(pipeline);
+                return;
             }
             pipeline.addLast(new HttpServerCodec());
-            pipeline.addLast(new HttpObjectAggregatorDecode(maxContentSize));
-            pipeline.addLast(new HttpServerExpectContinueHandler());
+            addHttpHandlers(pipeline);
+        } catch (Exception e) {
+            log.error("Add channel pipeline error", e);
+        }
+    }
+
+    /**
+     * h2c with prior knowledge or through an HTTP/1.1 upgrade
+     */
+    void initCleartextHttp2(ChannelPipeline pipeline) {
+        HttpServerCodec sourceCodec = new HttpServerCodec();
+        HttpServerUpgradeHandler upgradeHandler = new HttpServerUpgradeHandler(sourceCodec,
+                this::newUpgradeCodec, maxContentSize);
+        pipeline.addLast(new CleartextHttp2ServerUpgradeHandler(sourceCodec, upgradeHandler,
+                new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        configureHttp2(ch.pipeline());
+                    }
+                }));
+        addHttpHandlers(pipeline);
+    }
+
+    /**
+     * Plain HTTP/1.1 pipeline of the in-memory warm-up connections
+     */
+    void initWarmUpChannel(Channel ch) {
+        ch.pipeline().addLast(new HttpServerCodec());
+        addHttpHandlers(ch.pipeline());
+    }
+
+    /**
+     * Add the handlers turning HTTP/1.1 messages into blade requests,
+     * used by HTTP/1.1 connections and by every HTTP/2 stream.
+     */
+    private void addHttpHandlers(ChannelPipeline pipeline) {
+        pipeline.addLast(HANDLER_AGGREGATOR, new HttpObjectAggregatorDecode(maxContentSize, routeMatcher));
+        pipeline.addLast(HANDLER_EXPECT_CONTINUE, new HttpServerExpectContinueHandler());
 
-            if (enableGzip) {
-                pipeline.addLast(new HttpContentCompressor());
+        if (enableGzip) {
+            pipeline.addLast(HANDLER_COMPRESSOR, new ContentCompressor());
+        }
+        if (null != corsConfig) {
+            pipeline.addLast(HANDLER_CORS, new CorsHandler(corsConfig));
+        }
+        pipeline.addLast(HANDLER_REQUEST_DECODER, new FullHttpRequestDecode());
+        pipeline.addLast(HANDLER_CHUNKED_WRITER, new ChunkedWriteHandler());
+        pipeline.addLast(HANDLER_SERVER, httpServerHandler);
+    }
+
+    /**
+     * Switch the connection to HTTP/2, each stream gets its own pipeline
+     * ending with the same handlers as an HTTP/1.1 connection.
+     */
+    private void configureHttp2(ChannelPipeline pipeline) {
+        removeHttpHandlers(pipeline);
+        pipeline.addLast(Http2FrameCodecBuilder.forServer().build());
+        pipeline.addLast(newMultiplexHandler());
+    }
+
+    private HttpServerUpgradeHandler.UpgradeCodec newUpgradeCodec(CharSequence protocol) {
+        if (!AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)) {
+            return null;
+        }
+        return new Http2ServerUpgradeCodec(Http2FrameCodecBuilder.forServer().build(), newMultiplexHandler()) {
+            @Override
+            public void upgradeTo(ChannelHandlerContext ctx, FullHttpRequest upgradeRequest) {
+                super.upgradeTo(ctx, upgradeRequest);
+                removeHttpHandlers(ctx.pipeline());
             }
-            if (null != corsConfig) {
-                pipeline.addLast(new CorsHandler(corsConfig));
+        };
+    }
+
+    private Http2MultiplexHandler newMultiplexHandler() {
+        return new Http2MultiplexHandler(new ChannelInitializer<Http2StreamChannel>() {
+            @Override
+            protected void initChannel(Http2StreamChannel ch) {
+                ch.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(true));
+                addHttpHandlers(ch.pipeline());
             }
-            pipeline.addLast(new FullHttpRequestDecode());
-            pipeline.addLast(new ChunkedWriteHandler());
-            pipeline.addLast(httpServerHandler);
-        } catch (Exception e) {
-            log.error("Add channel pipeline error", e);
+        });
+    }
+
+    private void removeHttpHandlers(ChannelPipeline pipeline) {
+        for (String name : HTTP_HANDLERS) {
+            if (null != pipeline.get(name)) {
+                pipeline.remove(name);
+            }
+        }
+    }
+
+    /**
+     * Configure the pipeline for the protocol selected by ALPN
+     */
+    private class ProtocolNegotiationHandler extends ApplicationProtocolNegotiationHandler {
+
+        ProtocolNegotiationHandler() {
+            super(ApplicationProtocolNames.HTTP_1_1);
+        }
+
+        @Override
+        protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+            if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+                configureHttp2(ctx.pipeline());
+                return;
+            }
+            if (ApplicationProtocolNames.HTTP_1_1.equals(protocol)) {
+                ctx.pipeline().addLast(new HttpServerCodec());
+                addHttpHandlers(ctx.pipeline());
+                return;
+            }
+            throw new IllegalStateException("Unknown protocol: " + protocol);
         }
     }
 
@@ -17,6 +17,9 @@ public interface NettyHttpConst {
     String VERSION = "blade-" + BladeConst.VERSION;
 
     String IF_MODIFIED_SINCE   = "If-Modified-Since";
+    String IF_NONE_MATCH       = "If-None-Match";
+    String RANGE               = "Range";
+    String IF_RANGE            = "If-Range";
     String USER_AGENT          = "User-Agent";
     String CONTENT_TYPE_STRING = "Content-Type";
     String ACCEPT_ENCODING     = "Accept-Encoding";
@@ -35,6 +38,11 @@ public interface NettyHttpConst {
     AsciiString EXPIRES          = AsciiString.cached("Expires");
     AsciiString CACHE_CONTROL    = AsciiString.cached("Cache-Control");
     AsciiString LAST_MODIFIED    = AsciiString.cached("Last-Modified");
+    AsciiString ETAG             = AsciiString.cached("ETag");
+    AsciiString VARY             = AsciiString.cached("Vary");
+    AsciiString ACCEPT_RANGES    = AsciiString.cached("Accept-Ranges");
+    AsciiString CONTENT_RANGE    = AsciiString.cached("Content-Range");
+    AsciiString BYTES            = AsciiString.cached("bytes");
     AsciiString SERVER           = AsciiString.cached("Server");
     AsciiString SET_COOKIE       = AsciiString.cached("Set-Cookie");
     AsciiString KEEP_ALIVE       = AsciiString.cached("keep-alive");
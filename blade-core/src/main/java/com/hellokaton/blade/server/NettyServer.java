@@ -21,6 +21,7 @@ import com.hellokaton.blade.annotation.Path;
 import com.hellokaton.blade.annotation.URLPattern;
 import com.hellokaton.blade.event.Event;
 import com.hellokaton.blade.event.EventType;
+import com.hellokaton.blade.ioc.BladeIndex;
 import com.hellokaton.blade.ioc.DynamicContext;
 import com.hellokaton.blade.ioc.Ioc;
 import com.hellokaton.blade.ioc.annotation.Bean;
@@ -35,8 +36,10 @@ import com.hellokaton.blade.mvc.BladeConst;
 import com.hellokaton.blade.mvc.WebContext;
 import com.hellokaton.blade.mvc.handler.DefaultExceptionHandler;
 import com.hellokaton.blade.mvc.handler.ExceptionHandler;
+import com.hellokaton.blade.mvc.handler.SessionHandler;
 import com.hellokaton.blade.mvc.hook.WebHook;
-import com.hellokaton.blade.mvc.http.session.SessionCleaner;
+import com.hellokaton.blade.mvc.http.CookieSession;
+import com.hellokaton.blade.mvc.http.session.*;
 import com.hellokaton.blade.mvc.route.RouteBuilder;
 import com.hellokaton.blade.mvc.route.RouteMatcher;
 import com.hellokaton.blade.mvc.ui.template.DefaultEngine;
@@ -54,21 +57,21 @@ import io.netty.channel.*;
 import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.ssl.SslContext;
-import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.ssl.*;
 import io.netty.util.ResourceLeakDetector;
 import lombok.extern.slf4j.Slf4j;
 import lombok.var;
 
 import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static com.hellokaton.blade.kit.BladeKit.getPrefixSymbol;
@@ -89,14 +92,22 @@ public class NettyServer implements Server {
     private EventLoopGroup bossGroup;
     private EventLoop scheduleEventLoop;
     private EventLoopGroup workerGroup;
+    private ExecutorService dispatchExecutor;
     private Channel channel;
     private RouteBuilder routeBuilder;
     private List<BladeLoader> loaders;
     private final List<TaskStruct> taskStruts = new ArrayList<>();
+    private StartupProfiler profiler;
 
     // netty default config
     private static final int DEFAULT_ACCEPT_THREAD_COUNT = 1;
     private static final int DEFAULT_IO_THREAD_COUNT = 0;
+    private static final int DEFAULT_DISPATCH_THREAD_COUNT = Runtime.getRuntime().availableProcessors() * 8;
+    private static final int DEFAULT_DISPATCH_QUEUE_SIZE = 1024;
+
+    // every component handled by parseAndCreate carries one of them
+    private static final Set<Class<? extends Annotation>> COMPONENT_ANNOTATIONS = new HashSet<>(
+            Arrays.asList(Bean.class, Value.class, Path.class, Configuration.class));
 
     private volatile boolean isStop;
 
@@ -107,6 +118,7 @@ public class NettyServer implements Server {
         this.loaders = blade.loaders();
 
         long startMs = System.currentTimeMillis();
+        this.profiler = new StartupProfiler();
 
         int padSize = 16;
         log.info("{} {}{}", StringKit.padRight("app.env", padSize), getPrefixSymbol(), environment.get(ENV_KEY_APP_ENV, "default"));
@@ -120,21 +132,82 @@ public class NettyServer implements Server {
         log.info("{} {}{}", StringKit.padRight("file.encoding", padSize), getPrefixSymbol(), System.getProperty("file.encoding"));
         log.info("{} {}{}", StringKit.padRight("app.classpath", padSize), getPrefixSymbol(), CLASSPATH);
 
+        var phase = profiler.begin("initConfig");
         this.initConfig();
+        phase.end();
 
         String contextPath = environment.get(ENV_KEY_CONTEXT_PATH, "/");
         WebContext.init(blade, contextPath);
 
         this.initIoc();
         this.watchEnv();
+        this.initSessionStore();
         this.startServer(startMs);
         this.sessionCleaner();
         this.startTask();
         this.shutdownHook();
+        this.reportStartup();
+    }
+
+    private void initSessionStore() {
+        SessionManager sessionManager = blade.sessionManager();
+        if (null == sessionManager || !(blade.httpOptions().isEnableSession()
+                || environment.getBoolean(ENV_KEY_SESSION_ENABLED, false))) {
+            return;
+        }
+        if (this.isCookieSession()) {
+            // fail here rather than on the first request
+            SessionHandler.cookieSecrets(environment);
+            return;
+        }
+        SessionStore store = blade.httpOptions().getSessionStore();
+        if (null == store) {
+            store = this.createSessionStore(environment.get(ENV_KEY_SESSION_STORE, "memory"));
+        }
+        if (null != store) {
+            sessionManager.setStore(store);
+            log.info("{}Session store: {}", getStartedSymbol(), store.getClass().getSimpleName());
+        }
+    }
+
+    private SessionStore createSessionStore(String type) {
+        switch (type) {
+            case "lru":
+                return new LruSessionStore(environment.getInt(ENV_KEY_SESSION_MAX_COUNT, 100_000));
+            case "mapped":
+                var defaultDir = Paths.get(System.getProperty("java.io.tmpdir"), "blade-sessions");
+                String defaultFile = defaultDir.resolve(environment.get(ENV_KEY_APP_NAME, "blade") + "-" +
+                        environment.getInt(ENV_KEY_SERVER_PORT, DEFAULT_SERVER_PORT) + ".db").toString();
+                String file = environment.get(ENV_KEY_SESSION_FILE, defaultFile);
+                try {
+                    if (file.equals(defaultFile)) {
+                        // the temp directory is shared with other users
+                        IOKit.createPrivateDirectory(defaultDir);
+                    }
+                    return new MappedSessionStore(Paths.get(file),
+                            environment.getLong(ENV_KEY_SESSION_MAX_SIZE, 64L * 1024 * 1024),
+                            blade.httpOptions().getSessionType());
+                } catch (IOException e) {
+                    log.warn("{}Open session file {} error, keep sessions in memory", getStartedSymbol(), file, e);
+                    return null;
+                }
+            case "memory":
+                return null;
+            default:
+                log.warn("{}Unknown session store {}, keep sessions in memory", getStartedSymbol(), type);
+                return null;
+        }
+    }
+
+    /**
+     * Cookie sessions are kept by the client, no store or cleaner is needed
+     */
+    private boolean isCookieSession() {
+        return CookieSession.class.isAssignableFrom(blade.httpOptions().getSessionType());
     }
 
     private void sessionCleaner() {
-        if (null != blade.sessionManager()) {
+        if (null != blade.sessionManager() && !this.isCookieSession()) {
             scheduleEventLoop.
                     scheduleWithFixedDelay(new SessionCleaner(blade.sessionManager()),
                             1000, 1000, TimeUnit.MILLISECONDS);
@@ -144,37 +217,58 @@ public class NettyServer implements Server {
     private void initIoc() {
         RouteMatcher routeMatcher = blade.routeMatcher();
         routeMatcher.initMiddleware(blade.middleware());
+        routeMatcher.setRouteCacheSize(environment.getInt(ENV_KEY_ROUTE_CACHE_SIZE, 0));
 
         routeBuilder = new RouteBuilder(routeMatcher);
 
+        var phase = profiler.begin("scan");
+        BladeIndex index = environment.getBoolean(ENV_KEY_APP_INDEX, true) ?
+                BladeIndex.load(BladeIndex.class.getClassLoader()) : null;
+        if (null != index) {
+            log.info("{}Load components from blade index, classes: {}", getStartedSymbol(), index.size());
+        }
+
         blade.scanPackages().stream()
-                .flatMap(DynamicContext::recursionFindClasses)
+                .flatMap(packageName -> null != index ? index.findClasses(packageName, COMPONENT_ANNOTATIONS) :
+                        DynamicContext.recursionFindClasses(packageName, COMPONENT_ANNOTATIONS))
                 .map(ClassInfo::getClazz)
                 .filter(ReflectKit::isNormalClass)
                 .forEach(this::parseAndCreate);
+        phase.end();
 
+        phase = profiler.begin("routes");
         routeMatcher.register();
+        phase.end();
 
-        this.loaders.stream().sorted(new OrderComparator<>()).forEach(b -> b.preLoad(blade));
+        this.loaders.stream().sorted(new OrderComparator<>()).forEach(b -> {
+            var loaderPhase = profiler.begin("preLoad:" + b.getClass().getName());
+            b.preLoad(blade);
+            loaderPhase.end();
+        });
 
+        phase = profiler.begin("beans");
         Ioc ioc = blade.ioc();
-        if (BladeKit.isNotEmpty(ioc.getBeans())) {
-            log.info("{}Register bean: {}", getStartedSymbol(), ioc.getBeans());
-        }
-
-        List<BeanDefine> beanDefines = ioc.getBeanDefines();
+        ioc.initBeans(environment);
 
+        List<BeanDefine> beanDefines = ioc.getBeanDefines().stream().distinct().collect(Collectors.toList());
         if (BladeKit.isNotEmpty(beanDefines)) {
+            log.info("{}Register bean: {}", getStartedSymbol(), beanDefines.stream()
+                    .filter(BeanDefine::isCreated).map(BeanDefine::getBean).collect(Collectors.toList()));
+
             beanDefines.forEach(b -> {
-                IocKit.initInjection(ioc, b);
-                IocKit.injectionValue(environment, b);
                 List<TaskStruct> cronExpressions = BladeKit.getTasks(b.getType(), environment);
                 if (null != cronExpressions) {
                     taskStruts.addAll(cronExpressions);
                 }
             });
         }
-        this.loaders.stream().sorted(new OrderComparator<>()).forEach(b -> b.load(blade));
+        phase.end();
+
+        this.loaders.stream().sorted(new OrderComparator<>()).forEach(b -> {
+            var loaderPhase = profiler.begin("load:" + b.getClass().getName());
+            b.load(blade);
+            loaderPhase.end();
+        });
     }
 
     private void startServer(long startMs) throws Exception {
@@ -185,15 +279,28 @@ public class NettyServer implements Server {
         // Configure SSL.
         SslContext sslCtx = null;
         if (SSL) {
+            var phase = profiler.begin("ssl");
             String certFilePath = environment.get(ENV_KEY_SSL_CERT, null);
             String privateKeyPath = environment.get(ENV_KEY_SSL_PRIVATE_KEY, null);
             String privateKeyPassword = environment.get(ENV_KEY_SSL_PRIVATE_KEY_PASS, null);
 
             log.info("{}SSL CertChainFile  Path: {}", getStartedSymbol(), certFilePath);
             log.info("{}SSL PrivateKeyFile Path: {}", getStartedSymbol(), privateKeyPath);
-            sslCtx = SslContextBuilder.forServer(new File(certFilePath), new File(privateKeyPath), privateKeyPassword).build();
+            SslContextBuilder sslCtxBuilder = SslContextBuilder.forServer(new File(certFilePath), new File(privateKeyPath), privateKeyPassword);
+            if (environment.getBoolean(ENV_KEY_HTTP2_ENABLE, false)) {
+                sslCtxBuilder.ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+                        .applicationProtocolConfig(new ApplicationProtocolConfig(
+                                ApplicationProtocolConfig.Protocol.ALPN,
+                                ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                                ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                                ApplicationProtocolNames.HTTP_2,
+                                ApplicationProtocolNames.HTTP_1_1));
+            }
+            sslCtx = sslCtxBuilder.build();
+            phase.end();
         }
 
+        var phase = profiler.begin("server");
         var bootstrap = new ServerBootstrap();
 
         int acceptThreadCount = environment.getInt(ENV_KEY_NETTY_ACCEPT_THREAD_COUNT, DEFAULT_ACCEPT_THREAD_COUNT);
@@ -228,12 +335,25 @@ public class NettyServer implements Server {
             bootstrap.option(ChannelOption.SO_BACKLOG, backLog);
         });
 
-        bootstrap.childHandler(new HttpServerInitializer(sslCtx, blade, scheduleEventLoop));
+        this.dispatchExecutor = this.createDispatchExecutor();
+
+        bootstrap.childHandler(new HttpServerInitializer(sslCtx, blade, scheduleEventLoop, dispatchExecutor));
+        phase.end();
+
+        if (environment.getBoolean(ENV_KEY_WARMUP_ENABLED, false)) {
+            phase = profiler.begin("warmup");
+            // handlers run on the calling thread, the in-memory channel is not thread safe
+            new WarmUp(blade, new HttpServerInitializer(sslCtx, blade, (Executor) null)).run();
+            phase.end();
+        }
 
         String address = environment.get(ENV_KEY_SERVER_ADDRESS, DEFAULT_SERVER_ADDRESS);
         Integer port = environment.getInt(ENV_KEY_SERVER_PORT, DEFAULT_SERVER_PORT);
 
+        phase = profiler.begin("bind");
         channel = bootstrap.bind(address, port).sync().channel();
+        phase.end();
+        profiler.finish();
 
         String appName = environment.get(ENV_KEY_APP_NAME, "Blade");
         String url = Ansi.BgRed.and(Ansi.Black).format(" %s:%d ", address, port);
@@ -246,6 +366,48 @@ public class NettyServer implements Server {
         blade.eventManager().fireEvent(EventType.SERVER_STARTED, new Event().attribute("blade", blade));
     }
 
+    /**
+     * Publish the phase timings of this start, and write them to a file when configured
+     */
+    private void reportStartup() {
+        for (StartupProfiler.Phase phase : profiler.getPhases()) {
+            log.debug("{}Startup {}", getStartedSymbol(), phase);
+        }
+        String profileFile = environment.get(ENV_KEY_STARTUP_PROFILE, null);
+        if (StringKit.isNotBlank(profileFile)) {
+            try {
+                profiler.writeTo(Paths.get(profileFile));
+                log.info("{}Startup profile written to {}", getStartedSymbol(), profileFile);
+            } catch (IOException e) {
+                log.warn("{}Write startup profile to {} error", getStartedSymbol(), profileFile, e);
+            }
+        }
+        blade.eventManager().fireEvent(EventType.SERVER_PROFILED,
+                new Event().attribute("blade", blade).attribute("profiler", profiler));
+    }
+
+    private ExecutorService createDispatchExecutor() {
+        DispatchMode dispatchMode = DispatchMode.of(environment.get(ENV_KEY_SERVER_DISPATCH, null));
+        if (DispatchMode.VIRTUAL.equals(dispatchMode)) {
+            try {
+                Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                log.info("{}Dispatch requests to virtual threads", getStartedSymbol());
+                return (ExecutorService) method.invoke(null);
+            } catch (Exception e) {
+                log.warn("{}Virtual threads are not supported by this JVM, fall back to worker pool", getStartedSymbol());
+                dispatchMode = DispatchMode.POOL;
+            }
+        }
+        if (DispatchMode.POOL.equals(dispatchMode)) {
+            int threadCount = environment.getInt(ENV_KEY_DISPATCH_THREAD_COUNT, DEFAULT_DISPATCH_THREAD_COUNT);
+            int queueSize = environment.getInt(ENV_KEY_DISPATCH_QUEUE_SIZE, DEFAULT_DISPATCH_QUEUE_SIZE);
+            log.info("{}Dispatch requests to worker pool, threads: {}, queue: {}", getStartedSymbol(), threadCount, queueSize);
+            return new ThreadPoolExecutor(threadCount, threadCount, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueSize), new NamedThreadFactory("business@"));
+        }
+        return null;
+    }
+
     private void startTask() {
         if (taskStruts.isEmpty()) {
             return;
@@ -417,6 +579,12 @@ public class NettyServer implements Server {
             if (this.workerGroup != null) {
                 this.workerGroup.shutdownGracefully();
             }
+            if (this.dispatchExecutor != null) {
+                this.dispatchExecutor.shutdown();
+            }
+            if (null != blade.sessionManager()) {
+                blade.sessionManager().close();
+            }
             log.info("{}Blade shutdown successful", getStartedSymbol());
         } catch (Exception e) {
             log.error("Blade shutdown error", e);
@@ -438,6 +606,13 @@ public class NettyServer implements Server {
             if (this.workerGroup != null) {
                 this.workerGroup.shutdownGracefully().sync();
             }
+            if (this.dispatchExecutor != null) {
+                this.dispatchExecutor.shutdown();
+                this.dispatchExecutor.awaitTermination(30, TimeUnit.SECONDS);
+            }
+            if (null != blade.sessionManager()) {
+                blade.sessionManager().close();
+            }
             log.info("{}Blade shutdown successful", getStartedSymbol());
         } catch (Exception e) {
             log.error("Blade shutdown error", e);
@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.server;
+
+import com.hellokaton.blade.kit.UUID;
+import com.hellokaton.blade.kit.WebKit;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.codec.http.*;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.util.CharsetUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+/**
+ * Write 206 responses with ranges of a buffer or a file channel.
+ * <p>
+ * A single range of a file goes out as a FileRegion on plain connections.
+ * The parts of a multipart/byteranges response are read into buffers, which
+ * is why their total length is limited.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+@Slf4j
+class PartialContent {
+
+    /**
+     * Max bytes of all parts of a multipart response, more are served as a whole
+     */
+    static final long MAX_MULTIPART_LENGTH = 16 * 1024 * 1024;
+
+    /**
+     * Whether the ranges are sent, otherwise the whole content is
+     */
+    static boolean acceptable(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return true;
+        }
+        long length = 0;
+        for (ByteRange range : ranges) {
+            length += range.length();
+        }
+        return length <= MAX_MULTIPART_LENGTH;
+    }
+
+    /**
+     * Write a 416 response for ranges outside of the content
+     */
+    static ChannelFuture writeNotSatisfiable(ChannelHandlerContext ctx, boolean keepAlive, long total) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        response.headers().set(NettyHttpConst.CONTENT_RANGE, "bytes */" + total);
+        response.headers().set(NettyHttpConst.CONTENT_LENGTH, 0);
+        if (keepAlive) {
+            response.headers().set(NettyHttpConst.CONNECTION, NettyHttpConst.KEEP_ALIVE);
+        }
+        return ctx.writeAndFlush(response);
+    }
+
+    /**
+     * Write the ranges as a 206 response, the content is released and the
+     * channel closed once written.
+     *
+     * @param response headers of the response, its status is changed to 206
+     * @param ranges   satisfiable ranges
+     * @param total    content length
+     * @param content  content, null when reading the channel
+     * @param channel  file channel, null when writing the content
+     * @return future of the last write
+     */
+    static ChannelFuture write(ChannelHandlerContext ctx, HttpResponse response, List<ByteRange> ranges,
+                               long total, ByteBuf content, FileChannel channel) throws IOException {
+        response.setStatus(HttpResponseStatus.PARTIAL_CONTENT);
+        HttpHeaders headers = response.headers();
+        headers.remove(HttpHeaderNames.TRANSFER_ENCODING);
+
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            headers.set(NettyHttpConst.CONTENT_RANGE, range.contentRange(total));
+            headers.set(NettyHttpConst.CONTENT_LENGTH, range.length());
+            if (null != content) {
+                ctx.write(response);
+                ctx.write(new DefaultHttpContent(content.retainedSlice((int) range.start(), (int) range.length())));
+                content.release();
+                return ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+            }
+            ctx.write(response);
+            if (WebKit.supportFileRegion(ctx)) {
+                // the region closes the channel once transferred
+                ctx.write(new DefaultFileRegion(channel, range.start(), range.length()));
+                return ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+            }
+            // HttpChunkedInput writes the end marker itself
+            return ctx.writeAndFlush(new HttpChunkedInput(new ChunkedNioFile(channel, range.start(), range.length(), 8192)));
+        }
+
+        String boundary = UUID.UU32();
+        String contentType = headers.get(NettyHttpConst.CONTENT_TYPE);
+        List<ByteBuf> parts = new ArrayList<>(ranges.size() * 2 + 1);
+        long length = 0;
+        try {
+            for (ByteRange range : ranges) {
+                StringBuilder partHeader = new StringBuilder("\r\n--").append(boundary).append("\r\n");
+                if (null != contentType) {
+                    partHeader.append("Content-Type: ").append(contentType).append("\r\n");
+                }
+                partHeader.append("Content-Range: ").append(range.contentRange(total)).append("\r\n\r\n");
+                ByteBuf head = Unpooled.copiedBuffer(partHeader, CharsetUtil.US_ASCII);
+                parts.add(head);
+                parts.add(null != content ? content.retainedSlice((int) range.start(), (int) range.length())
+                        : read(ctx, channel, range));
+                length += head.readableBytes() + range.length();
+            }
+            ByteBuf end = Unpooled.copiedBuffer("\r\n--" + boundary + "--\r\n", CharsetUtil.US_ASCII);
+            parts.add(end);
+            length += end.readableBytes();
+        } catch (IOException e) {
+            parts.forEach(ByteBuf::release);
+            throw e;
+        } finally {
+            if (null != content) {
+                content.release();
+            } else {
+                closeQuietly(channel);
+            }
+        }
+
+        headers.set(NettyHttpConst.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+        headers.set(NettyHttpConst.CONTENT_LENGTH, length);
+        ctx.write(response);
+        for (ByteBuf part : parts) {
+            ctx.write(new DefaultHttpContent(part));
+        }
+        return ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+    }
+
+    private static ByteBuf read(ChannelHandlerContext ctx, FileChannel channel, ByteRange range) throws IOException {
+        ByteBuf buf = ctx.alloc().buffer((int) range.length());
+        long position = range.start();
+        try {
+            while (buf.isWritable()) {
+                int read = buf.writeBytes(channel, position, buf.writableBytes());
+                if (read < 0) {
+                    throw new IOException("file shrank while reading range " + range.contentRange(channel.size()));
+                }
+                position += read;
+            }
+        } catch (IOException e) {
+            buf.release();
+            throw e;
+        }
+        return buf;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Close file channel error", e);
+        }
+    }
+
+}
@@ -1,7 +1,6 @@
 package com.hellokaton.blade.server;
 
 import com.hellokaton.blade.annotation.Path;
-import com.hellokaton.blade.asm.MethodAccess;
 import com.hellokaton.blade.exception.BladeException;
 import com.hellokaton.blade.exception.InternalErrorException;
 import com.hellokaton.blade.exception.NotFoundException;
@@ -14,7 +13,9 @@ import com.hellokaton.blade.mvc.handler.RouteHandler;
 import com.hellokaton.blade.mvc.hook.WebHook;
 import com.hellokaton.blade.mvc.http.Cookie;
 import com.hellokaton.blade.mvc.http.*;
+import com.hellokaton.blade.mvc.http.session.LazySession;
 import com.hellokaton.blade.mvc.route.Route;
+import com.hellokaton.blade.mvc.route.RouteMatch;
 import com.hellokaton.blade.mvc.route.RouteMatcher;
 import com.hellokaton.blade.mvc.ui.ModelAndView;
 import com.hellokaton.blade.mvc.ui.ResponseType;
@@ -23,6 +24,7 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.*;
+import io.netty.handler.stream.ChunkedNioFile;
 import lombok.extern.slf4j.Slf4j;
 import lombok.var;
 
@@ -34,6 +36,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletionStage;
 
 import static com.hellokaton.blade.server.NettyHttpConst.CONTENT_LENGTH;
 import static com.hellokaton.blade.server.NettyHttpConst.KEEP_ALIVE;
@@ -66,7 +69,12 @@ public class RouteMethodHandler implements RequestHandler {
         }
 
         // init route, request parameters, route action method and parameter.
-        context.initRoute(route);
+        RouteMatch match = webContext.getRouteMatch();
+        if (null != match) {
+            context.initRoute(match);
+        } else {
+            context.initRoute(route);
+        }
 
         // execution middleware
         if (hasMiddleware && !invokeMiddleware(routeMatcher.getMiddleware(), context)) {
@@ -75,28 +83,53 @@ public class RouteMethodHandler implements RequestHandler {
         context.injectParameters();
 
         // web hook before
-        if (hasBeforeHook && !invokeHook(routeMatcher.getBefore(uri), context)) {
+        if (hasBeforeHook && !invokeHook(routeMatcher.getBefore(route, uri), context)) {
             return;
         }
 
         // execute
-        this.routeHandle(context);
+        CompletionStage<?> stage = this.routeHandle(context);
+        if (null != stage) {
+            // the route opted into async, after hooks run once it completes
+            webContext.setAsync(stage.thenRun(() -> {
+                WebContext.set(webContext);
+                if (hasAfterHook) {
+                    try {
+                        this.invokeHook(routeMatcher.getAfter(route, uri), context);
+                    } catch (Exception e) {
+                        throw BladeException.wrapper(e);
+                    }
+                }
+            }).toCompletableFuture());
+            return;
+        }
 
         // webHook
         if (hasAfterHook) {
-            this.invokeHook(routeMatcher.getAfter(uri), context);
+            this.invokeHook(routeMatcher.getAfter(route, uri), context);
         }
     }
 
     public HttpResponse handleResponse(Request request, Response response, ChannelHandlerContext context) {
         Session session = request.session();
-        if (null != session) {
-            Cookie cookie = new Cookie();
-            cookie.name(WebContext.blade().httpOptions().getSessionKey());
-            cookie.value(session.id());
-            cookie.httpOnly(true);
-            cookie.secure(request.isSecure());
-            response.cookie(cookie);
+        Session stored = session instanceof LazySession ? ((LazySession) session).delegate() : session;
+        if (stored instanceof CookieSession) {
+            // the whole session lives in the cookie, resent only when it changed
+            CookieSession cookieSession = (CookieSession) stored;
+            if (cookieSession.isChanged() && !request.isWarmUp()) {
+                String value = cookieSession.encode();
+                if (null != value) {
+                    this.setSessionCookie(request, response, value);
+                }
+            }
+        } else {
+            // the client already holds the cookie of a session it sent
+            if (session instanceof LazySession && ((LazySession) session).isCreated()) {
+                this.setSessionCookie(request, response, session.id());
+            }
+            if (null != stored && !request.isWarmUp()) {
+                WebContext.blade().sessionManager().updateSession(stored);
+            }
         }
 
         return response.body().write(new BodyWriter() {
@@ -127,56 +160,109 @@ public class RouteMethodHandler implements RequestHandler {
 
             @Override
             public HttpResponse onByteBuf(String fileName, FileChannel channel) {
-                var httpResponse = new DefaultHttpResponse(HTTP_1_1, HttpResponseStatus.valueOf(response.statusCode()));
+                // the file is written when the response gets its turn on the connection
+                var httpResponse = new DeferredResponse(HttpResponseStatus.valueOf(response.statusCode()),
+                        (ctx, res) -> writeFileChannel(ctx, request, res, fileName, channel));
 
-                httpResponse.headers().set(TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
                 setDefaultHeaders(httpResponse.headers());
+                if (response.cookiesRaw().size() > 0) {
+                    appendCookie(response, httpResponse);
+                }
                 for (Map.Entry<String, String> next : response.headers().entrySet()) {
                     httpResponse.headers().set(next.getKey(), next.getValue());
                 }
                 if (request.keepAlive()) {
                     httpResponse.headers().set(NettyHttpConst.CONNECTION, KEEP_ALIVE);
                 }
-                String mimeType = null;
                 if (!httpResponse.headers().contains(NettyHttpConst.CONTENT_TYPE_STRING) && StringKit.isNotEmpty(fileName)) {
-                    mimeType = MimeTypeKit.parse(fileName);
-                    httpResponse.headers().set(NettyHttpConst.CONTENT_TYPE_STRING, mimeType);
+                    String mimeType = MimeTypeKit.parse(fileName);
+                    if (null != mimeType) {
+                        httpResponse.headers().set(NettyHttpConst.CONTENT_TYPE_STRING, mimeType);
+                    }
+                }
+                if (WebContext.blade().httpOptions().isEnableGzip()
+                        && !httpResponse.headers().contains(NettyHttpConst.CONTENT_ENCODING)) {
+                    // HttpContentCompressor can not encode a file region
+                    ContentCompressor.skip(httpResponse.headers());
                 }
-                long length;
+                return httpResponse;
+            }
+        });
+    }
 
-                try {
-                    length = channel.size();
-                    httpResponse.headers().set(NettyHttpConst.CONTENT_LENGTH.toString(), length);
-                } catch (IOException e) {
-                    log.error("Read file {} length error", fileName, e);
-                    context.writeAndFlush(httpResponse);
-                    return httpResponse;
+    /**
+     * Write a file body with its length, or the requested ranges of it
+     */
+    private ChannelFuture writeFileChannel(ChannelHandlerContext context, Request request, HttpResponse httpResponse,
+                                           String fileName, FileChannel channel) throws IOException {
+        HttpHeaders headers = httpResponse.headers();
+        long length;
+        try {
+            length = channel.size();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        if (httpResponse.status().code() == 200 && !headers.contains(NettyHttpConst.CONTENT_ENCODING)) {
+            headers.set(NettyHttpConst.ACCEPT_RANGES, NettyHttpConst.BYTES);
+            String range = request.header(NettyHttpConst.RANGE);
+            if (StringKit.isNotEmpty(range) && ByteRange.ifRangeMatches(request.header(NettyHttpConst.IF_RANGE),
+                    headers.get(NettyHttpConst.ETAG), headers.get(NettyHttpConst.LAST_MODIFIED))) {
+                List<ByteRange> ranges = ByteRange.parse(range, length);
+                if (null != ranges && ranges.isEmpty()) {
+                    channel.close();
+                    return PartialContent.writeNotSatisfiable(context, request.keepAlive(), length);
+                }
+                if (null != ranges && PartialContent.acceptable(ranges)) {
+                    return PartialContent.write(context, httpResponse, ranges, length, null, channel);
                 }
+            }
+        }
 
-                context.write(httpResponse);
+        // a length is known, the body is not sent in http chunks
+        headers.remove(TRANSFER_ENCODING);
+        headers.set(CONTENT_LENGTH, length);
+        context.write(httpResponse);
 
-                ChannelFuture sendFileFuture = context.write(new DefaultFileRegion(channel, 0, length), context.newProgressivePromise());
-                sendFileFuture.addListener(new ChannelProgressiveFutureListener() {
-                    @Override
-                    public void operationComplete(ChannelProgressiveFuture future)
-                            throws Exception {
-                        log.info("File {} transfer complete.", fileName);
-                        channel.close();
-                    }
+        ChannelFuture sendFileFuture;
+        ChannelFuture lastContentFuture;
+        if (WebKit.supportFileRegion(context)) {
+            sendFileFuture = context.write(new DefaultFileRegion(channel, 0, length), context.newProgressivePromise());
+            lastContentFuture = context.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        } else {
+            // HttpChunkedInput writes the end marker itself
+            sendFileFuture = context.writeAndFlush(new HttpChunkedInput(new ChunkedNioFile(channel, 0, length, 8192)),
+                    context.newProgressivePromise());
+            lastContentFuture = sendFileFuture;
+        }
+        sendFileFuture.addListener(new ChannelProgressiveFutureListener() {
+            @Override
+            public void operationComplete(ChannelProgressiveFuture future)
+                    throws Exception {
+                log.info("File {} transfer complete.", fileName);
+                channel.close();
+            }
 
-                    @Override
-                    public void operationProgressed(ChannelProgressiveFuture future, long progress, long total) {
-                        if (total < 0) {
-                            log.warn("File {} transfer progress: {}", fileName, progress);
-                        } else {
-                            log.debug("File {} transfer progress: {}/{}", fileName, progress, total);
-                        }
-                    }
-                });
-                context.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
-                return httpResponse;
+            @Override
+            public void operationProgressed(ChannelProgressiveFuture future, long progress, long total) {
+                if (total < 0) {
+                    log.warn("File {} transfer progress: {}", fileName, progress);
+                } else {
+                    log.debug("File {} transfer progress: {}/{}", fileName, progress, total);
+                }
             }
         });
+        return lastContentFuture;
+    }
+
+    private void setSessionCookie(Request request, Response response, String value) {
+        Cookie cookie = new Cookie();
+        cookie.name(WebContext.blade().httpOptions().getSessionKey());
+        cookie.value(value);
+        cookie.httpOnly(true);
+        cookie.secure(request.isSecure());
+        response.cookie(cookie);
     }
 
     private void setDefaultHeaders(HttpHeaders headers) {
@@ -202,7 +288,7 @@ public class RouteMethodHandler implements RequestHandler {
         return httpResponse;
     }
 
-    private void appendCookie(Response response, DefaultFullHttpResponse httpResponse) {
+    private void appendCookie(Response response, HttpResponse httpResponse) {
         for (io.netty.handler.codec.http.cookie.Cookie next : response.cookiesRaw()) {
             httpResponse.headers().add(NettyHttpConst.SET_COOKIE,
                     io.netty.handler.codec.http.cookie.ServerCookieEncoder.LAX.encode(next));
@@ -213,8 +299,9 @@ public class RouteMethodHandler implements RequestHandler {
      * Actual routing method execution
      *
      * @param context route context
+     * @return the pending result when the route method returns a CompletionStage, otherwise null
      */
-    private void routeHandle(RouteContext context) {
+    private CompletionStage<?> routeHandle(RouteContext context) throws Exception {
         Object target = context.routeTarget();
         if (null == target) {
             Class<?> clazz = context.routeAction().getDeclaringClass();
@@ -231,33 +318,35 @@ public class RouteMethodHandler implements RequestHandler {
 
             boolean responseJson = this.setResponseType(context, path);
 
-            int len = actionMethod.getParameterTypes().length;
+            Object returnParam = context.route().getInvoker().invoke(target, context.routeParameters());
 
-            MethodAccess methodAccess = BladeCache.getMethodAccess(target.getClass());
-
-            Object returnParam = methodAccess.invoke(
-                    target, actionMethod.getName(), len > 0 ?
-                            context.routeParameters() : null);
-
-            if (null == returnParam) {
-                return;
+            if (returnParam instanceof CompletionStage) {
+                return ((CompletionStage<?>) returnParam).thenAccept(result ->
+                        this.handleReturn(context, null == result ? null : result.getClass(), responseJson, result));
             }
+            this.handleReturn(context, returnType, responseJson, returnParam);
+        }
+        return null;
+    }
 
-            if (responseJson) {
-                context.json(returnParam);
-                return;
-            }
-            if (returnType == String.class) {
-                context.body(
-                        ViewBody.of(new ModelAndView(returnParam.toString()))
-                );
-                return;
-            }
-            if (returnType == ModelAndView.class) {
-                context.body(
-                        ViewBody.of((ModelAndView) returnParam)
-                );
-            }
+    private void handleReturn(RouteContext context, Class<?> returnType, boolean responseJson, Object returnParam) {
+        if (null == returnParam) {
+            return;
+        }
+        if (responseJson) {
+            context.json(returnParam);
+            return;
+        }
+        if (returnType == String.class) {
+            context.body(
+                    ViewBody.of(new ModelAndView(returnParam.toString()))
+            );
+            return;
+        }
+        if (returnType == ModelAndView.class) {
+            context.body(
+                    ViewBody.of((ModelAndView) returnParam)
+            );
         }
     }
 
@@ -302,25 +391,19 @@ public class RouteMethodHandler implements RequestHandler {
         }
 
         // execute
-        int len = hookMethod.getParameterTypes().length;
-        hookMethod.setAccessible(true);
-
-        Object returnParam;
-        if (len > 0) {
-            if (len == 1) {
-                MethodAccess methodAccess = BladeCache.getMethodAccess(target.getClass());
-                returnParam = methodAccess.invoke(target, hookMethod.getName(), context);
-            } else if (len == 2) {
-                MethodAccess methodAccess = BladeCache.getMethodAccess(target.getClass());
-
-                returnParam = methodAccess.invoke(target, hookMethod.getName(),
-                        context.request(), context.response());
-            } else {
-                throw new InternalErrorException("Bad web hook structure");
-            }
+        int len = hookMethod.getParameterCount();
+
+        Object[] args;
+        if (len == 0) {
+            args = null;
+        } else if (len == 1) {
+            args = new Object[]{context};
+        } else if (len == 2) {
+            args = new Object[]{context.request(), context.response()};
         } else {
-            returnParam = ReflectKit.invokeMethod(target, hookMethod);
+            throw new InternalErrorException("Bad web hook structure");
         }
+        Object returnParam = hookRoute.getInvoker().invoke(target, args);
 
         if (null == returnParam) return true;
 
@@ -350,7 +433,7 @@ public class RouteMethodHandler implements RequestHandler {
      * @param context http request
      * @return return invoke hook is abort
      */
-    private boolean invokeHook(List<Route> hooks, RouteContext context) throws Exception {
+    private boolean invokeHook(Route[] hooks, RouteContext context) throws Exception {
         for (Route hook : hooks) {
             if (hook.getTargetType() == RouteHandler.class) {
                 RouteHandler routeHandler = (RouteHandler) hook.getTarget();
@@ -0,0 +1,203 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.server;
+
+import com.hellokaton.blade.kit.JsonKit;
+
+import java.io.IOException;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Time, loaded classes and allocated bytes of each startup phase.
+ * <p>
+ * Allocated bytes are summed over all threads, the scanning and bean phases
+ * run on worker threads too. Threads that end during a phase are not alive to
+ * be asked, their allocations are missed. -1 when the JVM does not support it.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+public class StartupProfiler {
+
+    private static final ClassLoadingMXBean CLASS_LOADING = ManagementFactory.getClassLoadingMXBean();
+    private static final com.sun.management.ThreadMXBean THREADS = threadMXBean();
+
+    private final transient long startNanos = System.nanoTime();
+    private final List<Phase> phases = new ArrayList<>();
+    private double totalMillis;
+
+    /**
+     * A phase in progress or finished
+     */
+    public class Phase {
+
+        private final String name;
+        private final double startMillis;
+        private double millis;
+        private long classes;
+        private long allocatedBytes;
+
+        private final transient long beginNanos;
+        private final transient long beginClasses;
+        private final transient Map<Long, Long> beginAllocated;
+
+        private Phase(String name) {
+            this.name = name;
+            this.beginClasses = CLASS_LOADING.getTotalLoadedClassCount();
+            this.beginAllocated = allocatedBytes();
+            this.beginNanos = System.nanoTime();
+            this.startMillis = toMillis(beginNanos - startNanos);
+        }
+
+        /**
+         * Finish the phase and add it to the report
+         */
+        public void end() {
+            this.millis = toMillis(System.nanoTime() - beginNanos);
+            this.classes = CLASS_LOADING.getTotalLoadedClassCount() - beginClasses;
+            this.allocatedBytes = allocatedSince(beginAllocated);
+            synchronized (phases) {
+                phases.add(this);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getStartMillis() {
+            return startMillis;
+        }
+
+        public double getMillis() {
+            return millis;
+        }
+
+        public long getClasses() {
+            return classes;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %.2f ms, classes: %d, allocated: %d bytes",
+                    name, millis, classes, allocatedBytes);
+        }
+
+    }
+
+    public Phase begin(String name) {
+        return new Phase(name);
+    }
+
+    /**
+     * Stop the total time, phases ended later are still added
+     */
+    public StartupProfiler finish() {
+        this.totalMillis = toMillis(System.nanoTime() - startNanos);
+        return this;
+    }
+
+    public List<Phase> getPhases() {
+        synchronized (phases) {
+            return Collections.unmodifiableList(new ArrayList<>(phases));
+        }
+    }
+
+    public double getTotalMillis() {
+        return totalMillis;
+    }
+
+    public String toJson() {
+        synchronized (phases) {
+            return JsonKit.toJson(this, true);
+        }
+    }
+
+    public void writeTo(Path file) throws IOException {
+        if (null != file.getParent()) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.write(file, toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 10_000D) / 100D;
+    }
+
+    /**
+     * @return allocated bytes by thread id, null when not supported
+     */
+    private static Map<Long, Long> allocatedBytes() {
+        if (null == THREADS) {
+            return null;
+        }
+        long[] ids = THREADS.getAllThreadIds();
+        long[] bytes = THREADS.getThreadAllocatedBytes(ids);
+        Map<Long, Long> allocated = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            // -1 for a thread ended meanwhile
+            if (bytes[i] >= 0) {
+                allocated.put(ids[i], bytes[i]);
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * Bytes allocated by the live threads since the snapshot, a thread
+     * started later counts from zero
+     */
+    private static long allocatedSince(Map<Long, Long> begin) {
+        Map<Long, Long> end = allocatedBytes();
+        if (null == begin || null == end) {
+            return -1;
+        }
+        long allocated = 0;
+        for (Map.Entry<Long, Long> entry : end.entrySet()) {
+            allocated += Math.max(0, entry.getValue() - begin.getOrDefault(entry.getKey(), 0L));
+        }
+        return allocated;
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+                if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                    return threads;
+                }
+            }
+        } catch (LinkageError | UnsupportedOperationException e) {
+            // not a HotSpot JVM
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,358 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.util.IllegalReferenceCountException;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Static files resolved by clean uri, the contents of small files are kept in
+ * direct buffers and the response headers are built once.
+ * <p>
+ * The cache is bounded by the bytes it holds, a clock sweep evicts entries
+ * not requested since the last pass. Disk entries are validated against the
+ * file modified time and length at most once per check interval.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+public class StaticFileCache {
+
+    /**
+     * Bytes counted for an entry besides its content
+     */
+    static final int ENTRY_OVERHEAD = 256;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong weight = new AtomicLong();
+    private final long maxSize;
+    private final long maxFileSize;
+    private final long checkInterval;
+
+    private Iterator<Entry> hand;
+
+    /**
+     * @param maxSize       max bytes of all entries
+     * @param maxFileSize   max bytes of a file whose content is cached
+     * @param checkInterval milliseconds between two validations of a disk file
+     */
+    public StaticFileCache(long maxSize, long maxFileSize, long checkInterval) {
+        this.maxSize = maxSize;
+        this.maxFileSize = maxFileSize;
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * Whether the content of a file of the length is cached
+     */
+    public boolean cacheContent(long length) {
+        return length <= maxFileSize && length + ENTRY_OVERHEAD <= maxSize;
+    }
+
+    /**
+     * @return a valid entry of the uri, or null
+     */
+    public Entry get(String uri) {
+        Entry entry = entries.get(uri);
+        if (null == entry) {
+            return null;
+        }
+        if (null != entry.file && !this.validate(entry)) {
+            this.remove(entry);
+            return null;
+        }
+        entry.referenced = true;
+        return entry;
+    }
+
+    /**
+     * @return false when the entry is too large to cache, the caller keeps releasing it
+     */
+    public boolean put(Entry entry) {
+        if (entry.weight > maxSize) {
+            return false;
+        }
+        Entry former = entries.put(entry.uri, entry);
+        weight.addAndGet(entry.weight);
+        if (null != former) {
+            weight.addAndGet(-former.weight);
+            former.release();
+        }
+        if (weight.get() > maxSize) {
+            this.evict(entry);
+        }
+        return true;
+    }
+
+    public void clear() {
+        entries.values().forEach(this::remove);
+    }
+
+    public int count() {
+        return entries.size();
+    }
+
+    /**
+     * Bytes held by the cache
+     */
+    public long weight() {
+        return weight.get();
+    }
+
+    private boolean validate(Entry entry) {
+        long now = System.currentTimeMillis();
+        if (now - entry.checkedAt < checkInterval) {
+            return true;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(entry.file.toPath(), BasicFileAttributes.class);
+            if (attributes.lastModifiedTime().toMillis() != entry.lastModified || attributes.size() != entry.length) {
+                return false;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        entry.checkedAt = now;
+        return true;
+    }
+
+    private void remove(Entry entry) {
+        if (entries.remove(entry.uri, entry)) {
+            weight.addAndGet(-entry.weight);
+            entry.release();
+        }
+    }
+
+    /**
+     * Evict until the cache fits, the entry just put is kept
+     */
+    private synchronized void evict(Entry added) {
+        // two passes clear every reference bit, a third finds nothing left to evict
+        int steps = entries.size() * 3;
+        while (weight.get() > maxSize && steps-- > 0) {
+            if (null == hand || !hand.hasNext()) {
+                hand = entries.values().iterator();
+                if (!hand.hasNext()) {
+                    return;
+                }
+            }
+            Entry entry = hand.next();
+            if (entry == added) {
+                continue;
+            }
+            if (entry.referenced) {
+                entry.referenced = false;
+            } else {
+                this.remove(entry);
+            }
+        }
+    }
+
+    /**
+     * A resolved static file, either on disk or loaded from the classpath
+     */
+    public static class Entry {
+
+        final String uri;
+        final File file;
+        final URL resource;
+        final long length;
+        final long lastModified;
+        final String contentType;
+        final String etag;
+        final HttpHeaders headers;
+        private final ByteBuf content;
+        private final long weight;
+
+        /**
+         * whether compressed variants are served
+         */
+        final boolean compressible;
+        final Variant br;
+        volatile Variant gzip;
+
+        /**
+         * whether the gzip variant of a file too large to cache has been requested
+         */
+        final AtomicBoolean compressing = new AtomicBoolean();
+
+        volatile boolean referenced;
+        volatile long checkedAt;
+
+        /**
+         * @param uri          clean uri
+         * @param file         disk file, null for a classpath resource
+         * @param length       content length
+         * @param lastModified modified time in millis, -1 when unknown
+         * @param contentType  content type, may be null
+         * @param etag         strong entity tag
+         * @param headers      headers sent with every full response
+         * @param content      cached content, null to read the file per request
+         * @param compressible whether compressed variants are served
+         * @param gzip         gzip variant, may be null
+         * @param br           brotli variant, may be null
+         */
+        Entry(String uri, File file, long length, long lastModified, String contentType,
+              String etag, HttpHeaders headers, ByteBuf content,
+              boolean compressible, Variant gzip, Variant br) {
+            this(uri, file, null, length, lastModified, contentType, etag, headers, content, compressible, gzip, br);
+        }
+
+        /**
+         * A classpath resource too large to cache, streamed per request
+         *
+         * @param resource url of the resource
+         */
+        Entry(String uri, URL resource, long length, long lastModified, String contentType,
+              String etag, HttpHeaders headers, boolean compressible) {
+            this(uri, null, resource, length, lastModified, contentType, etag, headers, null, compressible, null, null);
+        }
+
+        private Entry(String uri, File file, URL resource, long length, long lastModified, String contentType,
+                      String etag, HttpHeaders headers, ByteBuf content,
+                      boolean compressible, Variant gzip, Variant br) {
+            this.uri = uri;
+            this.file = file;
+            this.resource = resource;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.headers = headers;
+            this.content = content;
+            this.compressible = compressible;
+            this.gzip = gzip;
+            this.br = br;
+            this.weight = ENTRY_OVERHEAD + (null != content ? content.capacity() : 0)
+                    + (null != gzip && null != gzip.content ? gzip.content.capacity() : 0);
+            this.checkedAt = System.currentTimeMillis();
+        }
+
+        Entry(String uri, File file, long length, long lastModified, String contentType,
+              String etag, HttpHeaders headers, ByteBuf content) {
+            this(uri, file, length, lastModified, contentType, etag, headers, content, false, null, null);
+        }
+
+        public boolean hasContent() {
+            return null != content;
+        }
+
+        /**
+         * @return a duplicate of the content the caller has to release,
+         * or null when the entry has been evicted meanwhile
+         */
+        ByteBuf retainedContent() {
+            return retainedDuplicate(content);
+        }
+
+        /**
+         * Find the entity tag of an If-None-Match header among the entry
+         * and its variants, compared weakly as revalidation allows.
+         *
+         * @param ifNoneMatch If-None-Match header value
+         * @return the matched entity tag, null when none matches
+         */
+        String matchETag(String ifNoneMatch) {
+            Variant gzip = this.gzip;
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if ("*".equals(tag)) {
+                    return etag;
+                }
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals(etag)) {
+                    return etag;
+                }
+                if (null != gzip && tag.equals(gzip.etag)) {
+                    return gzip.etag;
+                }
+                if (null != br && tag.equals(br.etag)) {
+                    return br.etag;
+                }
+            }
+            return null;
+        }
+
+        void release() {
+            if (null != content) {
+                content.release();
+            }
+            Variant variant = gzip;
+            if (null != variant && null != variant.content) {
+                variant.content.release();
+            }
+        }
+
+    }
+
+    /**
+     * Compressed form of an entry, kept in memory or in a file
+     */
+    public static class Variant {
+
+        final String encoding;
+        final File file;
+        final ByteBuf content;
+        final String etag;
+        final HttpHeaders headers;
+
+        /**
+         * @param encoding content coding
+         * @param file     compressed file, null when kept in memory
+         * @param content  compressed content, null when kept in a file
+         * @param etag     entity tag of this variant
+         * @param headers  headers sent with the variant
+         */
+        Variant(String encoding, File file, ByteBuf content, String etag, HttpHeaders headers) {
+            this.encoding = encoding;
+            this.file = file;
+            this.content = content;
+            this.etag = etag;
+            this.headers = headers;
+        }
+
+        /**
+         * @see Entry#retainedContent()
+         */
+        ByteBuf retainedContent() {
+            return retainedDuplicate(content);
+        }
+
+    }
+
+    private static ByteBuf retainedDuplicate(ByteBuf content) {
+        try {
+            return content.retainedDuplicate();
+        } catch (IllegalReferenceCountException e) {
+            return null;
+        }
+    }
+
+}
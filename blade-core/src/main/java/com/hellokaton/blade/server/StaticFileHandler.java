@@ -16,6 +16,8 @@
 package com.hellokaton.blade.server;
 
 import com.hellokaton.blade.Blade;
+import com.hellokaton.blade.Environment;
+import com.hellokaton.blade.exception.BladeException;
 import com.hellokaton.blade.exception.ForbiddenException;
 import com.hellokaton.blade.exception.NotFoundException;
 import com.hellokaton.blade.kit.*;
@@ -25,30 +27,49 @@ import com.hellokaton.blade.mvc.WebContext;
 import com.hellokaton.blade.mvc.handler.RequestHandler;
 import com.hellokaton.blade.mvc.http.Request;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.DefaultFileRegion;
 import io.netty.handler.codec.http.*;
-import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.stream.ChunkedFile;
+import io.netty.handler.stream.ChunkedStream;
 import io.netty.util.CharsetUtil;
 import lombok.extern.slf4j.Slf4j;
 import lombok.var;
 
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLDecoder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
 
 import static com.hellokaton.blade.kit.BladeKit.*;
 import static io.netty.handler.codec.http.HttpResponseStatus.*;
@@ -66,8 +87,32 @@ public class StaticFileHandler implements RequestHandler {
 
     private static final String STYLE = "body{background:#fff;margin:0;padding:30px;-webkit-font-smoothing:antialiased;font-family:Menlo,Consolas,monospace}main{max-width:920px}header{display:flex;justify-content:space-between}#toggle{display:none;cursor:pointer}#toggle:before{display:inline-block;content:url(\"data:image/svg+xml; utf8, <svg height='24px' version='1.1' viewBox='0 0 24 24' width='24px' xmlns='http://www.w3.org/2000/svg'><g fill='none' fill-rule='evenodd' stroke='none' stroke-width='1'><g transform='translate(-431.000000, -479.000000)'><g transform='translate(215.000000, 119.000000)'/><path d='M432,480 L432,486 L438,486 L438,480 L432,480 Z M440,480 L440,486 L446,486 L446,480 L440,480 Z M448,480 L448,486 L454,486 L454,480 L448,480 Z M449,481 L449,485 L453,485 L453,481 L449,481 Z M441,481 L441,485 L445,485 L445,481 L441,481 Z M433,481 L433,485 L437,485 L437,481 L433,481 Z M432,488 L432,494 L438,494 L438,488 L432,488 Z M440,488 L440,494 L446,494 L446,488 L440,488 Z M448,488 L448,494 L454,494 L454,488 L448,488 Z M449,489 L449,493 L453,493 L453,489 L449,489 Z M441,489 L441,493 L445,493 L445,489 L441,489 Z M433,489 L433,493 L437,493 L437,489 L433,489 Z M432,496 L432,502 L438,502 L438,496 L432,496 Z M440,496 L440,502 L446,502 L446,496 L440,496 Z M448,496 L448,502 L454,502 L454,496 L448,496 Z M449,497 L449,501 L453,501 L453,497 L449,497 Z M441,497 L441,501 L445,501 L445,497 L441,497 Z M433,497 L433,501 L437,501 L437,497 L433,497 Z' fill='#000000'/></g></g></svg>\")}#toggle.single-column:before{content:url(\"data:image/svg+xml; utf8, <svg height='24px' viewBox='0 0 24 24' width='24px' xmlns='http://www.w3.org/2000/svg'><g fill='none' fill-rule='evenodd' id='miu' stroke='none' stroke-width='1'><g transform='translate(-359.000000, -479.000000)'><g transform='translate(215.000000, 119.000000)'/><path d='M360.577138,485 C360.258394,485 360,485.221932 360,485.5 C360,485.776142 360.262396,486 360.577138,486 L381.422862,486 C381.741606,486 382,485.778068 382,485.5 C382,485.223858 381.737604,485 381.422862,485 L360.577138,485 L360.577138,485 Z M360.577138,490 C360.258394,490 360,490.221932 360,490.5 C360,490.776142 360.262396,491 360.577138,491 L381.422862,491 C381.741606,491 382,490.778068 382,490.5 C382,490.223858 381.737604,490 381.422862,490 L360.577138,490 L360.577138,490 Z M360.577138,495 C360.258394,495 360,495.221932 360,495.5 C360,495.776142 360.262396,496 360.577138,496 L381.422862,496 C381.741606,496 382,495.778068 382,495.5 C382,495.223858 381.737604,495 381.422862,495 L360.577138,495 L360.577138,495 Z' fill='#000000'/></g></g></svg>\")}a{color:#1A00F2;text-decoration:none}h1{font-size:18px;font-weight:500;margin-top:0;color:#000;font-family:-apple-system,Helvetica;display:flex}h1 a{color:inherit;font-weight:700;border-bottom:1px dashed transparent}h1 a::after{content:'/'}h1 a:hover{color:#7d7d7d}h1 i{font-style:normal}ul{margin:0;padding:20px 0 0 0}ul.single-column{flex-direction:column}ul li{list-style:none;padding:10px 0;font-size:14px;display:flex;justify-content:space-between}ul li i{color:#9B9B9B;font-size:11px;display:block;font-style:normal;white-space:nowrap;padding-left:15px}ul a{color:#1A00F2;white-space:nowrap;overflow:hidden;display:block;text-overflow:ellipsis}ul a::before{content:url(\"data:image/svg+xml; utf8, <svg xmlns='http://www.w3.org/2000/svg' width='16' height='16' viewBox='0 0 64 64'><g fill='transparent' stroke='currentColor' stroke-miterlimit='10'><path stroke-width='4' d='M50.46 56H13.54V8h22.31a4.38 4.38 0 0 1 3.1 1.28l10.23 10.24a4.38 4.38 0 0 1 1.28 3.1z'/><path stroke-width='2' d='M35.29 8.31v14.72h14.06'/></g></svg>\");display:inline-block;vertical-align:middle;margin-right:10px}ul a:hover{color:#000}ul a[class=''] + i{display:none}ul a[class='']::before{content:url(\"data:image/svg+xml; utf8, <svg xmlns='http://www.w3.org/2000/svg' width='16' height='16' viewBox='0 0 64 64'><path fill='transparent' stroke='currentColor' stroke-width='4' stroke-miterlimit='10' d='M56 53.71H8.17L8 21.06a2.13 2.13 0 0 1 2.13-2.13h2.33l2.13-4.28A4.78 4.78 0 0 1 18.87 12h9.65a4.78 4.78 0 0 1 4.28 2.65l2.13 4.28h17.36a3.55 3.55 0 0 1 3.55 3.55z'/></svg>\")}ul a[class='gif']::before,ul a[class='jpg']::before,ul a[class='png']::before,ul a[class='svg']::before{content:url(\"data:image/svg+xml; utf8, <svg width='16' height='16' viewBox='0 0 80 80' xmlns='http://www.w3.org/2000/svg' fill='none' stroke='currentColor' stroke-width='5' stroke-linecap='round' stroke-linejoin='round'><rect x='6' y='6' width='68' height='68' rx='5' ry='5'/><circle cx='24' cy='24' r='8'/><path d='M73 49L59 34 37 52M53 72L27 42 7 58'/></svg>\");width:16px}@media (min-width:768px){#toggle{display:inline-block}ul{display:flex;flex-wrap:wrap}ul li{width:230px;padding-right:20px}ul.single-column li{width:auto}}@media (min-width:992px){body{padding:45px}h1{font-size:15px}ul li{font-size:13px;box-sizing:border-box;justify-content:flex-start}ul li:hover i{opacity:1}ul li i{font-size:10px;opacity:0;margin-left:10px;margin-top:3px;padding-left:0}}";
 
+    private static final Map<String, DateTimeFormatter> FORMATTERS = new ConcurrentHashMap<>();
+
+    private static final long PROCESS_START = ManagementFactory.getRuntimeMXBean().getStartTime();
+
     private static final Pattern ALLOWED_FILE_NAME = Pattern.compile("[^-._]?[^<>&\"]*");
 
+    private static final Set<String> INCOMPRESSIBLE_TYPES = new HashSet<>(Arrays.asList(
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-bzip2",
+            "application/x-xz", "application/x-7z-compressed", "application/x-rar-compressed",
+            "application/java-archive", "application/pdf", "application/font-woff",
+            "font/woff", "font/woff2"));
+
+    /**
+     * files smaller than this do not get smaller when compressed
+     */
+    private static final int MIN_COMPRESS_LENGTH = 256;
+
+    /**
+     * compresses files too large for the cache, kept off the event loop
+     */
+    private static final Executor COMPRESS_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "static-compress");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private static JarFile CACHE_JAR_FILE;
 
     private final boolean showFileList;
@@ -77,9 +122,40 @@ public class StaticFileHandler implements RequestHandler {
      */
     private final long httpCacheSeconds;
 
+    private final String cacheControl;
+
+    /**
+     * serve compressed variants, follows HttpOptions.enableGzip
+     */
+    private final boolean enableGzip;
+
+    /**
+     * where compressed files too large for the cache are kept
+     */
+    private final Path compressDir;
+    private volatile boolean compressDirReady;
+
+    /**
+     * resolved files, null when disabled
+     */
+    private final StaticFileCache cache;
+
     public StaticFileHandler(Blade blade) {
-        this.showFileList = blade.environment().getBoolean(BladeConst.ENV_KEY_STATIC_LIST, false);
-        this.httpCacheSeconds = blade.environment().getLong(BladeConst.ENV_KEY_HTTP_CACHE_TIMEOUT, 86400 * 30);
+        Environment environment = blade.environment();
+        this.showFileList = environment.getBoolean(BladeConst.ENV_KEY_STATIC_LIST, false);
+        this.httpCacheSeconds = environment.getLong(BladeConst.ENV_KEY_HTTP_CACHE_TIMEOUT, 86400 * 30);
+        this.cacheControl = "private, max-age=" + httpCacheSeconds;
+        this.enableGzip = blade.httpOptions().isEnableGzip();
+        this.compressDir = Paths.get(environment.get(BladeConst.ENV_KEY_STATIC_CACHE_DIR,
+                Paths.get(System.getProperty("java.io.tmpdir"), "blade-static").toString()));
+        if (environment.getBoolean(BladeConst.ENV_KEY_STATIC_CACHE_ENABLED, true)) {
+            this.cache = new StaticFileCache(
+                    environment.getLong(BladeConst.ENV_KEY_STATIC_CACHE_MAX_SIZE, 32 * 1024 * 1024),
+                    environment.getLong(BladeConst.ENV_KEY_STATIC_CACHE_MAX_FILE_SIZE, 256 * 1024),
+                    environment.getLong(BladeConst.ENV_KEY_STATIC_CACHE_CHECK_INTERVAL, blade.devMode() ? 0 : 2000));
+        } else {
+            this.cache = null;
+        }
     }
 
     /**
@@ -101,28 +177,57 @@ public class StaticFileHandler implements RequestHandler {
 
         Instant start = Instant.now();
 
-        String uri = URLDecoder.decode(request.uri(), "UTF-8");
+        String uri = decodeUri(request.uri());
         String method = StringKit.padRight(request.method(), 6);
         String cleanURL = getCleanURL(request, uri);
 
+        StaticFileCache.Entry entry = null != cache ? cache.get(cleanURL) : null;
+        ByteBuf content = null;
+        if (null != entry && entry.hasContent() && null == (content = entry.retainedContent())) {
+            // evicted meanwhile
+            entry = null;
+        }
+        if (null == entry) {
+            entry = this.resolve(ctx, request, uri, cleanURL);
+            if (null == entry) {
+                return;
+            }
+            if (entry.hasContent()) {
+                content = entry.retainedContent();
+            }
+            if (null == cache || !cache.put(entry)) {
+                entry.release();
+            }
+        }
+
+        if (this.writeEntry(ctx, request, entry, content)) {
+            log200AndCost(log, start, method, uri);
+        } else {
+            log304(log, method, uri);
+        }
+    }
+
+    /**
+     * Find the file of the uri, directory listings and errors are sent right away
+     *
+     * @return resolved file, or null when the response has been sent
+     */
+    private StaticFileCache.Entry resolve(ChannelHandlerContext ctx, Request request,
+                                          String uri, String cleanURL) throws IOException {
         // webjars
         if (cleanURL.startsWith(BladeConst.WEB_JARS)) {
-            InputStream input = getResourceStreamFromJar(uri);
-            writeWithJarFile(request, ctx, uri, start, cleanURL, method, input);
-            return;
+            return loadResource(ctx, request, uri, cleanURL, getResourceURLFromJar(uri));
         }
 
         // jar file
         if (BladeKit.runtimeIsJAR()) {
-            InputStream input = StaticFileHandler.class.getResourceAsStream(cleanURL);
-            writeWithJarFile(request, ctx, uri, start, cleanURL, method, input);
-            return;
+            return loadResource(ctx, request, uri, cleanURL, StaticFileHandler.class.getResource(cleanURL));
         }
 
         // disk file
         final String path = sanitizeUri(cleanURL);
         if (path == null) {
-            log403(log, method, uri);
+            log403(log, StringKit.padRight(request.method(), 6), uri);
             throw new ForbiddenException();
         }
 
@@ -142,31 +247,485 @@ public class StaticFileHandler implements RequestHandler {
 
         if (file.isDirectory() && showFileList) {
             sendListing(ctx, uri, getFileMetas(file), cleanURL);
-            return;
+            return null;
         }
 
         if (!file.isFile()) {
             sendError(ctx, FORBIDDEN);
-            return;
+            return null;
         }
+        return loadFile(cleanURL, file);
+    }
 
-        // Cache Validation
-        if (isHttp304(ctx, request, file.length(), file.lastModified())) {
-            log304(log, method, uri);
+    private StaticFileCache.Entry loadFile(String cleanURL, File file) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            throw new NotFoundException(cleanURL);
+        }
+        long length = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+
+        ByteBuf content = null;
+        String etag;
+        if (null != cache && cache.cacheContent(length)) {
+            content = Unpooled.directBuffer((int) length);
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                while (content.isWritable() && content.writeBytes(channel, content.writerIndex(), content.writableBytes()) > 0) {
+                    // the file may shrink meanwhile, the next validation reloads it
+                }
+            } catch (IOException e) {
+                content.release();
+                throw e;
+            }
+            length = content.readableBytes();
+            etag = contentETag(content);
+        } else {
+            etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        }
+
+        String contentType = MimeTypeKit.parse(file.getName());
+        if (null == contentType) {
+            contentType = URLConnection.guessContentTypeFromName(file.getName());
+        }
+        boolean compressible = this.isCompressible(contentType, length);
+        HttpHeaders headers = entryHeaders(contentType, length, etag, lastModified, compressible);
+
+        StaticFileCache.Variant gzip = null;
+        StaticFileCache.Variant br = null;
+        if (compressible) {
+            // precompressed files shipped next to the source
+            br = precompressed(file, "br", lastModified, etag, headers);
+            gzip = precompressed(file, "gzip", lastModified, etag, headers);
+            if (null == gzip && null != content) {
+                gzip = compressInMemory(content, etag, headers);
+            }
+        }
+        return new StaticFileCache.Entry(cleanURL, file, length, lastModified, contentType, etag,
+                headers, content, compressible, gzip, br);
+    }
+
+    private StaticFileCache.Entry loadResource(ChannelHandlerContext ctx, Request request,
+                                               String uri, String cleanUri, URL url) throws IOException {
+        if (null == url) {
+            throw new NotFoundException(uri);
+        }
+        // the jar entry time, so a restart with the same jar still answers 304
+        URLConnection connection = url.openConnection();
+        long lastModified = connection.getLastModified();
+        if (connection instanceof JarURLConnection) {
+            JarEntry jarEntry = ((JarURLConnection) connection).getJarEntry();
+            if (null != jarEntry && jarEntry.getTime() > 0) {
+                lastModified = jarEntry.getTime();
+            }
+        }
+        if (lastModified <= 0) {
+            lastModified = -1;
+        }
+        String contentType = MimeTypeKit.parse(cleanUri);
+
+        // too large to cache, only the metadata is kept and the resource is streamed
+        long contentLength = connection.getContentLengthLong();
+        if (contentLength > 0 && (null == cache || !cache.cacheContent(contentLength))) {
+            String etag = "\"" + Long.toHexString(contentLength) + "-" + Long.toHexString(lastModified) + "\"";
+            boolean compressible = this.isCompressible(contentType, contentLength);
+            HttpHeaders headers = entryHeaders(contentType, contentLength, etag, lastModified, compressible);
+            // a resource has no channel to read ranges from
+            headers.remove(NettyHttpConst.ACCEPT_RANGES);
+            return new StaticFileCache.Entry(cleanUri, url, contentLength, lastModified, contentType, etag,
+                    headers, compressible);
+        }
+
+        ByteBuf content;
+        try (InputStream in = connection.getInputStream()) {
+            var staticInputStream = new StaticInputStream(in);
+            int size = staticInputStream.size();
+            content = Unpooled.directBuffer(size).writeBytes(staticInputStream.asByteBuf());
+            staticInputStream.asByteBuf().release();
+        } catch (NullPointerException e) {
+            String jarPath = cleanUri.substring(1);
+
+            URL dirURL = getURLFromJar(jarPath);
+            if (null != dirURL && dirURL.getProtocol().equals("jar")) {
+                List<FileMeta> listFiles = getResourceListing(dirURL, jarPath);
+                sendListing(ctx, request.uri(), listFiles, cleanUri);
+                return null;
+            } else {
+                throw e;
+            }
+        }
+        int length = content.readableBytes();
+        String etag = contentETag(content);
+        boolean compressible = this.isCompressible(contentType, length);
+        HttpHeaders headers = entryHeaders(contentType, length, etag, lastModified, compressible);
+        StaticFileCache.Variant gzip = compressible && null != cache && cache.cacheContent(length) ?
+                compressInMemory(content, etag, headers) : null;
+        return new StaticFileCache.Entry(cleanUri, null, length, lastModified, contentType, etag,
+                headers, content, compressible, gzip, null);
+    }
+
+    private HttpHeaders entryHeaders(String contentType, long length, String etag,
+                                     long lastModified, boolean compressible) {
+        HttpHeaders headers = new DefaultHttpHeaders(false);
+        if (null != contentType) {
+            headers.set(NettyHttpConst.CONTENT_TYPE, contentType);
+        }
+        headers.set(NettyHttpConst.CONTENT_LENGTH, length);
+        headers.set(NettyHttpConst.ETAG, etag);
+        headers.set(NettyHttpConst.ACCEPT_RANGES, NettyHttpConst.BYTES);
+        if (httpCacheSeconds > 0 && lastModified >= 0) {
+            headers.set(NettyHttpConst.LAST_MODIFIED, DateKit.gmtDate(new Date(lastModified)));
+        }
+        if (compressible) {
+            headers.set(NettyHttpConst.VARY, NettyHttpConst.ACCEPT_ENCODING);
+        } else if (enableGzip) {
+            // content that does not compress
+            ContentCompressor.skip(headers);
+        }
+        return headers;
+    }
+
+    /**
+     * Strong entity tag of the content, its length and crc32
+     */
+    private static String contentETag(ByteBuf content) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(content.nioBuffer());
+        return "\"" + Integer.toHexString(content.readableBytes()) + "-" + Long.toHexString(crc32.getValue()) + "\"";
+    }
+
+    /**
+     * Whether the file is worth compressing, images, media and archives are compressed already
+     */
+    private boolean isCompressible(String contentType, long length) {
+        if (!enableGzip || null == contentType || length < MIN_COMPRESS_LENGTH) {
+            return false;
+        }
+        int semicolon = contentType.indexOf(';');
+        String type = (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim().toLowerCase();
+        if (type.startsWith("image/")) {
+            return "image/svg+xml".equals(type);
+        }
+        return !type.startsWith("audio/") && !type.startsWith("video/") && !INCOMPRESSIBLE_TYPES.contains(type);
+    }
+
+    private static StaticFileCache.Variant variant(String encoding, File file, ByteBuf content,
+                                                   long length, String etag, HttpHeaders entryHeaders) {
+        // a strong entity tag differs per representation
+        String variantETag = etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+        HttpHeaders headers = new DefaultHttpHeaders(false).add(entryHeaders);
+        headers.set(NettyHttpConst.CONTENT_LENGTH, length);
+        headers.set(NettyHttpConst.CONTENT_ENCODING, encoding);
+        headers.set(NettyHttpConst.ETAG, variantETag);
+        headers.remove(NettyHttpConst.ACCEPT_RANGES);
+        return new StaticFileCache.Variant(encoding, file, content, variantETag, headers);
+    }
+
+    /**
+     * The .br or .gz file next to the source, used when it is not older than the source
+     */
+    private static StaticFileCache.Variant precompressed(File file, String encoding, long lastModified,
+                                                         String etag, HttpHeaders headers) {
+        File compressed = new File(file.getPath() + ("br".equals(encoding) ? ".br" : ".gz"));
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(compressed.toPath(), BasicFileAttributes.class);
+            if (!attributes.isRegularFile() || attributes.lastModifiedTime().toMillis() < lastModified) {
+                return null;
+            }
+            return variant(encoding, compressed, null, attributes.size(), etag, headers);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return gzip variant of cached content, or null when it does not get smaller
+     */
+    private static StaticFileCache.Variant compressInMemory(ByteBuf content, String etag, HttpHeaders headers) {
+        ByteBuf compressed = Unpooled.directBuffer(content.readableBytes() / 2 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(new ByteBufOutputStream(compressed))) {
+            content.getBytes(content.readerIndex(), out, content.readableBytes());
+        } catch (IOException e) {
+            compressed.release();
+            return null;
+        }
+        if (compressed.readableBytes() >= content.readableBytes()) {
+            compressed.release();
+            return null;
+        }
+        ByteBuf trimmed = Unpooled.directBuffer(compressed.readableBytes()).writeBytes(compressed);
+        compressed.release();
+        return variant("gzip", null, trimmed, trimmed.readableBytes(), etag, headers);
+    }
+
+    /**
+     * Compress a disk file once into the cache directory on the compress thread,
+     * the file is sent as is until its variant exists. A failed file is not tried
+     * again until it changes and gets a new entry.
+     */
+    private void compressLater(StaticFileCache.Entry entry) {
+        if (entry.compressing.compareAndSet(false, true)) {
+            COMPRESS_EXECUTOR.execute(() -> entry.gzip = compressToDisk(entry));
+        }
+    }
+
+    /**
+     * @return the variant this process has compressed already, or null
+     */
+    private StaticFileCache.Variant compressed(StaticFileCache.Entry entry) {
+        Path target = compressDir.resolve(compressedName(entry));
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(target, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            // files of a former process are written again rather than trusted
+            if (!attributes.isRegularFile() || attributes.lastModifiedTime().toMillis() < PROCESS_START) {
+                return null;
+            }
+            return variant("gzip", target.toFile(), null, attributes.size(), entry.etag, entry.headers);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private StaticFileCache.Variant compressToDisk(StaticFileCache.Entry entry) {
+        StaticFileCache.Variant gzip = compressed(entry);
+        if (null != gzip) {
+            return gzip;
+        }
+        String name = compressedName(entry);
+        Path target = compressDir.resolve(name);
+        try {
+            this.prepareCompressDir();
+            Path temp = Files.createTempFile(compressDir, name, ".tmp");
+            try {
+                IOKit.compressGZIP(entry.file, temp.toFile());
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            this.deleteSuperseded(EncryptKit.SHA1(entry.uri) + "-", target);
+            return variant("gzip", target.toFile(), null, Files.size(target), entry.etag, entry.headers);
+        } catch (IOException e) {
+            log.warn("Compress static file {} error", entry.file, e);
+            return null;
+        }
+    }
+
+    /**
+     * The file name carries the entity tag so a changed source gets a new file
+     */
+    private static String compressedName(StaticFileCache.Entry entry) {
+        return EncryptKit.SHA1(entry.uri) + "-" + entry.etag.replace("\"", "") + ".gz";
+    }
+
+    /**
+     * The directory may be in the shared temp directory, it has to be owner-only and ours
+     */
+    private void prepareCompressDir() throws IOException {
+        if (!compressDirReady) {
+            IOKit.createPrivateDirectory(compressDir);
+            compressDirReady = true;
+        }
+    }
+
+    /**
+     * Delete the compressed files of former versions of the uri
+     */
+    private void deleteSuperseded(String prefix, Path target) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(compressDir, prefix + "*.gz")) {
+            for (Path file : files) {
+                if (!file.equals(target)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Delete superseded compressed files of {} error", target, e);
+        }
+    }
+
+    /**
+     * Pick the variant by the Accept-Encoding qualities, brotli wins a tie
+     *
+     * @return variant to send, or null to send the file as is
+     */
+    private StaticFileCache.Variant selectVariant(Request request, StaticFileCache.Entry entry) {
+        if (!entry.compressible) {
+            return null;
+        }
+        String acceptEncoding = request.header(NettyHttpConst.ACCEPT_ENCODING);
+        if (StringKit.isEmpty(acceptEncoding)) {
+            return null;
+        }
+        float brQuality = WebKit.acceptQuality(acceptEncoding, "br");
+        float gzipQuality = WebKit.acceptQuality(acceptEncoding, "gzip");
+        if (null != entry.br && brQuality > 0 && brQuality >= gzipQuality) {
+            return entry.br;
+        }
+        if (gzipQuality > 0) {
+            StaticFileCache.Variant gzip = entry.gzip;
+            // cached content that did not get smaller has no variant
+            if (null == gzip && null != entry.file && !entry.hasContent()) {
+                // a file compressed for a former entry of the uri is found on disk
+                gzip = compressed(entry);
+                if (null != gzip) {
+                    entry.gzip = gzip;
+                } else {
+                    compressLater(entry);
+                }
+            }
+            if (null != gzip) {
+                return gzip;
+            }
+        }
+        return null != entry.br && brQuality > 0 ? entry.br : null;
+    }
+
+    /**
+     * Write a resolved file, the cached content is released here
+     *
+     * @return true when the file is sent, false when it is not modified
+     */
+    private boolean writeEntry(ChannelHandlerContext ctx, Request request,
+                               StaticFileCache.Entry entry, ByteBuf content) {
+        if (isHttp304(ctx, request, entry)) {
+            if (null != content) {
+                content.release();
+            }
+            return false;
+        }
+
+        if (null != entry.resource) {
+            writeResource(ctx, request, entry);
+            return true;
+        }
+
+        String range = request.header(NettyHttpConst.RANGE);
+        if (StringKit.isNotEmpty(range) && ByteRange.ifRangeMatches(request.header(NettyHttpConst.IF_RANGE),
+                entry.etag, entry.headers.get(NettyHttpConst.LAST_MODIFIED))) {
+            List<ByteRange> ranges = ByteRange.parse(range, entry.length);
+            if (null != ranges && writeRanges(ctx, request, entry, content, ranges)) {
+                return true;
+            }
+        }
+
+        StaticFileCache.Variant variant = selectVariant(request, entry);
+        if (null != variant) {
+            ByteBuf compressed = null != variant.content ? variant.retainedContent() : null;
+            if (null != variant.file || null != compressed) {
+                if (null != content) {
+                    content.release();
+                }
+                if (null != compressed) {
+                    writeContent(ctx, request, variant.headers, entry.lastModified, compressed);
+                } else {
+                    HttpResponse httpResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                    httpResponse.headers().add(variant.headers);
+                    setDateAndCacheHeaders(httpResponse, entry.lastModified);
+                    writeFile(ctx, request, httpResponse, variant.file);
+                }
+                return true;
+            }
+        }
+
+        if (null != content) {
+            writeContent(ctx, request, entry.headers, entry.lastModified, content);
+            return true;
+        }
+
+        HttpResponse httpResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        httpResponse.headers().add(entry.headers);
+        setDateAndCacheHeaders(httpResponse, entry.lastModified);
+        writeFile(ctx, request, httpResponse, entry.file);
+        return true;
+    }
+
+    /**
+     * Write ranges of the uncompressed entry
+     *
+     * @return false when the ranges are not served and the whole entry is sent
+     */
+    private boolean writeRanges(ChannelHandlerContext ctx, Request request, StaticFileCache.Entry entry,
+                                ByteBuf content, List<ByteRange> ranges) {
+        ChannelFuture future;
+        if (ranges.isEmpty()) {
+            if (null != content) {
+                content.release();
+            }
+            future = PartialContent.writeNotSatisfiable(ctx, request.keepAlive(), entry.length);
+        } else if (PartialContent.acceptable(ranges)) {
+            HttpResponse httpResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            httpResponse.headers().add(entry.headers);
+            setDateAndCacheHeaders(httpResponse, entry.lastModified);
+            if (enableGzip) {
+                ContentCompressor.skip(httpResponse.headers());
+            }
+            if (request.keepAlive()) {
+                httpResponse.headers().set(NettyHttpConst.CONNECTION, NettyHttpConst.KEEP_ALIVE);
+            }
+            FileChannel channel = null;
+            try {
+                if (null == content) {
+                    channel = FileChannel.open(entry.file.toPath(), StandardOpenOption.READ);
+                }
+                future = PartialContent.write(ctx, httpResponse, ranges, entry.length, content, channel);
+            } catch (NoSuchFileException e) {
+                sendError(ctx, NOT_FOUND);
+                return true;
+            } catch (IOException e) {
+                throw BladeException.wrapper(e);
+            }
+        } else {
+            return false;
+        }
+        if (!request.keepAlive()) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+        return true;
+    }
+
+    /**
+     * Stream a classpath resource whose content is not cached, a compressible
+     * one is compressed on the fly
+     */
+    private void writeResource(ChannelHandlerContext ctx, Request request, StaticFileCache.Entry entry) {
+        InputStream in;
+        try {
+            in = entry.resource.openStream();
+        } catch (IOException e) {
+            sendError(ctx, NOT_FOUND);
             return;
         }
 
         HttpResponse httpResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
-        setContentTypeHeader(httpResponse, file);
-        setDateAndCacheHeaders(httpResponse, file);
+        httpResponse.headers().add(entry.headers);
+        setDateAndCacheHeaders(httpResponse, entry.lastModified);
+        if (request.keepAlive()) {
+            httpResponse.headers().set(NettyHttpConst.CONNECTION, NettyHttpConst.KEEP_ALIVE);
+        }
 
-        if (request.useGZIP()) {
-            File output = new File(file.getPath() + ".gz");
-            IOKit.compressGZIP(file, output);
-            file = output;
-            setGzip(httpResponse);
+        ctx.write(httpResponse);
+        // HttpChunkedInput writes the end marker and closes the stream
+        ChannelFuture future = ctx.writeAndFlush(new HttpChunkedInput(new ChunkedStream(in, 8192)));
+        if (!request.keepAlive()) {
+            future.addListener(ChannelFutureListener.CLOSE);
         }
+    }
 
+    private void writeContent(ChannelHandlerContext ctx, Request request, HttpHeaders headers,
+                              long lastModified, ByteBuf content) {
+        FullHttpResponse httpResponse = new DefaultFullHttpResponse(HTTP_1_1, OK, content);
+        httpResponse.headers().add(headers);
+        setDateAndCacheHeaders(httpResponse, lastModified);
+        if (request.keepAlive()) {
+            httpResponse.headers().set(NettyHttpConst.CONNECTION, NettyHttpConst.KEEP_ALIVE);
+        }
+        ChannelFuture future = ctx.writeAndFlush(httpResponse);
+        if (!request.keepAlive()) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    private void writeFile(ChannelHandlerContext ctx, Request request, HttpResponse httpResponse, File file) {
         RandomAccessFile raf;
         try {
             raf = new RandomAccessFile(file, "r");
@@ -175,9 +734,20 @@ public class StaticFileHandler implements RequestHandler {
             return;
         }
 
-        long fileLength = raf.length();
+        long fileLength;
+        try {
+            fileLength = raf.length();
+        } catch (IOException e) {
+            IOKit.closeQuietly(raf);
+            sendError(ctx, INTERNAL_SERVER_ERROR);
+            return;
+        }
 
         httpResponse.headers().set(NettyHttpConst.CONTENT_LENGTH, fileLength);
+        if (enableGzip && !httpResponse.headers().contains(NettyHttpConst.CONTENT_ENCODING)) {
+            // HttpContentCompressor can not encode a file region
+            ContentCompressor.skip(httpResponse.headers());
+        }
         if (request.keepAlive()) {
             httpResponse.headers().set(NettyHttpConst.CONNECTION, NettyHttpConst.KEEP_ALIVE);
         }
@@ -188,7 +758,7 @@ public class StaticFileHandler implements RequestHandler {
         // Write the content.
         ChannelFuture sendFileFuture;
         ChannelFuture lastContentFuture;
-        if (ctx.pipeline().get(SslHandler.class) == null) {
+        if (WebKit.supportFileRegion(ctx)) {
             sendFileFuture = ctx.write(
                     new DefaultFileRegion(raf.getChannel(), 0, fileLength),
                     ctx.newProgressivePromise()
@@ -198,11 +768,16 @@ public class StaticFileHandler implements RequestHandler {
             lastContentFuture = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
 
         } else {
-            sendFileFuture = ctx.writeAndFlush(
-                    new HttpChunkedInput(
-                            new ChunkedFile(raf, 0, fileLength, 8192)
-                    ),
-                    ctx.newProgressivePromise());
+            try {
+                sendFileFuture = ctx.writeAndFlush(
+                        new HttpChunkedInput(
+                                new ChunkedFile(raf, 0, fileLength, 8192)
+                        ),
+                        ctx.newProgressivePromise());
+            } catch (IOException e) {
+                IOKit.closeQuietly(raf);
+                throw BladeException.wrapper(e);
+            }
             // HttpChunkedInput will write the end marker (LastHttpContent) for us.
             lastContentFuture = sendFileFuture;
         }
@@ -213,7 +788,16 @@ public class StaticFileHandler implements RequestHandler {
         if (!request.keepAlive()) {
             lastContentFuture.addListener(ChannelFutureListener.CLOSE);
         }
-        log200AndCost(log, start, method, uri);
+    }
+
+    /**
+     * Decode the uri, most of them have nothing to decode
+     */
+    private static String decodeUri(String uri) throws UnsupportedEncodingException {
+        if (uri.indexOf('%') < 0 && uri.indexOf('+') < 0) {
+            return uri;
+        }
+        return URLDecoder.decode(uri, "UTF-8");
     }
 
     private List<FileMeta> getFileMetas(File file) {
@@ -239,99 +823,69 @@ public class StaticFileHandler implements RequestHandler {
         return uri;
     }
 
-    private InputStream getResourceStreamFromJar(String uri) {
-        return StaticFileHandler.class.getResourceAsStream("/META-INF/resources" + uri);
+    private URL getResourceURLFromJar(String uri) {
+        return StaticFileHandler.class.getResource("/META-INF/resources" + uri);
     }
 
     private URL getURLFromJar(String uri) {
         return StaticFileHandler.class.getClassLoader().getResource(uri);
     }
 
-    private void writeWithJarFile(Request request, ChannelHandlerContext ctx, String uri, Instant start, String cleanUri, String method, InputStream input) throws IOException {
-        if (null == input) {
-            throw new NotFoundException(uri);
-        }
-        if (writeJarResource(ctx, request, cleanUri, input)) {
-            log200AndCost(log, start, method, uri);
-        }
-    }
-
-    private boolean writeJarResource(ChannelHandlerContext ctx, Request request, String cleanUri, InputStream input) throws IOException {
-        try {
-            var staticInputStream = new StaticInputStream(input);
-
-            int size = staticInputStream.size();
-
-            if (isHttp304(ctx, request, size, -1)) {
-                log304(log, request.method(), cleanUri);
+    /**
+     * Answer a conditional request with 304 when the client copy is current.
+     * If-None-Match takes precedence, If-Modified-Since is only checked without it.
+     */
+    private boolean isHttp304(ChannelHandlerContext ctx, Request request, StaticFileCache.Entry entry) {
+        String etag;
+        String ifNoneMatch = request.header(NettyHttpConst.IF_NONE_MATCH);
+        if (StringKit.isNotEmpty(ifNoneMatch)) {
+            etag = entry.matchETag(ifNoneMatch);
+            if (null == etag) {
                 return false;
             }
-
-            FullHttpResponse httpResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, OK, staticInputStream.asByteBuf());
-
-            setDateAndCacheHeaders(httpResponse, null);
-            String contentType = MimeTypeKit.parse(cleanUri);
-            if (null != contentType) {
-                httpResponse.headers().set(NettyHttpConst.CONTENT_TYPE, contentType);
-            }
-            httpResponse.headers().set(NettyHttpConst.CONTENT_LENGTH, size);
-
-            if (request.keepAlive()) {
-                httpResponse.headers().set(NettyHttpConst.CONNECTION, NettyHttpConst.KEEP_ALIVE);
+        } else {
+            String ifModifiedSince = request.header(NettyHttpConst.IF_MODIFIED_SINCE);
+            if (StringKit.isEmpty(ifModifiedSince) || httpCacheSeconds <= 0 || entry.lastModified < 0
+                    || !ifModifiedSince.equals(entry.headers.get(NettyHttpConst.LAST_MODIFIED))
+                    && !notModifiedSince(ifModifiedSince, entry.lastModified)) {
+                return false;
             }
-            // Write the initial line and the header.
-            ctx.writeAndFlush(httpResponse);
-            return true;
-        } catch (NullPointerException e) {
-            String jarPath = cleanUri.substring(1);
+            etag = entry.etag;
+        }
 
-            URL dirURL = getURLFromJar(jarPath);
-            if (null != dirURL && dirURL.getProtocol().equals("jar")) {
-                List<FileMeta> listFiles = getResourceListing(dirURL, jarPath);
-                sendListing(ctx, request.uri(), listFiles, cleanUri);
-                return true;
-            } else {
-                throw e;
-            }
-        } catch (IOException e) {
-            throw e;
+        FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, NOT_MODIFIED);
+        setDateAndCacheHeaders(response, entry.lastModified);
+        response.headers().set(NettyHttpConst.ETAG, etag);
+        String lastModified = entry.headers.get(NettyHttpConst.LAST_MODIFIED);
+        if (null != lastModified) {
+            response.headers().set(NettyHttpConst.LAST_MODIFIED, lastModified);
+        }
+        if (entry.compressible) {
+            response.headers().set(NettyHttpConst.VARY, NettyHttpConst.ACCEPT_ENCODING);
+        }
+        if (request.keepAlive()) {
+            response.headers().set(NettyHttpConst.CONNECTION, NettyHttpConst.KEEP_ALIVE);
         }
+        ChannelFuture future = ctx.writeAndFlush(response);
+        if (!request.keepAlive()) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+        return true;
     }
 
-    private boolean isHttp304(ChannelHandlerContext ctx, Request request, long size, long lastModified) {
-        String ifModifiedSince = request.header(NettyHttpConst.IF_MODIFIED_SINCE);
-
-        if (StringKit.isNotEmpty(ifModifiedSince) && httpCacheSeconds > 0) {
-
-            Date ifModifiedSinceDate = format(ifModifiedSince, BladeConst.HTTP_DATE_FORMAT);
-
-            // Only compare up to the second because the datetime format we send to the client
-            // does not have milliseconds
-            long ifModifiedSinceDateSeconds = ifModifiedSinceDate.getTime() / 1000;
-            if (ifModifiedSinceDateSeconds == lastModified / 1000) {
-
-                FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, NOT_MODIFIED);
-
-                String contentType = MimeTypeKit.parse(request.uri());
-                if (null != contentType) {
-                    response.headers().set(NettyHttpConst.CONTENT_TYPE, contentType);
-                }
-
-                response.headers().set(NettyHttpConst.DATE, DateKit.gmtDate());
-                response.headers().set(NettyHttpConst.CONTENT_LENGTH, size);
-                if (request.keepAlive()) {
-                    response.headers().set(NettyHttpConst.CONNECTION, NettyHttpConst.KEEP_ALIVE);
-                }
-                // Close the connection as soon as the error message is sent.
-                ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
-                return true;
-            }
+    /**
+     * Compared in seconds because the dates sent to the client do not have milliseconds
+     */
+    private boolean notModifiedSince(String ifModifiedSince, long lastModified) {
+        try {
+            return lastModified / 1000 <= format(ifModifiedSince, BladeConst.HTTP_DATE_FORMAT).getTime() / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
         }
-        return false;
     }
 
     public Date format(String date, String pattern) {
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern(pattern, Locale.US);
+        DateTimeFormatter fmt = FORMATTERS.computeIfAbsent(pattern, p -> DateTimeFormatter.ofPattern(p, Locale.US));
         LocalDateTime formatted = LocalDateTime.parse(date, fmt);
         Instant instant = formatted.atZone(ZoneId.systemDefault()).toInstant();
         return Date.from(instant);
@@ -340,18 +894,16 @@ public class StaticFileHandler implements RequestHandler {
     /**
      * Sets the Date and Cache headers for the HTTP Response
      *
-     * @param response    HTTP response
-     * @param fileToCache file to extract content type
+     * @param response     HTTP response
+     * @param lastModified modified time of the file, -1 when unknown
      */
-    private void setDateAndCacheHeaders(HttpResponse response, File fileToCache) {
+    private void setDateAndCacheHeaders(HttpResponse response, long lastModified) {
         response.headers().set(NettyHttpConst.DATE, DateKit.gmtDate());
         // Add cache headers
         if (httpCacheSeconds > 0) {
             response.headers().set(NettyHttpConst.EXPIRES, DateKit.gmtDate(LocalDateTime.now().plusSeconds(httpCacheSeconds)));
-            response.headers().set(NettyHttpConst.CACHE_CONTROL, "private, max-age=" + httpCacheSeconds);
-            if (null != fileToCache) {
-                response.headers().set(NettyHttpConst.LAST_MODIFIED, DateKit.gmtDate(new Date(fileToCache.lastModified())));
-            } else {
+            response.headers().set(NettyHttpConst.CACHE_CONTROL, cacheControl);
+            if (lastModified < 0) {
                 response.headers().set(NettyHttpConst.LAST_MODIFIED, DateKit.gmtDate(LocalDateTime.now().plusDays(-1)));
             }
         }
@@ -511,22 +1063,4 @@ public class StaticFileHandler implements RequestHandler {
         return path.replace("//", "/");
     }
 
-    /**
-     * Sets the content type header for the HTTP Response
-     *
-     * @param response HTTP response
-     * @param file     file to extract content type
-     */
-    private static void setContentTypeHeader(HttpResponse response, File file) {
-        String contentType = MimeTypeKit.parse(file.getName());
-        if (null == contentType) {
-            contentType = URLConnection.guessContentTypeFromName(file.getName());
-        }
-        response.headers().set(NettyHttpConst.CONTENT_TYPE, contentType);
-    }
-
-    private void setGzip(HttpResponse response) {
-        response.headers().set(NettyHttpConst.CONTENT_ENCODING, "gzip");
-    }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.server;
+
+import com.hellokaton.blade.Blade;
+import com.hellokaton.blade.kit.PathKit;
+import com.hellokaton.blade.kit.StringKit;
+import com.hellokaton.blade.kit.UUID;
+import com.hellokaton.blade.mvc.WebContext;
+import com.hellokaton.blade.mvc.http.HttpMethod;
+import com.hellokaton.blade.mvc.http.Request;
+import com.hellokaton.blade.mvc.route.Route;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hellokaton.blade.kit.BladeKit.getStartedSymbol;
+import static com.hellokaton.blade.mvc.BladeConst.*;
+
+/**
+ * Send synthetic requests to the registered routes through an in-memory channel
+ * before the server is bound, until JIT compilation settles or the time budget is spent.
+ * <p>
+ * Only routes of {@value com.hellokaton.blade.mvc.BladeConst#ENV_KEY_WARMUP_METHODS} are
+ * requested, path variables are filled with {@code 1}. Warm-up requests are not logged and
+ * their sessions are not stored, handlers with other side effects check {@link Request#isWarmUp()}.
+ * A route answering with a server error, slowly or not in time is not requested again.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+@Slf4j
+public class WarmUp {
+
+    public static final String HEADER = "X-Blade-Warmup";
+
+    // a client can not mark its requests as warm-up without knowing it
+    private static final String TOKEN = UUID.UU64();
+
+    private static final long BATCH_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final long QUIET_COMPILATION_MS = 5;
+    private static final int QUIET_BATCHES = 3;
+    private static final long RESPONSE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // a route this slow once warm waits on something else than the cpu
+    private static final long SLOW_RESPONSE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final HttpServerInitializer initializer;
+    private final List<Target> targets;
+    private final long timeoutMs;
+
+    private long requests;
+    private int batches;
+
+    private static class Target {
+
+        private final String name;
+        private final ByteBuf request;
+        private int sent;
+
+        Target(String method, String uri) {
+            this.name = method + " " + uri;
+            this.request = Unpooled.unreleasableBuffer(Unpooled.copiedBuffer(method + " " + uri + " HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "Content-Length: 0\r\n" +
+                    HEADER + ": " + TOKEN + "\r\n\r\n", CharsetUtil.US_ASCII));
+        }
+
+    }
+
+    WarmUp(Blade blade, HttpServerInitializer initializer) {
+        this.initializer = initializer;
+        this.timeoutMs = blade.environment().getLong(ENV_KEY_WARMUP_TIMEOUT, 10_000L);
+
+        Set<String> methods = Arrays.stream(blade.environment().get(ENV_KEY_WARMUP_METHODS, "GET").split(","))
+                .map(String::trim).map(String::toUpperCase).collect(Collectors.toSet());
+        Set<String> excludes = Arrays.stream(blade.environment().get(ENV_KEY_WARMUP_EXCLUDES, "").split(","))
+                .map(String::trim).filter(StringKit::isNotBlank).collect(Collectors.toSet());
+        String contextPath = WebContext.contextPath();
+        String prefix = null == contextPath || "/".equals(contextPath) ? "" : PathKit.fixPath(contextPath);
+
+        this.targets = blade.routeMatcher().getRoutes().values().stream()
+                .filter(route -> !excludes.contains(route.getPath()))
+                .map(route -> {
+                    String method = HttpMethod.ALL.equals(route.getHttpMethod()) ? "GET" : route.getHttpMethod().name();
+                    return methods.contains(method) ? new Target(method, prefix + uri(route)) : null;
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Whether the request was sent by the warm-up of this server
+     */
+    public static boolean isWarmUp(Request request) {
+        return TOKEN.equals(request.header(HEADER));
+    }
+
+    /**
+     * Request path of a route, path variables and wildcards are filled with a value
+     */
+    private static String uri(Route route) {
+        String path = PathKit.VAR_REGEXP_PATTERN.matcher(route.getPath()).replaceAll("1");
+        return path.replace(".*", "1").replace("*", "1");
+    }
+
+    void run() {
+        if (targets.isEmpty()) {
+            log.info("{}Warm-up skipped, no route to request", getStartedSymbol());
+            return;
+        }
+        CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+        boolean monitored = null != compilation && compilation.isCompilationTimeMonitoringSupported();
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        long compiledMs = monitored ? compilation.getTotalCompilationTime() : 0;
+        int quiet = 0;
+        while (System.nanoTime() < deadline && !targets.isEmpty() && quiet < QUIET_BATCHES) {
+            long batchEnd = Math.min(deadline, System.nanoTime() + BATCH_NANOS);
+            while (System.nanoTime() < batchEnd && !targets.isEmpty()) {
+                targets.removeIf(target -> !this.send(target));
+            }
+            batches++;
+            if (monitored) {
+                long total = compilation.getTotalCompilationTime();
+                quiet = total - compiledMs <= QUIET_COMPILATION_MS ? quiet + 1 : 0;
+                compiledMs = total;
+            }
+        }
+        log.info("{}Warm-up finished, requests: {}, batches: {}, settled: {}, time elapsed: {} ms",
+                getStartedSymbol(), requests, batches, quiet >= QUIET_BATCHES,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Send one request on a new connection
+     *
+     * @return whether the route can be requested again
+     */
+    private boolean send(Target target) {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        initializer.initWarmUpChannel(channel);
+        try {
+            long start = System.nanoTime();
+            channel.writeInbound(target.request.duplicate());
+            requests++;
+            target.sent++;
+            long timeout = start + RESPONSE_TIMEOUT_NANOS;
+            Object msg;
+            // async routes answer on another thread
+            while (null == (msg = channel.readOutbound())) {
+                if (System.nanoTime() > timeout) {
+                    log.debug("Warm-up {} not answered in time, skip it", target.name);
+                    return false;
+                }
+                Thread.yield();
+                channel.runPendingTasks();
+            }
+            int status = msg instanceof ByteBuf ? status((ByteBuf) msg) : 200;
+            ReferenceCountUtil.release(msg);
+            if (status >= 500) {
+                log.debug("Warm-up {} answered {}, skip it", target.name, status);
+                return false;
+            }
+            if (target.sent > 1 && System.nanoTime() - start > SLOW_RESPONSE_NANOS) {
+                log.debug("Warm-up {} answered slowly, skip it", target.name);
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            log.debug("Warm-up {} error, skip it", target.name, e);
+            return false;
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    /**
+     * Status code of an encoded response, e.g. "HTTP/1.1 200 OK"
+     */
+    private static int status(ByteBuf buf) {
+        int index = buf.readerIndex() + 9;
+        if (buf.readableBytes() < 12) {
+            return 200;
+        }
+        return (buf.getByte(index) - '0') * 100 + (buf.getByte(index + 1) - '0') * 10 + buf.getByte(index + 2) - '0';
+    }
+
+}
@@ -15,12 +15,18 @@
  */
 package com.hellokaton.blade.server.decode;
 
+import com.hellokaton.blade.mvc.http.BodyStream;
 import com.hellokaton.blade.mvc.http.HttpRequest;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.LastHttpContent;
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.channels.ClosedChannelException;
+
 /**
  * Decode FullHttpRequest as HttpRequest
  *
@@ -28,13 +34,40 @@ import lombok.extern.slf4j.Slf4j;
  * 2022/5/3
  */
 @Slf4j
-public class FullHttpRequestDecode extends SimpleChannelInboundHandler<FullHttpRequest> {
+public class FullHttpRequestDecode extends SimpleChannelInboundHandler<HttpObject> {
+
+    /**
+     * Body of the streaming request being received, null when the request is aggregated
+     */
+    private BodyStream bodyStream;
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, HttpObject msg) {
+        if (msg instanceof FullHttpRequest) {
+            HttpRequest httpRequest = new HttpRequest();
+            httpRequest.init(ctx.channel().remoteAddress(), (FullHttpRequest) msg);
+            ctx.fireChannelRead(httpRequest);
+        } else if (msg instanceof io.netty.handler.codec.http.HttpRequest) {
+            // the aggregator let it through, the route receives the body as a stream
+            this.bodyStream = new BodyStream(ctx.channel());
+            HttpRequest httpRequest = new HttpRequest();
+            httpRequest.init(ctx.channel().remoteAddress(), (io.netty.handler.codec.http.HttpRequest) msg, bodyStream);
+            ctx.fireChannelRead(httpRequest);
+        } else if (msg instanceof HttpContent && null != this.bodyStream) {
+            this.bodyStream.offer((HttpContent) msg);
+            if (msg instanceof LastHttpContent) {
+                this.bodyStream = null;
+            }
+        }
+    }
 
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest fullHttpRequest) {
-        HttpRequest httpRequest = new HttpRequest();
-        httpRequest.init(ctx.channel().remoteAddress().toString(), fullHttpRequest);
-        ctx.fireChannelRead(httpRequest);
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (null != this.bodyStream) {
+            this.bodyStream.fail(new ClosedChannelException());
+            this.bodyStream = null;
+        }
+        super.channelInactive(ctx);
     }
 
 }
\ No newline at end of file
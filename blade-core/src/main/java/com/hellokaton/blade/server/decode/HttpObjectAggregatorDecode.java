@@ -1,5 +1,9 @@
 package com.hellokaton.blade.server.decode;
 
+import com.hellokaton.blade.kit.PathKit;
+import com.hellokaton.blade.mvc.WebContext;
+import com.hellokaton.blade.mvc.route.RouteMatch;
+import com.hellokaton.blade.mvc.route.RouteMatcher;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
@@ -28,8 +32,48 @@ public class HttpObjectAggregatorDecode extends HttpObjectAggregator {
         TOO_LARGE_CLOSE.headers().set(CONNECTION, HttpHeaderValues.CLOSE);
     }
 
+    private final RouteMatcher routeMatcher;
+
     public HttpObjectAggregatorDecode(int maxContentLength) {
+        this(maxContentLength, null);
+    }
+
+    public HttpObjectAggregatorDecode(int maxContentLength, RouteMatcher routeMatcher) {
         super(maxContentLength);
+        this.routeMatcher = routeMatcher;
+    }
+
+    @Override
+    public boolean acceptInboundMessage(Object msg) throws Exception {
+        if (msg instanceof HttpRequest && !(msg instanceof FullHttpMessage) && isStreaming((HttpRequest) msg)) {
+            // pass the request and its content through, they are decoded as a body stream
+            return false;
+        }
+        return super.acceptInboundMessage(msg);
+    }
+
+    private boolean isStreaming(HttpRequest request) {
+        if (null == routeMatcher || !routeMatcher.hasStreamingRoute()) {
+            return false;
+        }
+        if (!HttpUtil.isTransferEncodingChunked(request) && HttpUtil.getContentLength(request, 0L) == 0L) {
+            return false;
+        }
+        String uri = request.uri();
+        int pathEndPos = uri.indexOf('?');
+        if (pathEndPos >= 0) {
+            uri = uri.substring(0, pathEndPos);
+        }
+        String contextPath = WebContext.contextPath();
+        if (!"/".equals(contextPath)) {
+            uri = PathKit.cleanPath(uri.replaceFirst(contextPath, "/"));
+        }
+        try {
+            RouteMatch match = routeMatcher.matchRoute(request.method().name(), PathKit.normalizePath(uri));
+            return null != match && match.getRoute().isStreaming();
+        } catch (Exception e) {
+            return false;
+        }
     }
 
     @Override
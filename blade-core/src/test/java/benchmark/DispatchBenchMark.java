@@ -0,0 +1,96 @@
+package benchmark;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.EventLoop;
+import org.junit.AfterClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compare the per request cost of the old CompletableFuture dispatch chain
+ * against running every stage directly in a single event loop task.
+ *
+ * @author hellokaton
+ * @date 2022/6/1
+ */
+@BenchmarkOptions(warmupRounds = 10, benchmarkRounds = 200)
+public class DispatchBenchMark {
+
+    private static final int REQUESTS = 10000;
+
+    private static final EventLoop EVENT_LOOP = new DefaultEventLoop();
+
+    @Rule
+    public TestRule benchmarkRun = new BenchmarkRule();
+
+    private final AtomicLong blackHole = new AtomicLong();
+
+    @AfterClass
+    public static void shutdown() {
+        EVENT_LOOP.shutdownGracefully();
+    }
+
+    @Test
+    public void asyncChain() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        EVENT_LOOP.execute(() -> {
+            for (int i = 0; i < REQUESTS; i++) {
+                boolean last = i == REQUESTS - 1;
+                CompletableFuture<Integer> future = CompletableFuture.completedFuture(i);
+                future.thenApplyAsync(this::buildContext, EVENT_LOOP)
+                        .thenApplyAsync(this::execute, EVENT_LOOP)
+                        .thenApplyAsync(this::encode, EVENT_LOOP)
+                        .exceptionally(e -> -1L)
+                        .thenAcceptAsync(msg -> {
+                            write(msg);
+                            if (last) {
+                                done.complete(null);
+                            }
+                        }, EVENT_LOOP);
+            }
+        });
+        done.join();
+    }
+
+    @Test
+    public void directDispatch() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        EVENT_LOOP.execute(() -> {
+            for (int i = 0; i < REQUESTS; i++) {
+                long msg;
+                try {
+                    msg = encode(execute(buildContext(i)));
+                } catch (Exception e) {
+                    msg = -1L;
+                }
+                write(msg);
+            }
+            done.complete(null);
+        });
+        done.join();
+    }
+
+    private long[] buildContext(int request) {
+        return new long[]{request};
+    }
+
+    private long[] execute(long[] context) {
+        context[0] = context[0] * 31 + 7;
+        return context;
+    }
+
+    private long encode(long[] context) {
+        return context[0] ^ 0x5DEECE66DL;
+    }
+
+    private void write(long msg) {
+        blackHole.addAndGet(msg);
+    }
+
+}
@@ -0,0 +1,75 @@
+package benchmark;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+import com.hellokaton.blade.asm.MethodAccess;
+import com.hellokaton.blade.kit.BladeCache;
+import com.hellokaton.blade.mvc.handler.MethodInvoker;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.lang.reflect.Method;
+
+/**
+ * Compare the name based MethodAccess call used to invoke route methods
+ * against the invoker bound to the method once.
+ *
+ * @author hellokaton
+ * @date 2022/6/3
+ */
+@BenchmarkOptions(warmupRounds = 10, benchmarkRounds = 200)
+public class MethodInvokerBenchMark {
+
+    private static final int CALLS = 100000;
+
+    public static class UserController {
+        private long hits;
+
+        public String find(Long id, Integer limit, String name) {
+            hits += id + limit;
+            return name;
+        }
+    }
+
+    private static final UserController CONTROLLER = new UserController();
+    private static final Method METHOD;
+    private static final MethodInvoker INVOKER;
+
+    static {
+        try {
+            METHOD = UserController.class.getMethod("find", Long.class, Integer.class, String.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+        INVOKER = MethodInvoker.of(METHOD);
+    }
+
+    @Rule
+    public TestRule benchmarkRun = new BenchmarkRule();
+
+    private final Object[] args = {1L, 10, "blade"};
+
+    @Test
+    public void methodAccess() {
+        for (int i = 0; i < CALLS; i++) {
+            MethodAccess methodAccess = BladeCache.getMethodAccess(CONTROLLER.getClass());
+            methodAccess.invoke(CONTROLLER, METHOD.getName(), args);
+        }
+    }
+
+    @Test
+    public void methodInvoker() throws Exception {
+        for (int i = 0; i < CALLS; i++) {
+            INVOKER.invoke(CONTROLLER, args);
+        }
+    }
+
+    @Test
+    public void reflection() throws Exception {
+        for (int i = 0; i < CALLS; i++) {
+            METHOD.invoke(CONTROLLER, args);
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package benchmark;
 
+import com.hellokaton.blade.mvc.http.HttpMethod;
 import com.hellokaton.blade.mvc.route.DynamicMapping;
 import com.hellokaton.blade.mvc.route.Route;
 import com.hellokaton.blade.mvc.route.mapping.dynamic.RegexMapping;
@@ -15,6 +16,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 
 /**
  * @author: dqyuan
@@ -26,9 +28,15 @@ public class UrlRouterBenchMark {
     @Rule
     public TestRule benchmarkRun = new BenchmarkRule();
 
+    private static final int LARGE_TABLE_ROUTES = 10000;
+    private static final int LARGE_TABLE_LOOP = 100;
+
     private static TrieMapping trieMapping = new TrieMapping();
     private static RegexMapping regexMapping = new RegexMapping();
 
+    private static TrieMapping largeTrieMapping = new TrieMapping();
+    private static RegexMapping largeRegexMapping = new RegexMapping();
+
     @BeforeClass
     public static void prepare() throws Exception {
         Path routes = Paths.get(UrlRouterBenchMark.class.getResource("routes").toURI());
@@ -46,6 +54,23 @@ public class UrlRouterBenchMark {
 
         trieMapping.register();
         regexMapping.register();
+
+        // 10k routes spread over resources, versions and methods
+        for (int i = 0; i < LARGE_TABLE_ROUTES / 4; i++) {
+            addLargeRoute(HttpMethod.GET, "/api/v" + (i % 8) + "/resource" + i + "/:id", "id");
+            addLargeRoute(HttpMethod.POST, "/api/v" + (i % 8) + "/resource" + i + "/:id/items/:itemId", "id", "itemId");
+            addLargeRoute(HttpMethod.GET, "/files" + i + "/*");
+            addLargeRoute(HttpMethod.ALL, "/tenant" + i + "/:tenant/orders/:order", "tenant", "order");
+        }
+        largeTrieMapping.register();
+        largeRegexMapping.register();
+    }
+
+    private static void addLargeRoute(HttpMethod httpMethod, String originalPath, String... variables) {
+        String path = originalPath.replace("/*", "/.*");
+        Route route = new Route(httpMethod, originalPath, path, null, null, null, null);
+        largeTrieMapping.addRoute(httpMethod, route, Arrays.asList(variables));
+        largeRegexMapping.addRoute(httpMethod, route, Arrays.asList(variables));
     }
 
     @Test
@@ -70,9 +95,37 @@ public class UrlRouterBenchMark {
     }
 
 
+    @Test
+    @BenchmarkOptions(warmupRounds = 5, benchmarkRounds = 50)
+    public void regexLargeTableHit() {
+        runTest("POST", largeRegexMapping, "/api/v3/resource9995/42/items/7", LARGE_TABLE_LOOP);
+    }
+
+    @Test
+    @BenchmarkOptions(warmupRounds = 5, benchmarkRounds = 50)
+    public void trieLargeTableHit() {
+        runTest("POST", largeTrieMapping, "/api/v3/resource9995/42/items/7", LARGE_TABLE_LOOP);
+    }
+
+    @Test
+    @BenchmarkOptions(warmupRounds = 5, benchmarkRounds = 50)
+    public void regexLargeTableMiss() {
+        runTest("GET", largeRegexMapping, "/api/v3/resource9995/42/missing", LARGE_TABLE_LOOP);
+    }
+
+    @Test
+    @BenchmarkOptions(warmupRounds = 5, benchmarkRounds = 50)
+    public void trieLargeTableMiss() {
+        runTest("GET", largeTrieMapping, "/api/v3/resource9995/42/missing", LARGE_TABLE_LOOP);
+    }
+
     private void runTest(String method, DynamicMapping dynamicMapping,
                          String url) {
-        final int loop = 10000;
+        runTest(method, dynamicMapping, url, 10000);
+    }
+
+    private void runTest(String method, DynamicMapping dynamicMapping,
+                         String url, int loop) {
         for (int i = 0; i < loop; i++) {
             Route route = dynamicMapping.findRoute(method, url);
             // route to black hole, prevent route from being optimized
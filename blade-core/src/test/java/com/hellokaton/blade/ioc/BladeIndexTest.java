@@ -0,0 +1,73 @@
+package com.hellokaton.blade.ioc;
+
+import com.hellokaton.blade.ioc.annotation.Bean;
+import com.hellokaton.blade.ioc.bean.ClassInfo;
+import com.hellokaton.blade.ioc.index.IndexedOnly;
+import com.hellokaton.blade.ioc.index.ScannedService;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author hellokaton
+ * @date 2022/6/12
+ */
+public class BladeIndexTest {
+
+    private static final String PACKAGE = "com.hellokaton.blade.ioc.index";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testIndexOfAnotherRoot() throws Exception {
+        // e.g. a dependency jar indexed under the package scanned by the app
+        File root = indexedRoot(true);
+        Set<Class<?>> classes = findClasses(root);
+        assertTrue(classes.contains(IndexedOnly.class));
+        // the app classes have no index and are still scanned
+        assertTrue(classes.contains(ScannedService.class));
+    }
+
+    @Test
+    public void testUnstampedIndex() throws Exception {
+        // not written by the processor, the directory is scanned
+        File root = indexedRoot(false);
+
+        Set<Class<?>> classes = findClasses(root);
+        assertFalse(classes.contains(IndexedOnly.class));
+        assertTrue(classes.contains(ScannedService.class));
+    }
+
+    private File indexedRoot(boolean stamped) throws Exception {
+        File root = folder.newFolder();
+        assertTrue(new File(root, PACKAGE.replace('.', '/')).mkdirs());
+        File index = new File(root, BladeIndex.INDEX_LOCATION);
+        assertTrue(index.getParentFile().mkdirs());
+        String stamp = stamped ? "# stamp " + System.currentTimeMillis() + "\n" : "";
+        Files.write(index.toPath(), (stamp + "bean\t" + IndexedOnly.class.getName() + "\n").getBytes(StandardCharsets.UTF_8));
+        return root;
+    }
+
+    private Set<Class<?>> findClasses(File root) throws Exception {
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{root.toURI().toURL()}, getClass().getClassLoader())) {
+            BladeIndex index = BladeIndex.load(classLoader);
+            assertNotNull(index);
+            return index.findClasses(PACKAGE, Collections.singleton(Bean.class))
+                    .map(ClassInfo::getClazz)
+                    .collect(Collectors.toSet());
+        }
+    }
+
+}
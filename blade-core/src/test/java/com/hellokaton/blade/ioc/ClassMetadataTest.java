@@ -0,0 +1,65 @@
+package com.hellokaton.blade.ioc;
+
+import com.hellokaton.blade.annotation.Path;
+import com.hellokaton.blade.ioc.reader.ClassMetadata;
+import com.hellokaton.blade.types.controller.IndexController;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author hellokaton
+ * @date 2022/6/12
+ */
+public class ClassMetadataTest {
+
+    @Test
+    public void testRead() throws IOException {
+        ClassMetadata metadata = ClassMetadata.read(new ByteArrayInputStream(classFile(IndexController.class)));
+        assertNotNull(metadata);
+        assertEquals(IndexController.class.getName(), metadata.getClassName());
+        assertTrue(metadata.hasAnnotation(Path.class));
+    }
+
+    @Test
+    public void testReadNewerVersion() throws IOException {
+        byte[] bytes = classFile(IndexController.class);
+        bytes[6] = 0;
+        bytes[7] = 61;
+        ClassMetadata metadata = ClassMetadata.read(new ByteArrayInputStream(bytes));
+        assertNotNull(metadata);
+        assertTrue(metadata.hasAnnotation(Path.class));
+    }
+
+    @Test
+    public void testReadCorrupt() throws IOException {
+        byte[] bytes = classFile(IndexController.class);
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length / 3);
+        assertNull(ClassMetadata.read(new ByteArrayInputStream(truncated)));
+
+        // the constant pool is intact, the class name points past it
+        int header = new ClassReader(bytes).header;
+        bytes[header + 2] = (byte) 0xFF;
+        bytes[header + 3] = (byte) 0xFF;
+        assertNull(ClassMetadata.read(new ByteArrayInputStream(bytes)));
+    }
+
+    private static byte[] classFile(Class<?> type) throws IOException {
+        String name = type.getName().replace('.', '/') + ".class";
+        try (InputStream in = type.getClassLoader().getResourceAsStream(name)) {
+            byte[] buffer = new byte[8192];
+            int length = 0;
+            for (int n; (n = in.read(buffer, length, buffer.length - length)) > 0; ) {
+                length += n;
+            }
+            return Arrays.copyOf(buffer, length);
+        }
+    }
+
+}
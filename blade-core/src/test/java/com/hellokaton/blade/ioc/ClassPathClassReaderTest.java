@@ -4,13 +4,18 @@ import com.hellokaton.blade.ioc.bean.ClassInfo;
 import com.hellokaton.blade.ioc.bean.Scanner;
 import com.hellokaton.blade.ioc.reader.ClassPathClassReader;
 import com.hellokaton.blade.annotation.Path;
+import com.hellokaton.blade.ioc.annotation.Bean;
 import com.hellokaton.blade.types.controller.IndexController;
 import com.hellokaton.blade.types.controller.UserService;
+import com.hellokaton.blade.types.scan.ScanBean;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  * @author biezhi
@@ -43,4 +48,15 @@ public class ClassPathClassReaderTest {
 
     }
 
+    @Test
+    public void testReadAnnotatedOnly() {
+        String packageName = "com.hellokaton.blade.types.scan";
+        Set<ClassInfo> classInfos = DynamicContext.recursionFindClasses(packageName,
+                Collections.singleton(Bean.class)).collect(Collectors.toSet());
+
+        assertEquals(1, classInfos.size());
+        assertEquals(ScanBean.class, classInfos.iterator().next().getClazz());
+        assertNull(System.getProperty("blade.test.scan-untouched"));
+    }
+
 }
@@ -1,8 +1,69 @@
 package com.hellokaton.blade.ioc;
 
+import com.hellokaton.blade.Environment;
+import com.hellokaton.blade.types.ioc.CounterService;
+import com.hellokaton.blade.types.ioc.LazyPingService;
+import com.hellokaton.blade.types.ioc.LazyPongService;
+import com.hellokaton.blade.types.ioc.LazyReportService;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
 /**
  * @author biezhi
  * @date 2017/9/18
  */
 public class IocTest {
+
+    @Test
+    public void testLazyBean() {
+        CounterService.CREATED.set(0);
+        LazyReportService.CREATED.set(0);
+
+        Ioc ioc = new SimpleIoc();
+        ioc.defineBean(CounterService.class);
+        ioc.defineBean(LazyReportService.class);
+        assertEquals(0, CounterService.CREATED.get());
+        assertFalse(ioc.getBeanDefine(CounterService.class).isCreated());
+
+        ioc.initBeans(Environment.empty().set("app.counter.name", "blade").set("app.ioc.parallelism", 4));
+        assertEquals(1, CounterService.CREATED.get());
+        assertEquals(0, LazyReportService.CREATED.get());
+        assertEquals("blade", ioc.getBean(CounterService.class).getName());
+        assertTrue(ioc.getBeanDefine(CounterService.class).getCreateNanos() > 0);
+
+        LazyReportService report = ioc.getBean(LazyReportService.class);
+        assertSame(report, ioc.getBean(LazyReportService.class));
+        assertEquals(1, LazyReportService.CREATED.get());
+        assertSame(ioc.getBean(CounterService.class), report.getCounterService());
+    }
+
+    @Test(timeout = 5000)
+    public void testConcurrentLazyCycle() throws Exception {
+        Ioc ioc = new SimpleIoc();
+        ioc.defineBean(LazyPingService.class);
+        ioc.defineBean(LazyPongService.class);
+        ioc.initBeans(Environment.empty());
+
+        // each thread touches a different bean of the cycle first
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        try {
+            Future<LazyPingService> ping = executor.submit(() -> {
+                barrier.await();
+                return ioc.getBean(LazyPingService.class);
+            });
+            Future<LazyPongService> pong = executor.submit(() -> {
+                barrier.await();
+                return ioc.getBean(LazyPongService.class);
+            });
+            assertSame(pong.get(), ping.get().getPongService());
+            assertSame(ping.get(), pong.get().getPingService());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
 }
@@ -19,6 +19,13 @@ public class JarReaderTest {
         JarReaderImpl  jarReader  = new JarReaderImpl();
         Set<ClassInfo> classInfos = jarReader.readClasses(Scanner.builder().packageName("org.slf4j.impl").build());
         Assert.assertNotNull(classInfos);
+
+        classInfos = jarReader.readClasses(Scanner.builder().packageName("org.slf4j").recursive(true).build());
+        Assert.assertTrue(classInfos.stream().anyMatch(classInfo -> classInfo.getClazz() == org.slf4j.spi.LocationAwareLogger.class));
+
+        classInfos = jarReader.readClasses(Scanner.builder().packageName("org.slf4j.helpers").parent(org.slf4j.Logger.class).build());
+        Assert.assertTrue(classInfos.stream().anyMatch(classInfo -> classInfo.getClazz() == org.slf4j.helpers.MarkerIgnoringBase.class));
+        Assert.assertTrue(classInfos.stream().noneMatch(classInfo -> classInfo.getClazz() == org.slf4j.helpers.MessageFormatter.class));
     }
 
 }
@@ -0,0 +1,10 @@
+package com.hellokaton.blade.ioc.index;
+
+/**
+ * Not annotated, only found through a blade index
+ *
+ * @author hellokaton
+ * @date 2022/6/12
+ */
+public class IndexedOnly {
+}
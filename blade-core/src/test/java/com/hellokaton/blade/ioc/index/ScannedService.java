@@ -0,0 +1,11 @@
+package com.hellokaton.blade.ioc.index;
+
+import com.hellokaton.blade.ioc.annotation.Bean;
+
+/**
+ * @author hellokaton
+ * @date 2022/6/12
+ */
+@Bean
+public class ScannedService {
+}
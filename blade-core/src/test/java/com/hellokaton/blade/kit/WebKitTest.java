@@ -0,0 +1,25 @@
+package com.hellokaton.blade.kit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author hellokaton
+ * @date 2022/6/12
+ */
+public class WebKitTest {
+
+    @Test
+    public void testAcceptQuality() {
+        assertEquals(1, WebKit.acceptQuality("gzip, deflate, br", "gzip"), 0);
+        assertEquals(1, WebKit.acceptQuality("gzip, deflate, br", "br"), 0);
+        assertEquals(0, WebKit.acceptQuality("gzip;q=0, br", "gzip"), 0);
+        assertEquals(0.5f, WebKit.acceptQuality("br;q=1.0, gzip; q=0.5", "gzip"), 0);
+        assertEquals(0.2f, WebKit.acceptQuality("br, *;q=0.2", "gzip"), 0);
+        assertEquals(0, WebKit.acceptQuality("deflate", "gzip"), 0);
+        assertEquals(0, WebKit.acceptQuality("x-gzip", "gzip"), 0);
+        assertEquals(0, WebKit.acceptQuality(null, "gzip"), 0);
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.hellokaton.blade.mvc;
+
+import com.hellokaton.blade.mvc.http.BodyStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+/**
+ * BodyStream TestCase
+ *
+ * @author hellokaton
+ * 2022/6/2
+ */
+public class BodyStreamTest {
+
+    private HttpContent chunk(String text) {
+        return new DefaultHttpContent(Unpooled.copiedBuffer(text, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testBufferUntilConsumed() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        BodyStream stream = new BodyStream(channel);
+
+        HttpContent first = chunk("hello ");
+        stream.offer(first);
+        first.release();
+        assertFalse(channel.config().isAutoRead());
+
+        StringBuilder body = new StringBuilder();
+        CompletableFuture<Void> done = stream.onData(buf -> body.append(buf.toString(StandardCharsets.UTF_8)));
+        assertTrue(channel.config().isAutoRead());
+        assertEquals(0, first.refCnt());
+
+        stream.pause();
+        stream.offer(chunk("blade"));
+        assertFalse(channel.config().isAutoRead());
+        assertEquals("hello ", body.toString());
+
+        stream.resume();
+        stream.offer(new DefaultLastHttpContent());
+        assertTrue(done.isDone());
+        assertEquals("hello blade", body.toString());
+        assertEquals(11, stream.received());
+        assertTrue(channel.config().isAutoRead());
+    }
+
+    @Test
+    public void testDiscard() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        BodyStream stream = new BodyStream(channel);
+
+        HttpContent content = chunk("unused");
+        ByteBuf buf = content.content();
+        stream.offer(content);
+        content.release();
+        assertEquals(1, buf.refCnt());
+
+        stream.discard();
+        assertEquals(0, buf.refCnt());
+        assertTrue(channel.config().isAutoRead());
+        assertTrue(stream.onData(b -> fail()).isCompletedExceptionally());
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.hellokaton.blade.mvc;
+
+import com.hellokaton.blade.exception.InternalErrorException;
+import com.hellokaton.blade.mvc.http.CookieSession;
+import com.hellokaton.blade.mvc.http.session.CookieSessionCodec;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author hellokaton
+ * @date 2022/6/12
+ */
+public class CookieSessionTest {
+
+    @Test
+    public void testRoundTrip() {
+        CookieSessionCodec codec = new CookieSessionCodec(Collections.singletonList("secret"), false, 4000, CookieSession.class);
+        CookieSession session = newSession();
+        session.attribute("user", "jack");
+        session.attribute("age", 20);
+        session.attribute("vip", true);
+        session.attribute("token", new byte[]{1, 2, 3});
+        session.attribute("score", 1.5f);
+
+        CookieSession copy = codec.decode(codec.encode(session));
+        assertNotNull(copy);
+        assertFalse(copy.isChanged());
+        assertEquals(session.id(), copy.id());
+        assertEquals(session.created(), copy.created());
+        assertEquals(session.expired(), copy.expired());
+        assertEquals("jack", copy.attribute("user"));
+        assertEquals(Integer.valueOf(20), copy.attribute("age"));
+        assertEquals(Boolean.TRUE, copy.attribute("vip"));
+        assertArrayEquals(new byte[]{1, 2, 3}, copy.attribute("token"));
+        assertEquals(Float.valueOf(1.5f), copy.attribute("score"));
+
+        copy.removeAttribute("none");
+        assertFalse(copy.isChanged());
+        copy.removeAttribute("vip");
+        assertTrue(copy.isChanged());
+    }
+
+    @Test(expected = InternalErrorException.class)
+    public void testObjectAttribute() {
+        newSession().attribute("roles", new ArrayList<>(Arrays.asList("admin", "dev")));
+    }
+
+    @Test
+    public void testTamper() {
+        CookieSessionCodec codec = new CookieSessionCodec(Collections.singletonList("secret"), false, 4000, CookieSession.class);
+        CookieSession session = newSession();
+        session.attribute("role", "user");
+        String value = codec.encode(session);
+
+        byte[] bytes = Base64.getUrlDecoder().decode(value);
+        bytes[bytes.length / 2] ^= 1;
+        assertNull(codec.decode(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes)));
+        assertNull(codec.decode("not a cookie"));
+        assertNull(codec.decode(""));
+
+        CookieSessionCodec other = new CookieSessionCodec(Collections.singletonList("other"), false, 4000, CookieSession.class);
+        assertNull(other.decode(value));
+    }
+
+    @Test
+    public void testEncrypt() {
+        CookieSessionCodec codec = new CookieSessionCodec(Collections.singletonList("secret"), true, 4000, CookieSession.class);
+        CookieSession session = newSession();
+        session.attribute("user", "jack");
+        String value = codec.encode(session);
+
+        assertFalse(new String(Base64.getUrlDecoder().decode(value)).contains("jack"));
+        assertEquals("jack", codec.decode(value).attribute("user"));
+    }
+
+    @Test
+    public void testRotation() {
+        CookieSessionCodec old = new CookieSessionCodec(Collections.singletonList("old"), false, 4000, CookieSession.class);
+        CookieSessionCodec rotated = new CookieSessionCodec(Arrays.asList("new", "old"), false, 4000, CookieSession.class);
+        CookieSession session = newSession();
+        session.attribute("user", "jack");
+
+        String value = old.encode(session);
+        assertEquals("jack", rotated.decode(value).attribute("user"));
+        assertNull(old.decode(rotated.encode(session)));
+    }
+
+    @Test
+    public void testSizeLimit() {
+        CookieSessionCodec codec = new CookieSessionCodec(Collections.singletonList("secret"), false, 200, CookieSession.class);
+        CookieSession session = newSession();
+        session.attribute("data", new String(new char[300]).replace('\0', 'x'));
+        assertNull(codec.encode(session));
+    }
+
+    private CookieSession newSession() {
+        long now = Instant.now().getEpochSecond();
+        CookieSession session = new CookieSession();
+        session.id("abc");
+        session.created(now);
+        session.expired(now + 3600);
+        return session;
+    }
+
+}
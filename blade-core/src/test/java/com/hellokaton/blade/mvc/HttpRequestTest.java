@@ -1,15 +1,24 @@
 package com.hellokaton.blade.mvc;
 
 import com.hellokaton.blade.BaseTestCase;
+import com.hellokaton.blade.exception.HttpParseException;
 import com.hellokaton.blade.kit.CaseInsensitiveHashMap;
 import com.hellokaton.blade.mvc.http.Cookie;
 import com.hellokaton.blade.mvc.http.HttpMethod;
 import com.hellokaton.blade.mvc.http.HttpRequest;
 import com.hellokaton.blade.mvc.http.Request;
 import com.hellokaton.blade.mvc.multipart.FileItem;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpVersion;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static org.junit.Assert.*;
@@ -343,4 +352,65 @@ public class HttpRequestTest extends BaseTestCase {
 
     }
 
+    @Test
+    public void testFormBody() {
+        mockHttpRequest("POST");
+        ByteBuf content = Unpooled.copiedBuffer("name=blade&tag=a+b&tag=%E4%BD%A0&empty&=skip", StandardCharsets.UTF_8);
+        FullHttpRequest fullHttpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1,
+                io.netty.handler.codec.http.HttpMethod.POST, "/form?page=1", content);
+        fullHttpRequest.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/x-www-form-urlencoded");
+
+        HttpRequest request = new HttpRequest();
+        request.init(new InetSocketAddress("127.0.0.1", 8080), fullHttpRequest);
+        fullHttpRequest.release();
+
+        assertEquals("127.0.0.1:8080", request.remoteAddress());
+        assertEquals(Optional.of("1"), request.query("page"));
+        assertEquals(Optional.of("blade"), request.form("name"));
+        assertEquals(Arrays.asList("a b", "你"), request.formValue("tag"));
+        assertEquals(Optional.of(""), request.form("empty"));
+        assertEquals(3, request.formParams().size());
+        assertEquals(1, content.refCnt());
+
+        request.release();
+        request.release();
+        assertEquals(0, content.refCnt());
+    }
+
+    @Test
+    public void testFormBodySemicolon() {
+        HttpRequest request = formRequest("note=a;b&name=blade");
+
+        assertEquals(Optional.of("a;b"), request.form("note"));
+        assertEquals(Optional.of("blade"), request.form("name"));
+        assertEquals(2, request.formParams().size());
+        request.release();
+    }
+
+    @Test(expected = HttpParseException.class)
+    public void testFormBodyTooManyParams() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i <= 1024; i++) {
+            body.append("p").append(i).append("=1&");
+        }
+        HttpRequest request = formRequest(body.toString());
+        try {
+            request.formParams();
+        } finally {
+            request.release();
+        }
+    }
+
+    private HttpRequest formRequest(String body) {
+        ByteBuf content = Unpooled.copiedBuffer(body, StandardCharsets.UTF_8);
+        FullHttpRequest fullHttpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1,
+                io.netty.handler.codec.http.HttpMethod.POST, "/form", content);
+        fullHttpRequest.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/x-www-form-urlencoded");
+
+        HttpRequest request = new HttpRequest();
+        request.init(new InetSocketAddress("127.0.0.1", 8080), fullHttpRequest);
+        fullHttpRequest.release();
+        return request;
+    }
+
 }
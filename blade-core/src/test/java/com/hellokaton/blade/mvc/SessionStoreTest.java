@@ -0,0 +1,121 @@
+package com.hellokaton.blade.mvc;
+
+import com.hellokaton.blade.mvc.http.HttpSession;
+import com.hellokaton.blade.mvc.http.Session;
+import com.hellokaton.blade.mvc.http.session.LruSessionStore;
+import com.hellokaton.blade.mvc.http.session.MappedSessionStore;
+import com.hellokaton.blade.mvc.http.session.SessionStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author hellokaton
+ * @date 2022/6/11
+ */
+public class SessionStoreTest {
+
+    private Path file;
+
+    @Before
+    public void before() throws Exception {
+        file = Files.createTempDirectory("blade-sessions").resolve("sessions.db");
+    }
+
+    @After
+    public void after() throws Exception {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(file.getParent());
+    }
+
+    @Test
+    public void testLruStore() {
+        SessionStore store = new LruSessionStore(2);
+        store.put(newSession("a"));
+        store.put(newSession("b"));
+        store.get("a");
+        store.put(newSession("c"));
+
+        assertEquals(2, store.size());
+        assertNotNull(store.get("a"));
+        assertNull(store.get("b"));
+        store.remove("a");
+        assertNull(store.get("a"));
+    }
+
+    @Test
+    public void testMappedStore() throws Exception {
+        MappedSessionStore store = new MappedSessionStore(file, 64 * 1024, HttpSession.class);
+        Session session = newSession("a");
+        session.attribute("user", "jack");
+        session.ip("127.0.0.1");
+        store.put(session);
+        store.put(newSession("b"));
+
+        Session copy = store.get("a");
+        assertNotSame(session, copy);
+        assertEquals("jack", copy.attribute("user"));
+        assertEquals("127.0.0.1", copy.ip());
+        assertEquals(session.expired(), copy.expired());
+
+        copy.attribute("age", 20);
+        store.update(copy);
+        store.remove("b");
+        assertEquals(Integer.valueOf(20), store.get("a").attribute("age"));
+
+        // a removed session is not written back
+        Session removed = newSession("b");
+        store.update(removed);
+        assertNull(store.get("b"));
+        store.close();
+
+        store = new MappedSessionStore(file, 64 * 1024, HttpSession.class);
+        assertEquals(1, store.size());
+        assertEquals("jack", store.get("a").attribute("user"));
+        assertEquals(Integer.valueOf(20), store.get("a").attribute("age"));
+        assertNull(store.get("b"));
+        store.close();
+    }
+
+    @Test
+    public void testMappedStoreEviction() throws Exception {
+        MappedSessionStore store = new MappedSessionStore(file, 8192, HttpSession.class);
+        Map<String, String> value = new HashMap<>();
+        value.put("data", new String(new char[200]).replace('\0', 'x'));
+        for (int i = 0; i < 100; i++) {
+            Session session = newSession("s" + i);
+            session.attribute("value", new HashMap<>(value));
+            store.put(session);
+        }
+        assertTrue(store.size() > 0);
+        assertTrue(store.size() < 100);
+        // the latest sessions are kept
+        assertNotNull(store.get("s99"));
+        assertNull(store.get("s0"));
+        int size = store.size();
+        store.close();
+
+        store = new MappedSessionStore(file, 8192, HttpSession.class);
+        assertEquals(size, store.size());
+        assertEquals(value, store.get("s99").attribute("value"));
+        store.close();
+    }
+
+    private Session newSession(String id) {
+        long now = Instant.now().getEpochSecond();
+        HttpSession session = new HttpSession();
+        session.id(id);
+        session.created(now);
+        session.expired(now + 3600);
+        return session;
+    }
+
+}
@@ -1,8 +1,19 @@
 package com.hellokaton.blade.mvc;
 
 import com.hellokaton.blade.BaseTestCase;
+import com.hellokaton.blade.event.EventManager;
+import com.hellokaton.blade.event.EventType;
+import com.hellokaton.blade.mvc.http.HttpSession;
+import com.hellokaton.blade.mvc.http.Session;
+import com.hellokaton.blade.mvc.http.session.LazySession;
+import com.hellokaton.blade.mvc.http.session.MemorySessionStore;
+import com.hellokaton.blade.mvc.http.session.SessionManager;
 import org.junit.Test;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
 /**
  * @author biezhi
  * 2017/6/5
@@ -20,4 +31,86 @@ public class SessionTest extends BaseTestCase {
 //        bodyToString("/");
     }
 
+    @Test
+    public void testCleanExpired() {
+        EventManager eventManager = new EventManager();
+        AtomicInteger destroyed = new AtomicInteger();
+        eventManager.addEventListener(EventType.SESSION_DESTROY, e -> destroyed.incrementAndGet());
+
+        SessionManager sessionManager = new SessionManager(eventManager);
+        Session first = newSession("first", 100);
+        Session second = newSession("second", 100);
+        sessionManager.createSession(first);
+        sessionManager.createSession(second);
+        sessionManager.createSession(newSession("third", 200));
+
+        sessionManager.renewSession(second, 150);
+        sessionManager.cleanExpired(100);
+        assertEquals(3, sessionManager.size());
+
+        sessionManager.cleanExpired(101);
+        assertNull(sessionManager.getSession("first"));
+        assertNotNull(sessionManager.getSession("second"));
+        assertEquals(1, destroyed.get());
+
+        // renewed without the manager, found again when its former bucket is due
+        second.expired(300);
+        sessionManager.cleanExpired(201);
+        assertNotNull(sessionManager.getSession("second"));
+        assertNull(sessionManager.getSession("third"));
+
+        sessionManager.cleanExpired(301);
+        assertEquals(0, sessionManager.size());
+        assertEquals(3, destroyed.get());
+    }
+
+    @Test
+    public void testLazySession() {
+        AtomicInteger created = new AtomicInteger();
+        LazySession session = new LazySession(() -> newSession("s" + created.incrementAndGet(), 100));
+
+        assertNull(session.attribute("user"));
+        assertTrue(session.attributes().isEmpty());
+        session.removeAttribute("user");
+        assertEquals(-1, session.expired());
+        assertFalse(session.isCreated());
+        assertEquals(0, created.get());
+
+        session.attribute("user", "jack");
+        assertTrue(session.isCreated());
+        assertEquals("jack", session.attribute("user"));
+        assertEquals("s1", session.id());
+        assertEquals(100, session.expired());
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void testRenewWrittenOnce() {
+        AtomicInteger updates = new AtomicInteger();
+        SessionManager sessionManager = new SessionManager(new EventManager(), new MemorySessionStore() {
+            @Override
+            public void update(Session session) {
+                updates.incrementAndGet();
+            }
+        });
+        Session session = newSession("renewed", 100);
+        sessionManager.createSession(session);
+
+        // renewed when the request finds it, written back with the response
+        sessionManager.renewSession(session, 200);
+        assertEquals(0, updates.get());
+        sessionManager.updateSession(session);
+        assertEquals(1, updates.get());
+
+        sessionManager.cleanExpired(101);
+        assertSame(session, sessionManager.getSession("renewed"));
+    }
+
+    private Session newSession(String id, long expired) {
+        HttpSession session = new HttpSession();
+        session.id(id);
+        session.expired(expired);
+        return session;
+    }
+
 }
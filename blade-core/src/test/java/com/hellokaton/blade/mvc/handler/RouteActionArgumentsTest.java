@@ -0,0 +1,73 @@
+package com.hellokaton.blade.mvc.handler;
+
+import com.hellokaton.blade.Blade;
+import com.hellokaton.blade.annotation.request.Header;
+import com.hellokaton.blade.annotation.request.PathParam;
+import com.hellokaton.blade.annotation.request.Query;
+import com.hellokaton.blade.mvc.RouteContext;
+import com.hellokaton.blade.mvc.WebContext;
+import com.hellokaton.blade.mvc.http.HttpRequest;
+import com.hellokaton.blade.mvc.http.Request;
+import com.hellokaton.blade.mvc.route.Route;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * RouteActionArguments TestCase
+ *
+ * @author hellokaton
+ * 2022/6/3
+ */
+public class RouteActionArgumentsTest {
+
+    public static class UserController {
+        public void find(@PathParam Long id, @Query(defaultValue = "10") int limit, @Query String name,
+                         @Query(name = "tag") List<Integer> tags, @Header("X-Token") String token,
+                         Request request, RouteContext context) {
+        }
+    }
+
+    @Before
+    public void before() {
+        WebContext.init(Blade.create(), "/");
+    }
+
+    @Test
+    public void testBindingPlan() throws Exception {
+        Method method = UserController.class.getMethod("find", Long.class, int.class, String.class,
+                List.class, String.class, Request.class, RouteContext.class);
+        Route route = new Route(com.hellokaton.blade.mvc.http.HttpMethod.GET, "/users/:id", UserController.class, method);
+
+        FullHttpRequest fullHttpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1,
+                HttpMethod.GET, "/users/7?name=blade&tag=1&tag=2");
+        fullHttpRequest.headers().set("X-Token", "abc");
+        HttpRequest request = new HttpRequest();
+        request.init(new InetSocketAddress("127.0.0.1", 8080), fullHttpRequest);
+        fullHttpRequest.release();
+
+        RouteContext context = new RouteContext(request, null);
+        route.setPathParams(Collections.singletonMap("id", "7"));
+        context.initRoute(route);
+
+        Object[] args = RouteActionArguments.getRouteActionParameters(context);
+        assertArrayEquals(new Object[]{7L, 10, "blade", Arrays.asList(1, 2), "abc", request, context}, args);
+
+        ArgumentResolver[] resolvers = route.getArgumentResolvers();
+        assertEquals(7, resolvers.length);
+        RouteActionArguments.getRouteActionParameters(context);
+        assertSame(resolvers, route.getArgumentResolvers());
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.hellokaton.blade.mvc.route;
 
+import com.hellokaton.blade.kit.PathKit;
 import com.hellokaton.blade.mvc.handler.RouteHandler;
 import com.hellokaton.blade.mvc.http.HttpMethod;
 import org.junit.Assert;
@@ -83,4 +84,68 @@ public class ANYMatcherTest {
 
     }
 
+    @Test
+    public void testHookChain() {
+        routeMatcher.addRoute("/users", ctx -> ctx.text("Ok"), HttpMethod.GET);
+        routeMatcher.addRoute("/users/:id", ctx -> ctx.text("Ok"), HttpMethod.GET);
+        routeMatcher.addRoute("/*", ctx -> ctx.text("Ok"), HttpMethod.BEFORE);
+        routeMatcher.addRoute("/users/1", ctx -> ctx.text("Ok"), HttpMethod.BEFORE);
+        routeMatcher.addRoute("/admin/*", ctx -> ctx.text("Ok"), HttpMethod.BEFORE);
+        routeMatcher.addRoute("/users", ctx -> ctx.text("Ok"), HttpMethod.AFTER);
+
+        routeMatcher.register();
+
+        Route users = routeMatcher.lookupRoute("GET", "/users");
+        Assert.assertFalse(users.getBeforeHooks().isConditional());
+        Assert.assertEquals(1, routeMatcher.getBefore(users, "/users").length);
+        Assert.assertEquals(1, routeMatcher.getAfter(users, "/users").length);
+
+        Route user = routeMatcher.lookupRoute("GET", "/users/1");
+        Assert.assertTrue(user.getBeforeHooks().isConditional());
+        Assert.assertEquals(2, user.getBeforeHooks().size());
+        Assert.assertEquals(2, routeMatcher.getBefore(user, "/users/1").length);
+        Assert.assertEquals(1, routeMatcher.getBefore(user, "/users/2").length);
+        Assert.assertSame(HookChain.EMPTY, user.getAfterHooks());
+        Assert.assertEquals(2, routeMatcher.getBefore("/users/1").size());
+    }
+
+    @Test
+    public void testMatchRoute() {
+        routeMatcher.addRoute("/users", ctx -> ctx.text("Ok"), HttpMethod.GET);
+        routeMatcher.addRoute("/users/:id/posts/:post", ctx -> ctx.text("Ok"), HttpMethod.GET);
+        routeMatcher.register();
+
+        RouteMatch users = routeMatcher.matchRoute("GET", "/users");
+        Assert.assertSame(users, routeMatcher.matchRoute("GET", "/users"));
+        Assert.assertTrue(users.isEmpty());
+
+        RouteMatch post = routeMatcher.matchRoute("GET", "/users/7/posts/9");
+        Assert.assertSame(post.getRoute(), routeMatcher.matchRoute("GET", "/users/8/posts/1").getRoute());
+        Assert.assertEquals("7", post.get("id"));
+        Assert.assertEquals("9", post.get("post"));
+        Assert.assertEquals(2, post.size());
+        Assert.assertNull(routeMatcher.matchRoute("GET", "/users/7/posts"));
+
+        Assert.assertEquals("/users/a b", PathKit.normalizePath("/users/a%20b/"));
+    }
+
+    @Test
+    public void testRouteCache() {
+        routeMatcher.setRouteCacheSize(16);
+        routeMatcher.addRoute("/users/:id", ctx -> ctx.text("Ok"), HttpMethod.GET);
+        routeMatcher.register();
+
+        RouteMatch match = routeMatcher.matchRoute("GET", "/users/7");
+        Assert.assertSame(match, routeMatcher.matchRoute("GET", "/users/7"));
+        Assert.assertEquals("7", match.get("id"));
+        Assert.assertNull(routeMatcher.matchRoute("GET", "/posts/7"));
+        Assert.assertEquals(1, routeMatcher.routeCacheHits());
+        Assert.assertEquals(2, routeMatcher.routeCacheMisses());
+
+        routeMatcher.clear();
+        routeMatcher.addRoute("/users/:name", ctx -> ctx.text("Ok"), HttpMethod.GET);
+        routeMatcher.register();
+        Assert.assertEquals("7", routeMatcher.matchRoute("GET", "/users/7").get("name"));
+    }
+
 }
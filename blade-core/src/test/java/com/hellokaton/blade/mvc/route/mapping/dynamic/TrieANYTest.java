@@ -147,12 +147,46 @@ public class TrieANYTest {
                 trieMapping.findRoute("GET", "/child/oooccc/ddd").getOriginalPath());
     }
 
-    @Test(expected = IllegalStateException.class)
-    public void testConflict() {
-        initMapping(Arrays.asList(
+    @Test
+    public void testSiblingPrecedence() {
+        TrieMapping trieMapping = initMapping(Arrays.asList(
                 MethodAndPath.of(HttpMethod.GET, "/child/*"),
-                MethodAndPath.of(HttpMethod.GET, "/child/:pp")
+                MethodAndPath.of(HttpMethod.GET, "/child/:pp"),
+                MethodAndPath.of(HttpMethod.GET, "/child/id:[0-9]+"),
+                MethodAndPath.of(HttpMethod.GET, "/child/new"),
+                MethodAndPath.of(HttpMethod.GET, "/child/new/:name")
         ));
+
+        assertEquals("/child/new",
+                trieMapping.findRoute("GET", "/child/new").getOriginalPath());
+        assertEquals("/child/new/:name",
+                trieMapping.findRoute("GET", "/child/new/ooo").getOriginalPath());
+        Route route = trieMapping.findRoute("GET", "/child/123");
+        assertEquals("/child/id:[0-9]+", route.getOriginalPath());
+        assertEquals(Collections.singletonMap("id", "123"), route.getPathParams());
+        assertEquals("/child/:pp",
+                trieMapping.findRoute("GET", "/child/abc").getOriginalPath());
+        assertEquals("/child/*",
+                trieMapping.findRoute("GET", "/child/abc/def").getOriginalPath());
+        assertNull(trieMapping.findRoute("GET", "/child"));
+    }
+
+    @Test
+    public void testWildPartAndAllMethod() {
+        TrieMapping trieMapping = initMapping(Arrays.asList(
+                MethodAndPath.of(HttpMethod.GET, "/aaa/*/ccc"),
+                MethodAndPath.of(HttpMethod.ALL, "/aaa/:id/ccc"),
+                MethodAndPath.of(HttpMethod.ALL, "/static/*.js"))
+        );
+
+        assertEquals("/aaa/*/ccc",
+                trieMapping.findRoute("GET", "/aaa/bbb/ccc").getOriginalPath());
+        assertEquals("/aaa/:id/ccc",
+                trieMapping.findRoute("POST", "/aaa/bbb/ccc").getOriginalPath());
+        assertNull(trieMapping.findRoute("GET", "/aaa/bbb/ddd/ccc"));
+        assertEquals("/static/*.js",
+                trieMapping.findRoute("GET", "/static/app.js").getOriginalPath());
+        assertNull(trieMapping.findRoute("GET", "/static/app.css"));
     }
 
     @Test
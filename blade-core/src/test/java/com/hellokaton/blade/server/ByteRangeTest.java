@@ -0,0 +1,72 @@
+package com.hellokaton.blade.server;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author hellokaton
+ * @date 2022/6/12
+ */
+public class ByteRangeTest {
+
+    @Test
+    public void testParse() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-9", 100);
+        assertEquals(1, ranges.size());
+        assertEquals("bytes 0-9/100", ranges.get(0).contentRange(100));
+        assertEquals(10, ranges.get(0).length());
+
+        ranges = ByteRange.parse("bytes=-20", 100);
+        assertEquals(80, ranges.get(0).start());
+        assertEquals(99, ranges.get(0).end());
+
+        ranges = ByteRange.parse("bytes=90-", 100);
+        assertEquals(90, ranges.get(0).start());
+        assertEquals(99, ranges.get(0).end());
+
+        ranges = ByteRange.parse("bytes=50-200", 100);
+        assertEquals(99, ranges.get(0).end());
+    }
+
+    @Test
+    public void testMerge() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=20-29, 0-9, 5-15", 100);
+        assertEquals(2, ranges.size());
+        assertEquals(0, ranges.get(0).start());
+        assertEquals(15, ranges.get(0).end());
+        assertEquals(20, ranges.get(1).start());
+
+        assertEquals(1, ByteRange.parse("bytes=0-9,10-19", 100).size());
+    }
+
+    @Test
+    public void testUnsatisfiable() {
+        assertTrue(ByteRange.parse("bytes=100-", 100).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-0", 100).isEmpty());
+        assertEquals(1, ByteRange.parse("bytes=200-300, 0-0", 100).size());
+    }
+
+    @Test
+    public void testIgnored() {
+        assertNull(ByteRange.parse(null, 100));
+        assertNull(ByteRange.parse("items=0-9", 100));
+        assertNull(ByteRange.parse("bytes=9-0", 100));
+        assertNull(ByteRange.parse("bytes=a-b", 100));
+        assertNull(ByteRange.parse("bytes=10", 100));
+    }
+
+    @Test
+    public void testIfRange() {
+        String lastModified = "Sun, 12 Jun 2022 08:00:00 GMT";
+        assertTrue(ByteRange.ifRangeMatches(null, "\"1\"", lastModified));
+        assertTrue(ByteRange.ifRangeMatches("\"1\"", "\"1\"", lastModified));
+        assertFalse(ByteRange.ifRangeMatches("\"2\"", "\"1\"", lastModified));
+        assertFalse(ByteRange.ifRangeMatches("W/\"1\"", "\"1\"", lastModified));
+        assertTrue(ByteRange.ifRangeMatches(lastModified, "\"1\"", lastModified));
+        assertFalse(ByteRange.ifRangeMatches(lastModified, "\"1\"", null));
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.hellokaton.blade.server;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.*;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author hellokaton
+ * @date 2022/6/12
+ */
+public class ContentCompressorTest {
+
+    @Test
+    public void testSkip() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ContentCompressor());
+
+        assertEquals("gzip", writeResponse(channel, false).headers().get(HttpHeaderNames.CONTENT_ENCODING));
+
+        HttpResponse skipped = writeResponse(channel, true);
+        assertFalse(skipped.headers().contains(HttpHeaderNames.CONTENT_ENCODING));
+        // the mark is not sent
+        assertEquals(Collections.singletonList("X-Test"), skipped.headers().names().stream()
+                .filter(name -> name.startsWith("X-")).collect(Collectors.toList()));
+        channel.finishAndReleaseAll();
+    }
+
+    private HttpResponse writeResponse(EmbeddedChannel channel, boolean skip) {
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/app.js");
+        request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip");
+        channel.writeInbound(request);
+        channel.readInbound();
+
+        String body = new String(new char[1024]).replace('\0', 'a');
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(body, CharsetUtil.UTF_8));
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/javascript");
+        response.headers().set("X-Test", "1");
+        if (skip) {
+            ContentCompressor.skip(response.headers());
+        }
+        channel.writeOutbound(response);
+
+        HttpResponse written = channel.readOutbound();
+        Object next;
+        while (null != (next = channel.readOutbound())) {
+            ReferenceCountUtil.release(next);
+        }
+        return written;
+    }
+
+}
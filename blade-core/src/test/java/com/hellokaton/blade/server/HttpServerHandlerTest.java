@@ -0,0 +1,98 @@
+package com.hellokaton.blade.server;
+
+import com.hellokaton.blade.Blade;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author hellokaton
+ * @date 2022/6/12
+ */
+public class HttpServerHandlerTest {
+
+    @Test
+    public void testPipelinedResponseOrder() throws Exception {
+        CountDownLatch fastHandled = new CountDownLatch(1);
+        Blade blade = Blade.create().listen(10091)
+                .get("/slow", ctx -> {
+                    try {
+                        // answer only after the later request has been handled
+                        assertTrue(fastHandled.await(5, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    ctx.text("slow");
+                })
+                .get("/fast", ctx -> {
+                    ctx.text("fast");
+                    fastHandled.countDown();
+                });
+
+        NettyServer server = new NettyServer();
+        server.start(blade);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        // the embedded event loop is not thread safe, tasks are run once the workers are idle
+        AtomicInteger running = new AtomicInteger();
+        Executor dispatchExecutor = task -> {
+            running.incrementAndGet();
+            pool.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+        };
+        EmbeddedChannel channel = new EmbeddedChannel();
+        try {
+            new HttpServerInitializer(null, blade, dispatchExecutor).initWarmUpChannel(channel);
+            channel.writeInbound(Unpooled.copiedBuffer(
+                    "GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                            "GET /fast HTTP/1.1\r\nHost: localhost\r\n\r\n", CharsetUtil.US_ASCII));
+
+            StringBuilder output = new StringBuilder();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (countOf(output, "HTTP/1.1 200") < 2 && System.nanoTime() < deadline) {
+                if (running.get() > 0) {
+                    Thread.sleep(5);
+                    continue;
+                }
+                channel.runPendingTasks();
+                ByteBuf buf;
+                while (null != (buf = channel.readOutbound())) {
+                    output.append(buf.toString(CharsetUtil.UTF_8));
+                    buf.release();
+                }
+            }
+
+            assertEquals(0, fastHandled.getCount());
+            assertEquals(2, countOf(output, "HTTP/1.1 200"));
+            assertTrue(output.indexOf("slow") < output.indexOf("fast"));
+        } finally {
+            channel.finishAndReleaseAll();
+            pool.shutdownNow();
+            server.stop();
+        }
+    }
+
+    private static int countOf(CharSequence output, String s) {
+        int count = 0;
+        for (int i = output.toString().indexOf(s); i >= 0; i = output.toString().indexOf(s, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+}
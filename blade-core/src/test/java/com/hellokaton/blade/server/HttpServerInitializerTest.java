@@ -0,0 +1,126 @@
+package com.hellokaton.blade.server;
+
+import com.hellokaton.blade.Blade;
+import com.hellokaton.blade.mvc.http.ChannelBody;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http2.*;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author hellokaton
+ * @date 2022/6/12
+ */
+public class HttpServerInitializerTest {
+
+    private static final byte DATA = 0x0;
+    private static final byte HEADERS = 0x1;
+    private static final byte SETTINGS = 0x4;
+    private static final int END_STREAM = 0x1;
+    private static final int END_HEADERS = 0x4;
+
+    private final Http2HeadersEncoder encoder = new DefaultHttp2HeadersEncoder();
+    private final Http2HeadersDecoder decoder = new DefaultHttp2HeadersDecoder(true);
+
+    @Test
+    public void testH2cPriorKnowledge() throws Exception {
+        byte[] bytes = new byte[20000];
+        new Random().nextBytes(bytes);
+        File file = File.createTempFile("blade", ".bin");
+        file.deleteOnExit();
+        Files.write(file.toPath(), bytes);
+
+        Blade blade = Blade.create().listen(10092)
+                .get("/hello", ctx -> ctx.text("hello"))
+                .get("/file", ctx -> {
+                    try {
+                        ctx.response().body(ChannelBody.of(file));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+        NettyServer server = new NettyServer();
+        server.start(blade);
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ByteBuf output = Unpooled.buffer();
+        try {
+            new HttpServerInitializer(null, blade, (Executor) null).initCleartextHttp2(channel.pipeline());
+
+            ByteBuf input = Unpooled.buffer();
+            input.writeBytes(Http2CodecUtil.connectionPrefaceBuf());
+            writeFrameHeader(input, 0, SETTINGS, 0, 0);
+            // an embedded channel has no server parent, stream 1 would be taken for an upgrade
+            writeRequest(input, 3, "/hello");
+            // a file region can not be written to a stream, the file is sent in chunks
+            writeRequest(input, 5, "/file");
+            channel.writeInbound(input);
+
+            for (int i = 0; i < 10; i++) {
+                channel.runPendingTasks();
+                ByteBuf buf;
+                while (null != (buf = channel.readOutbound())) {
+                    output.writeBytes(buf);
+                    buf.release();
+                }
+            }
+
+            Map<Integer, Http2Headers> headers = new HashMap<>();
+            Map<Integer, ByteBuf> data = new HashMap<>();
+            while (output.readableBytes() >= 9) {
+                int length = output.readUnsignedMedium();
+                byte type = output.readByte();
+                output.skipBytes(1);
+                int streamId = output.readInt() & Integer.MAX_VALUE;
+                ByteBuf payload = output.readSlice(length);
+                if (type == HEADERS) {
+                    headers.put(streamId, decoder.decodeHeaders(streamId, payload));
+                } else if (type == DATA) {
+                    data.computeIfAbsent(streamId, id -> Unpooled.buffer()).writeBytes(payload);
+                }
+            }
+
+            assertEquals("200", headers.get(3).status().toString());
+            assertEquals("hello", data.get(3).toString(CharsetUtil.UTF_8));
+            assertEquals("200", headers.get(5).status().toString());
+            assertArrayEquals(bytes, ByteBufUtil.getBytes(data.get(5)));
+            data.values().forEach(ByteBuf::release);
+        } finally {
+            output.release();
+            channel.finishAndReleaseAll();
+            server.stop();
+        }
+    }
+
+    private void writeRequest(ByteBuf out, int streamId, String path) throws Http2Exception {
+        Http2Headers headers = new DefaultHttp2Headers()
+                .method("GET").scheme("http").authority("localhost").path(path);
+        ByteBuf block = Unpooled.buffer();
+        encoder.encodeHeaders(streamId, headers, block);
+        writeFrameHeader(out, block.readableBytes(), HEADERS, END_STREAM | END_HEADERS, streamId);
+        out.writeBytes(block);
+        block.release();
+    }
+
+    private static void writeFrameHeader(ByteBuf out, int length, byte type, int flags, int streamId) {
+        out.writeMedium(length);
+        out.writeByte(type);
+        out.writeByte(flags);
+        out.writeInt(streamId);
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.hellokaton.blade.server;
+
+import com.hellokaton.blade.Blade;
+import com.hellokaton.blade.event.EventType;
+import com.hellokaton.blade.kit.JsonKit;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author hellokaton
+ * @date 2022/6/10
+ */
+public class StartupProfilerTest {
+
+    @Test
+    public void testPhase() {
+        StartupProfiler profiler = new StartupProfiler();
+        StartupProfiler.Phase phase = profiler.begin("work");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append(i);
+        }
+        assertTrue(sb.length() > 0);
+        assertTrue(profiler.getPhases().isEmpty());
+        phase.end();
+        profiler.finish();
+
+        assertEquals(1, profiler.getPhases().size());
+        assertEquals("work", profiler.getPhases().get(0).getName());
+        assertTrue(profiler.getPhases().get(0).getMillis() >= 0);
+        assertTrue(profiler.getTotalMillis() >= profiler.getPhases().get(0).getMillis());
+        assertNotEquals(0, profiler.getPhases().get(0).getAllocatedBytes());
+    }
+
+    @Test
+    public void testAllocatedByOtherThreads() throws Exception {
+        StartupProfiler profiler = new StartupProfiler();
+        StartupProfiler.Phase phase = profiler.begin("parallel");
+        CountDownLatch allocated = new CountDownLatch(1);
+        CountDownLatch ended = new CountDownLatch(1);
+        Thread worker = new Thread(() -> {
+            byte[][] chunks = new byte[16][];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = new byte[1024 * 1024];
+            }
+            allocated.countDown();
+            try {
+                ended.await();
+            } catch (InterruptedException ignore) {
+            }
+            assertEquals(16, chunks.length);
+        });
+        worker.start();
+        allocated.await();
+        phase.end();
+        ended.countDown();
+        worker.join();
+
+        long bytes = profiler.getPhases().get(0).getAllocatedBytes();
+        assumeTrue(bytes >= 0);
+        assertTrue(bytes >= 16 * 1024 * 1024);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReport() throws Exception {
+        Path file = Files.createTempFile("startup", ".json");
+        AtomicReference<StartupProfiler> reported = new AtomicReference<>();
+
+        Blade blade = Blade.create().listen(10088)
+                .setEnv("app.startup.profile-file", file.toString())
+                .on(EventType.SERVER_PROFILED, e -> reported.set((StartupProfiler) e.attribute("profiler")));
+        NettyServer server = new NettyServer();
+        server.start(blade);
+        server.stop();
+
+        assertNotNull(reported.get());
+        List<String> names = reported.get().getPhases().stream()
+                .map(StartupProfiler.Phase::getName).collect(Collectors.toList());
+        assertTrue(names.containsAll(Arrays.asList("initConfig", "scan", "routes", "beans", "bind")));
+
+        Map<String, Object> json = JsonKit.fromJson(new String(Files.readAllBytes(file), "UTF-8"), Map.class);
+        assertEquals(names.size(), ((List<?>) json.get("phases")).size());
+        assertTrue(((Map<String, Object>) ((List<?>) json.get("phases")).get(0)).containsKey("allocatedBytes"));
+        Files.deleteIfExists(file);
+    }
+
+}
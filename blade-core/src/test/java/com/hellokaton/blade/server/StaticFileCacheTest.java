@@ -0,0 +1,90 @@
+package com.hellokaton.blade.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author hellokaton
+ * @date 2022/6/12
+ */
+public class StaticFileCacheTest {
+
+    @Test
+    public void testEvictByWeight() {
+        long entrySize = StaticFileCache.ENTRY_OVERHEAD + 1024;
+        StaticFileCache cache = new StaticFileCache(entrySize * 3, 1024, 0);
+        StaticFileCache.Entry a = newEntry("/a", 1024);
+        cache.put(a);
+        cache.put(newEntry("/b", 1024));
+        cache.put(newEntry("/c", 1024));
+        assertEquals(entrySize * 3, cache.weight());
+
+        cache.get("/a");
+        cache.put(newEntry("/d", 1024));
+        assertEquals(3, cache.count());
+        assertNotNull(cache.get("/a"));
+        assertNotNull(cache.get("/d"));
+        assertTrue(null == cache.get("/b") || null == cache.get("/c"));
+
+        cache.clear();
+        assertEquals(0, cache.weight());
+        assertNull(a.retainedContent());
+    }
+
+    @Test
+    public void testRetainedContent() {
+        StaticFileCache cache = new StaticFileCache(64 * 1024, 1024, 0);
+        StaticFileCache.Entry entry = newEntry("/a", 16);
+        cache.put(entry);
+
+        ByteBuf content = entry.retainedContent();
+        cache.clear();
+        // a response in flight keeps its duplicate
+        assertEquals(16, content.readableBytes());
+        assertTrue(content.release());
+        assertFalse(cache.cacheContent(2048));
+    }
+
+    @Test
+    public void testValidateFile() throws Exception {
+        File file = File.createTempFile("blade", ".css");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "body{}".getBytes(StandardCharsets.UTF_8));
+
+        StaticFileCache cache = new StaticFileCache(64 * 1024, 1024, 0);
+        cache.put(new StaticFileCache.Entry("/a.css", file, file.length(), file.lastModified(),
+                "text/css", "\"1\"", new DefaultHttpHeaders(), null));
+        assertNotNull(cache.get("/a.css"));
+
+        Files.write(file.toPath(), "body{color:red}".getBytes(StandardCharsets.UTF_8));
+        assertNull(cache.get("/a.css"));
+        assertEquals(0, cache.count());
+    }
+
+    @Test
+    public void testMatchETag() {
+        StaticFileCache.Variant gzip = new StaticFileCache.Variant("gzip", null, null, "\"1-gzip\"", new DefaultHttpHeaders());
+        StaticFileCache.Entry entry = new StaticFileCache.Entry("/a.js", null, 16, -1, "application/javascript",
+                "\"1\"", new DefaultHttpHeaders(), null, true, gzip, null);
+        assertEquals("\"1\"", entry.matchETag("\"1\""));
+        assertEquals("\"1\"", entry.matchETag("W/\"1\""));
+        assertEquals("\"1-gzip\"", entry.matchETag("\"0\", \"1-gzip\""));
+        assertEquals("\"1\"", entry.matchETag("*"));
+        assertNull(entry.matchETag("\"2\""));
+        assertNull(entry.matchETag("\"1-br\""));
+    }
+
+    private StaticFileCache.Entry newEntry(String uri, int length) {
+        ByteBuf content = Unpooled.directBuffer(length).writeZero(length);
+        return new StaticFileCache.Entry(uri, null, length, -1, null, "\"1\"", new DefaultHttpHeaders(), content);
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.hellokaton.blade.server;
+
+import com.hellokaton.blade.Blade;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author hellokaton
+ * @date 2022/6/10
+ */
+public class WarmUpTest {
+
+    @Test
+    public void testWarmUpBeforeBind() throws Exception {
+        AtomicInteger warmUps = new AtomicInteger();
+        AtomicInteger others = new AtomicInteger();
+        AtomicInteger posts = new AtomicInteger();
+
+        Blade blade = Blade.create().listen(10089)
+                .setEnv("server.warmup.enabled", true)
+                .setEnv("server.warmup.timeout", 500)
+                .get("/users/:id", ctx -> {
+                    (ctx.request().isWarmUp() ? warmUps : others).incrementAndGet();
+                    ctx.text(ctx.pathString("id"));
+                })
+                .post("/users", ctx -> posts.incrementAndGet());
+
+        NettyServer server = new NettyServer();
+        server.start(blade);
+        server.stop();
+
+        assertTrue(warmUps.get() > 0);
+        assertEquals(0, others.get());
+        assertEquals(0, posts.get());
+    }
+
+}
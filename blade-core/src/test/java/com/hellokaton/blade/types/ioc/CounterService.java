@@ -0,0 +1,24 @@
+package com.hellokaton.blade.types.ioc;
+
+import com.hellokaton.blade.ioc.annotation.Bean;
+import com.hellokaton.blade.ioc.annotation.Value;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Bean
+public class CounterService {
+
+    public static final AtomicInteger CREATED = new AtomicInteger();
+
+    @Value(name = "app.counter.name")
+    private String name;
+
+    public CounterService() {
+        CREATED.incrementAndGet();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+}
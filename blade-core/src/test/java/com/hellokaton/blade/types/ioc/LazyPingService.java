@@ -0,0 +1,27 @@
+package com.hellokaton.blade.types.ioc;
+
+import com.hellokaton.blade.ioc.annotation.Bean;
+import com.hellokaton.blade.ioc.annotation.Inject;
+import com.hellokaton.blade.ioc.annotation.Lazy;
+
+@Lazy
+@Bean
+public class LazyPingService {
+
+    @Inject
+    private LazyPongService pongService;
+
+    public LazyPingService() {
+        // keep the first access busy so another thread reaches the other bean meanwhile
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public LazyPongService getPongService() {
+        return pongService;
+    }
+
+}
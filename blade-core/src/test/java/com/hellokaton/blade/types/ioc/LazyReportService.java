@@ -0,0 +1,26 @@
+package com.hellokaton.blade.types.ioc;
+
+import com.hellokaton.blade.ioc.annotation.Bean;
+import com.hellokaton.blade.ioc.annotation.Inject;
+import com.hellokaton.blade.ioc.annotation.Lazy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Lazy
+@Bean
+public class LazyReportService {
+
+    public static final AtomicInteger CREATED = new AtomicInteger();
+
+    @Inject
+    private CounterService counterService;
+
+    public LazyReportService() {
+        CREATED.incrementAndGet();
+    }
+
+    public CounterService getCounterService() {
+        return counterService;
+    }
+
+}
@@ -0,0 +1,7 @@
+package com.hellokaton.blade.types.scan;
+
+import com.hellokaton.blade.ioc.annotation.Bean;
+
+@Bean
+public class ScanBean {
+}
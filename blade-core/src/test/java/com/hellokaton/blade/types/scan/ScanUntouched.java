@@ -0,0 +1,9 @@
+package com.hellokaton.blade.types.scan;
+
+public class ScanUntouched {
+
+    static {
+        System.setProperty("blade.test.scan-untouched", "loaded");
+    }
+
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.kit;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Bounded cache safe for concurrent use, evicting with the CLOCK policy.
+ * <p>
+ * Reads are lock free and only mark the entry as referenced. Writes take a lock
+ * and, when the cache is full, sweep the clock hand giving referenced entries a
+ * second chance before evicting the first one not used since the last sweep.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+public class ClockCache<K, V> {
+
+    private static final class Entry<K, V> {
+
+        private final K key;
+        private final V value;
+        private volatile boolean referenced;
+
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+    }
+
+    private final Map<K, Entry<K, V>> map;
+    private final Entry<K, V>[] clock;
+    private int hand;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public ClockCache(int capacity) {
+        Assert.greaterThan(capacity, 0, "Cache capacity must be greater than 0");
+        this.map = new ConcurrentHashMap<>(capacity * 4 / 3 + 1);
+        this.clock = new Entry[capacity];
+    }
+
+    /**
+     * @return cached value or null
+     */
+    public V get(K key) {
+        Entry<K, V> entry = map.get(key);
+        if (null == entry) {
+            misses.increment();
+            return null;
+        }
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Cache a value, an existing value of the key is kept
+     */
+    public void put(K key, V value) {
+        Assert.notNull(key, "Cache key not is null");
+        Assert.notNull(value, "Cache value not is null");
+        synchronized (clock) {
+            if (map.containsKey(key)) {
+                return;
+            }
+            Entry<K, V> entry = new Entry<>(key, value);
+            for (; ; ) {
+                Entry<K, V> victim = clock[hand];
+                if (null == victim || !victim.referenced) {
+                    if (null != victim) {
+                        // the key may have been removed and cached again since
+                        map.remove(victim.key, victim);
+                    }
+                    clock[hand] = entry;
+                    break;
+                }
+                victim.referenced = false;
+                hand = (hand + 1) % clock.length;
+            }
+            hand = (hand + 1) % clock.length;
+            map.put(key, entry);
+        }
+    }
+
+    /**
+     * Remove a value, its slot is reused first by the next sweep
+     *
+     * @return removed value or null
+     */
+    public V remove(K key) {
+        Entry<K, V> entry = map.remove(key);
+        if (null == entry) {
+            return null;
+        }
+        entry.referenced = false;
+        return entry.value;
+    }
+
+    public void forEach(BiConsumer<K, V> consumer) {
+        map.forEach((key, entry) -> consumer.accept(key, entry.value));
+    }
+
+    public void clear() {
+        synchronized (clock) {
+            map.clear();
+            Arrays.fill(clock, null);
+            hand = 0;
+        }
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public int capacity() {
+        return clock.length;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+}
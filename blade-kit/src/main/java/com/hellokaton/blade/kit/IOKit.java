@@ -22,9 +22,11 @@ import java.io.*;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.zip.GZIPOutputStream;
 
@@ -38,6 +40,11 @@ import java.util.zip.GZIPOutputStream;
 @UtilityClass
 public class IOKit {
 
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> OWNER_ONLY_FILE = PosixFilePermissions.fromString("rw-------");
+
+    private static volatile UserPrincipal processOwner;
+
     public static void closeQuietly(Closeable closeable) {
         try {
             if (null == closeable) {
@@ -98,4 +105,77 @@ public class IOKit {
         return out.toByteArray();
     }
 
+    /**
+     * Create a directory only the user of this process can use, an existing
+     * one has to belong to that user and is made owner-only.
+     * <p>
+     * Use it for files kept in a shared place like java.io.tmpdir, where any
+     * local user could create the directory first.
+     */
+    public static void createPrivateDirectory(Path dir) throws IOException {
+        if (Files.notExists(dir, LinkOption.NOFOLLOW_LINKS)) {
+            if (isPosix()) {
+                Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+            } else {
+                Files.createDirectories(dir);
+            }
+        }
+        if (!Files.isDirectory(dir)) {
+            throw new IOException(dir + " is not a directory");
+        }
+        checkOwner(dir);
+        if (isPosix()) {
+            Files.setPosixFilePermissions(dir, OWNER_ONLY_DIRECTORY);
+        }
+    }
+
+    /**
+     * Create a file only the user of this process can read and write, an
+     * existing one has to belong to that user and is made owner-only.
+     */
+    public static void createPrivateFile(Path file) throws IOException {
+        try {
+            if (isPosix()) {
+                Files.createFile(file, PosixFilePermissions.asFileAttribute(OWNER_ONLY_FILE));
+            } else {
+                Files.createFile(file);
+            }
+        } catch (FileAlreadyExistsException e) {
+            if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+                throw new IOException(file + " is not a regular file");
+            }
+        }
+        checkOwner(file);
+        if (isPosix()) {
+            Files.setPosixFilePermissions(file, OWNER_ONLY_FILE);
+        }
+    }
+
+    /**
+     * Refuse a file or directory, or a link to one, that the user of this process does not own
+     */
+    public static void checkOwner(Path path) throws IOException {
+        UserPrincipal owner = Files.getOwner(path, LinkOption.NOFOLLOW_LINKS);
+        if (!owner.equals(processOwner())) {
+            throw new IOException(path + " is owned by " + owner.getName() + ", not by the user of this process");
+        }
+    }
+
+    private static UserPrincipal processOwner() throws IOException {
+        if (null == processOwner) {
+            // user.name may not match the user the files are created by
+            Path probe = Files.createTempFile("blade", ".owner");
+            try {
+                processOwner = Files.getOwner(probe);
+            } finally {
+                Files.deleteIfExists(probe);
+            }
+        }
+        return processOwner;
+    }
+
+    private static boolean isPosix() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    }
+
 }
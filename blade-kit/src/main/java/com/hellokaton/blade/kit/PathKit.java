@@ -2,6 +2,8 @@ package com.hellokaton.blade.kit;
 
 import lombok.experimental.UtilityClass;
 
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.regex.Pattern;
 
 /**
@@ -35,6 +37,25 @@ public class PathKit {
         return VAR_FIXPATH_PATTERN.matcher(path).replaceAll("%20");
     }
 
+    /**
+     * Normalize a request path for route matching, fix the slashes and decode
+     * the escaped characters the same way as {@link URI#getPath()}.
+     *
+     * @param path request path without the query string
+     * @return normalized path
+     */
+    public static String normalizePath(String path) {
+        path = fixPath(path);
+        if (path.indexOf('%') < 0 && path.indexOf('#') < 0) {
+            return path;
+        }
+        try {
+            return new URI(path).getPath();
+        } catch (URISyntaxException e) {
+            return path;
+        }
+    }
+
     public static String cleanPath(String path) {
         if (path == null) {
             return null;
@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 /**
@@ -162,6 +163,60 @@ public class ReflectKit {
         return value;
     }
 
+    /**
+     * Resolve the conversion of {@link #convert(Type, String)} once for a target type
+     *
+     * @param type target type
+     * @return converter from a string value to the target type
+     */
+    public static Function<String, Object> converter(Type type) {
+        Object empty;
+        if (type.equals(String.class)) {
+            empty = "";
+        } else if (type.equals(int.class)) {
+            empty = 0;
+        } else if (type.equals(long.class)) {
+            empty = 0L;
+        } else if (type.equals(double.class)) {
+            empty = 0D;
+        } else if (type.equals(float.class)) {
+            empty = 0F;
+        } else if (type.equals(short.class)) {
+            empty = (short) 0;
+        } else if (type.equals(byte.class)) {
+            empty = (byte) 0;
+        } else if (type.equals(boolean.class)) {
+            empty = false;
+        } else {
+            empty = null;
+        }
+
+        Function<String, Object> parser;
+        if (type.equals(int.class) || type.equals(Integer.class)) {
+            parser = Integer::parseInt;
+        } else if (type.equals(Double.class) || type.equals(double.class)) {
+            parser = Double::parseDouble;
+        } else if (type.equals(Float.class) || type.equals(float.class)) {
+            parser = Float::parseFloat;
+        } else if (type.equals(Long.class) || type.equals(long.class)) {
+            parser = Long::parseLong;
+        } else if (type.equals(Boolean.class) || type.equals(boolean.class)) {
+            parser = Boolean::parseBoolean;
+        } else if (type.equals(Short.class) || type.equals(short.class)) {
+            parser = Short::parseShort;
+        } else if (type.equals(Byte.class) || type.equals(byte.class)) {
+            parser = Byte::parseByte;
+        } else if (type.equals(BigDecimal.class)) {
+            parser = BigDecimal::new;
+        } else if (type.equals(Date.class) || type.equals(LocalDate.class) || type.equals(LocalDateTime.class)
+                || (type instanceof Class && ((Class) type).isEnum())) {
+            parser = value -> convert(type, value);
+        } else {
+            parser = value -> value;
+        }
+        return value -> null == value ? null : value.isEmpty() ? empty : parser.apply(value);
+    }
+
     /**
      * invoke method
      *
@@ -0,0 +1,89 @@
+package com.hellokaton.blade.kit;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * ClockCache TestCase
+ *
+ * @author hellokaton
+ * 2022/6/8
+ */
+public class ClockCacheTest {
+
+    @Test
+    public void testHitAndMiss() {
+        ClockCache<String, Integer> cache = new ClockCache<>(4);
+        assertNull(cache.get("a"));
+        cache.put("a", 1);
+        cache.put("a", 2);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testEvictUnreferenced() {
+        ClockCache<String, Integer> cache = new ClockCache<>(3);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        cache.get("a");
+        cache.get("c");
+
+        cache.put("d", 4);
+        assertEquals(3, cache.size());
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+    }
+
+    @Test
+    public void testRemove() {
+        ClockCache<String, Integer> cache = new ClockCache<>(2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        assertEquals(Integer.valueOf(1), cache.remove("a"));
+        assertNull(cache.remove("a"));
+
+        // the slot of a removed key is reused without evicting the cached one
+        cache.put("a", 3);
+        cache.get("b");
+        cache.put("c", 4);
+        assertEquals(2, cache.size());
+        assertEquals(Integer.valueOf(2), cache.get("b"));
+        assertNull(cache.get("a"));
+        assertEquals(Integer.valueOf(4), cache.get("c"));
+    }
+
+    @Test
+    public void testConcurrentPut() throws Exception {
+        ClockCache<Integer, Integer> cache = new ClockCache<>(64);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    int key = i % 200;
+                    if (null == cache.get(key)) {
+                        cache.put(key, key);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(64, cache.size());
+        assertEquals(40000, cache.hitCount() + cache.missCount());
+    }
+
+}
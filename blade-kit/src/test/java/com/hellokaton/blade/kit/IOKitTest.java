@@ -8,7 +8,11 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
 
 /**
  * @author biezhi
@@ -33,6 +37,23 @@ public class IOKitTest {
         Assert.assertTrue(StringKit.isNotBlank(content));
     }
 
+    @Test
+    public void testCreatePrivateFile() throws IOException {
+        Path dir = Files.createTempDirectory("blade").resolve("private");
+        Path file = dir.resolve("data.db");
+        IOKit.createPrivateDirectory(dir);
+        IOKit.createPrivateFile(file);
+        // an existing file of the same user is accepted
+        IOKit.createPrivateFile(file);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Assert.assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(dir)));
+            Assert.assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+        }
+        Files.delete(file);
+        Files.delete(dir);
+        Files.delete(dir.getParent());
+    }
+
     @Test
     public void testCopyFile() throws IOException {
         IOKit.copyFile(new File(IOKitTest.class.getResource("/application.properties").getPath()), new File("./tmp.properties"));
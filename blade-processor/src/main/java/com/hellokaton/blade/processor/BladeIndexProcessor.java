@@ -0,0 +1,222 @@
+/**
+ * Copyright (c) 2022, katon (hellokaton@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellokaton.blade.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Write the blade components of a compilation to {@value #INDEX_LOCATION}, so the
+ * application starts without scanning its packages.
+ * <p>
+ * Every line is one tab separated entry, the kind of component and the binary
+ * class name followed by the details of the kind:
+ * <pre>
+ * bean     com.example.UserService
+ * value    com.example.AppConfig      app
+ * config   com.example.AppConfig
+ * path     com.example.UserController /users
+ * </pre>
+ * The index only finds the component classes, their routes, hooks and fields are
+ * still read by reflection. The {@code # stamp} line tells the index was written
+ * by this processor rather than left over from an older format.
+ *
+ * @author hellokaton
+ * @since 2.1.2
+ */
+@SupportedAnnotationTypes("*")
+public class BladeIndexProcessor extends AbstractProcessor {
+
+    public static final String INDEX_LOCATION = "META-INF/blade/index";
+
+    static final String PATH = "com.hellokaton.blade.annotation.Path";
+    static final String BEAN = "com.hellokaton.blade.ioc.annotation.Bean";
+    static final String VALUE = "com.hellokaton.blade.ioc.annotation.Value";
+    static final String CONFIGURATION = "com.hellokaton.blade.ioc.annotation.Configuration";
+
+    // entries of the classes compiled in this build, by binary class name
+    private final Map<String, List<String>> entries = new LinkedHashMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            this.writeIndex();
+            return false;
+        }
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            this.indexType(type);
+        }
+        return false;
+    }
+
+    private void indexType(TypeElement type) {
+        for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+            if (nested.getModifiers().contains(Modifier.STATIC)) {
+                this.indexType(nested);
+            }
+        }
+        String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+        // a class compiled again replaces its former entries
+        entries.put(className, new ArrayList<>());
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return;
+        }
+
+        AnnotationMirror path = annotation(type, PATH);
+        AnnotationMirror value = annotation(type, VALUE);
+        AnnotationMirror bean = annotation(type, BEAN);
+        boolean configuration = null != annotation(type, CONFIGURATION);
+        if (null == path && null == value && null == bean && !configuration) {
+            return;
+        }
+
+        if (null != bean) {
+            add(className, "bean");
+        }
+        if (null != value) {
+            add(className, "value", first(value, "name"));
+        }
+        if (configuration) {
+            add(className, "config");
+        }
+        if (null != path) {
+            add(className, "path", first(path, "value"));
+        }
+    }
+
+    private void add(String className, String kind, String... details) {
+        StringBuilder line = new StringBuilder(kind).append('\t').append(className);
+        for (String detail : details) {
+            line.append('\t').append(detail.replace('\t', ' ').replace('\n', ' '));
+        }
+        entries.get(className).add(line.toString());
+    }
+
+    /**
+     * Write the index, keeping the entries of a former build for classes not compiled this time
+     */
+    private void writeIndex() {
+        Map<String, List<String>> index = new LinkedHashMap<>();
+        List<String> former = this.readIndex();
+        for (String line : former) {
+            String[] columns = line.split("\t");
+            if (columns.length < 2 || entries.containsKey(columns[1]) || !exists(columns[1])) {
+                continue;
+            }
+            index.computeIfAbsent(columns[1], k -> new ArrayList<>()).add(line);
+        }
+        index.putAll(entries);
+        if (former.isEmpty() && index.values().stream().allMatch(List::isEmpty)) {
+            return;
+        }
+        try {
+            FileObject file = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_LOCATION);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write("# generated by blade-processor, do not edit\n");
+                writer.write("# stamp " + System.currentTimeMillis() + "\n");
+                for (List<String> lines : index.values()) {
+                    for (String line : lines) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Write " + INDEX_LOCATION + " error: " + e.getMessage());
+        }
+    }
+
+    private List<String> readIndex() {
+        List<String> lines = new ArrayList<>();
+        try {
+            FileObject file = processingEnv.getFiler()
+                    .getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_LOCATION);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(file.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while (null != (line = reader.readLine())) {
+                    if (!line.isEmpty() && line.charAt(0) != '#') {
+                        lines.add(line);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // no former index
+        }
+        return lines;
+    }
+
+    private boolean exists(String className) {
+        return null != processingEnv.getElementUtils().getTypeElement(className.replace('$', '.'));
+    }
+
+    private static AnnotationMirror annotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private String first(AnnotationMirror mirror, String name) {
+        List<String> values = values(mirror, name);
+        return values.isEmpty() ? "" : values.get(0);
+    }
+
+    /**
+     * Values of an annotation attribute as strings, the default value when not set
+     */
+    private List<String> values(AnnotationMirror mirror, String name) {
+        Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                processingEnv.getElementUtils().getElementValuesWithDefaults(mirror);
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+            if (!entry.getKey().getSimpleName().contentEquals(name)) {
+                continue;
+            }
+            Object value = entry.getValue().getValue();
+            List<String> result = new ArrayList<>();
+            if (value instanceof List) {
+                for (Object item : (List<?>) value) {
+                    result.add(String.valueOf(((AnnotationValue) item).getValue()));
+                }
+            } else {
+                result.add(String.valueOf(value));
+            }
+            return result;
+        }
+        return Collections.emptyList();
+    }
+
+}
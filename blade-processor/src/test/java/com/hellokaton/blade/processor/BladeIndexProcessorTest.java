@@ -0,0 +1,92 @@
+package com.hellokaton.blade.processor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.*;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * BladeIndexProcessor TestCase
+ *
+ * @author hellokaton
+ * 2022/6/9
+ */
+public class BladeIndexProcessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static JavaFileObject source(String className, String code) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+
+    private List<String> compile(File output, JavaFileObject... sources) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<String> options = Arrays.asList("-d", output.getPath(),
+                "-classpath", System.getProperty("java.class.path") + File.pathSeparator + output.getPath());
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, null, options, null, Arrays.asList(sources));
+        task.setProcessors(Collections.singletonList(new BladeIndexProcessor()));
+        assertTrue(task.call());
+        File index = new File(output, BladeIndexProcessor.INDEX_LOCATION);
+        return index.exists() ? Files.readAllLines(index.toPath(), StandardCharsets.UTF_8) : Collections.emptyList();
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        File output = folder.newFolder();
+        List<String> index = compile(output,
+                source("demo.UserController", "package demo;\n" +
+                        "import com.hellokaton.blade.annotation.Path;\n" +
+                        "import com.hellokaton.blade.annotation.route.GET;\n" +
+                        "import com.hellokaton.blade.ioc.annotation.Inject;\n" +
+                        "@Path(\"/users\")\n" +
+                        "public class UserController {\n" +
+                        "    @Inject UserService userService;\n" +
+                        "    @GET({\"/:id\", \"/detail/:id\"}) public String user(Long id) { return null; }\n" +
+                        "}"),
+                source("demo.UserService", "package demo;\n" +
+                        "@com.hellokaton.blade.ioc.annotation.Bean\n" +
+                        "public class UserService {\n" +
+                        "    @com.hellokaton.blade.task.annotation.Schedule(cron = \"0 0 * * * ?\")\n" +
+                        "    public void clean() {}\n" +
+                        "}"),
+                source("demo.AuthHook", "package demo;\n" +
+                        "@com.hellokaton.blade.ioc.annotation.Bean\n" +
+                        "@com.hellokaton.blade.annotation.URLPattern(values = \"/users/*\")\n" +
+                        "public class AuthHook implements com.hellokaton.blade.mvc.hook.WebHook {\n" +
+                        "    public boolean before(com.hellokaton.blade.mvc.RouteContext ctx) { return true; }\n" +
+                        "}"),
+                source("demo.Plain", "package demo;\npublic class Plain {}"));
+
+        assertTrue(index.stream().anyMatch(line -> line.startsWith("# stamp ")));
+        assertTrue(index.contains("path\tdemo.UserController\t/users"));
+        assertTrue(index.contains("bean\tdemo.UserService"));
+        assertTrue(index.contains("bean\tdemo.AuthHook"));
+        assertTrue(index.stream().noneMatch(line -> line.contains("demo.Plain")));
+        // routes, fields and tasks are read by reflection, only components are indexed
+        assertEquals(3, index.stream().filter(line -> !line.startsWith("#")).count());
+
+        // a later build of one class keeps the entries of the others
+        index = compile(output, source("demo.UserService", "package demo;\npublic class UserService {}"));
+        assertTrue(index.stream().noneMatch(line -> line.contains("demo.UserService")));
+        assertTrue(index.contains("bean\tdemo.AuthHook"));
+        assertTrue(index.contains("path\tdemo.UserController\t/users"));
+    }
+
+}